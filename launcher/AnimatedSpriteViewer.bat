@@ -0,0 +1,11 @@
+@echo off
+rem Starts the viewer from the jar in dist, using the class data sharing
+rem archive made by "ant cds-archive" when there is one. The archive
+rem remembers the jar's path, so we always run from the project folder.
+cd /d "%~dp0.."
+set ARCHIVE=dist\AnimatedSpriteViewer.jsa
+if exist "%ARCHIVE%" (
+    java -XX:SharedArchiveFile="%ARCHIVE%" -Xshare:auto -jar dist\AnimatedSpriteViewer.jar %*
+) else (
+    java -jar dist\AnimatedSpriteViewer.jar %*
+)
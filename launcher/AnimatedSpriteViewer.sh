@@ -0,0 +1,10 @@
+#!/bin/sh
+# Starts the viewer from the jar in dist, using the class data sharing
+# archive made by "ant cds-archive" when there is one. The archive
+# remembers the jar's path, so we always run from the project folder.
+cd "$(dirname "$0")/.." || exit 1
+ARCHIVE=dist/AnimatedSpriteViewer.jsa
+if [ -f "$ARCHIVE" ]; then
+    exec java -XX:SharedArchiveFile="$ARCHIVE" -Xshare:auto -jar dist/AnimatedSpriteViewer.jar "$@"
+fi
+exec java -jar dist/AnimatedSpriteViewer.jar "$@"
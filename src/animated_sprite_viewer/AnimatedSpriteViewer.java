@@ -1,22 +1,33 @@
 package animated_sprite_viewer;
 
+import animated_sprite_viewer.assets.AssetSource;
+import animated_sprite_viewer.assets.AssetSources;
+import animated_sprite_viewer.assets.DecodedFrameCache;
 import animated_sprite_viewer.events.*;
+import animated_sprite_viewer.renderer.FrameConverter;
+import animated_sprite_viewer.renderer.SceneRenderer;
+import animated_sprite_viewer.renderer.Sprite;
+import animated_sprite_viewer.renderer.SpriteType;
+import animated_sprite_viewer.renderer.SpriteVariant;
 import java.awt.BorderLayout;
 import java.awt.Color;
-import java.awt.Image;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Graphics;
+import java.awt.GridLayout;
 import java.awt.Insets;
-import java.awt.MediaTracker;
-import java.awt.Toolkit;
+import java.awt.Point;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import javax.swing.*;
 import javax.swing.border.Border;
-import sprite_renderer.AnimationState;
-import sprite_renderer.PoseList;
-import sprite_renderer.SceneRenderer;
-import sprite_renderer.Sprite;
-import sprite_renderer.SpriteType;
+import javax.swing.filechooser.FileNameExtensionFilter;
 
 /**
  * The AnimatedSpriteViewer application lets one load and view
@@ -33,6 +44,11 @@ import sprite_renderer.SpriteType;
  * its own directory. They can be validated by:
  * ./data/sprite_types/sprite_type.xsd
  * 
+ * A different sprite library, laid out the same way, can be given as
+ * the first command line argument: another directory, a zip or jar
+ * archive (optionally with a directory inside it, as library.zip!/dir)
+ * or a classpath:/resource/dir. See AssetSources for the details.
+ * 
  * @author  Kevin Hock
  */
 public class AnimatedSpriteViewer extends JFrame
@@ -42,12 +58,57 @@ public class AnimatedSpriteViewer extends JFrame
     
     // FOR LOCATING ASSETS
     public static final String GUI_IMAGES_PATH = "./data/buttons/";
+    
+    // THE ICONS OF THE START, STOP, SLOW DOWN AND SPEED UP BUTTONS, IN THAT ORDER
+    public static final String[] BUTTON_ICON_FILES = {
+        "StartAnimationButton.png", "StopAnimationButton.png",
+        "SlowDownAnimationButton.png", "SpeedUpAnimationButton.png" };
+    
+    // HOW MANY THINGS WE LOAD AT ONCE WHILE STARTING UP
+    public static final int STARTUP_THREADS = 2;
+    
+    // SET TO true TO QUIT AS SOON AS STARTUP IS DONE, AS A TRAINING RUN DOES
+    public static final String EXIT_WHEN_INTERACTIVE_PROPERTY = "asv.exit.when.interactive";
     public static final String SPRITES_DATA_PATH = "./data/sprite_types/";
     public static final String SPRITE_TYPE_LIST_FILE = "sprite_type_list.xml";
     public static final String SPRITE_TYPE_LIST_SCHEMA_FILE = "sprite_type_list.xsd";
     public static final String SPRITE_TYPE_SCHEMA_FILE = "sprite_type.xsd";
+    public static final String SCENE_SCHEMA_FILE = "scene.xsd";
+    public static final String SCENES_DATA_PATH = "./data/scenes/";
     public static final String SELECT_SPRITE_TYPE_TEXT = "Select Sprite Type";
     public static final String SELECT_ANIMATION_TEXT = "Select Animation State";
+    public static final String ORIGINAL_COLOURS_TEXT = "Original Colours";
+    public static final String NOTHING_SELECTED_TEXT = "Click a sprite to select it";
+    
+    // HOW MUCH ROOM IS LEFT AROUND AND BETWEEN THE CELLS OF THE ALL STATES GRID
+    public static final int GRID_MARGIN = 16;
+    public static final int GRID_GAP = 16;
+    
+    // HOW THE SPRITE TYPE LIST IS SIZED, WITHOUT MEASURING EVERY NAME IN IT
+    public static final String SPRITE_TYPE_PROTOTYPE_TEXT = "MMMMMMMMMMMMMMMM";
+    public static final int SPRITE_TYPE_VISIBLE_ROWS = 6;
+    
+    // HOW MUCH DECODED ART WE KEEP AROUND, AND HOW FAR AHEAD WE PRELOAD IT
+    public static final long SPRITE_TYPE_CACHE_BYTES = 64L * 1024 * 1024;
+    public static final int PRELOAD_RADIUS = 2;
+    
+    // WHERE DECODED PIXELS ARE KEPT BETWEEN RUNS, AND HOW MUCH DISK THEY MAY TAKE
+    public static final String FRAME_CACHE_PROPERTY = "asv.frame.cache";
+    public static final String DEFAULT_FRAME_CACHE = ".animated_sprite_viewer/frame_cache";
+    public static final long FRAME_CACHE_BYTES = 256L * 1024 * 1024;
+    
+    // HOW FRAMES ARE PREPARED FOR THE SCREEN (compatible, volatile OR none),
+    // WHETHER TO PRINT WHAT EACH SPRITE TYPE OR SCENE LOAD DID, WHETHER TO
+    // PRINT HOW CLOSELY THE ANIMATION KEEPS TO TIME, AND WHETHER TO PRINT
+    // HOW LONG STARTUP TOOK
+    public static final String FRAME_MODE_PROPERTY = "asv.frames";
+    public static final String LOAD_REPORT_PROPERTY = "asv.load.report";
+    public static final String FRAME_REPORT_PROPERTY = "asv.frame.report";
+    public static final String STARTUP_REPORT_PROPERTY = "asv.startup.report";
+    
+    // SET TO indexed TO KEEP FRAMES OF 256 COLOURS OR FEWER AS INDEXED COLOUR
+    public static final String FRAME_STORAGE_PROPERTY = "asv.frame.storage";
+    public static final String INDEXED_FRAME_STORAGE = "indexed";
  
     // ArrayList for all of the sprites
     private ArrayList<Sprite> spriteList;
@@ -55,45 +116,83 @@ public class AnimatedSpriteViewer extends JFrame
     // ArrayList for type names
     private ArrayList<String> spriteTypeNames;
     
-    //Array list for Animation State
-    public ArrayList<String> spriteAnimationStates;
+    // WHERE THE SPRITE LIBRARY COMES FROM
+    private AssetSource assetSource;
     
-    // THIS WILL DO OUR XML FILE LOADING FOR US
-    private AnimatedSpriteXMLLoader xmlLoader;
+    // THESE LOAD SPRITE TYPES AND DECIDE WHICH SELECTIONS ARE WORTH LOADING
+    private SpriteTypeLoader spriteTypeLoader;
+    private SpriteSelectionController selectionController;
+    private MemoryBudgetCache<String, SpriteType> spriteTypeCache;
     
     // THE WEST WILL PROVIDE SPRITE TYPE AND ANIM STATE SELECTION CONTROLS
     private JPanel westOfSouthPanel;
     
-    // THIS WILL STORE A SELECTABLE LIST OF THE LOADED SPRITES
+    // THIS WILL STORE A SELECTABLE LIST OF THE LOADED SPRITES,
+    // WHICH THE FILTER FIELD NARROWS DOWN AS THE USER TYPES
+    private JPanel spriteTypesPanel;
+    private JTextField spriteTypeFilterField;
     private JScrollPane spriteTypesListJSP;
-    public JList spriteTypesList;//try later with private
-    private DefaultListModel spriteTypesListModel;
+    public JList<String> spriteTypesList;//try later with private
+    private SpriteTypeListModel spriteTypesListModel;
     
     // THIS WELL LET THE USER CHOOSE DIFFERENT ANIMATION STATES TO VIEW
     private JComboBox spriteStateCombobox;
     private DefaultComboBoxModel spriteStateComboBoxModel;
     
+    // AND THIS ONE CHOOSE BETWEEN THE COLOUR VARIANTS OF THE SPRITE TYPE
+    private JPanel comboBoxPanel;
+    private JComboBox<String> variantCombobox;
+    private DefaultComboBoxModel<String> variantComboBoxModel;
+    
     // THIS PANEL WILL ORGANIZE THE CENTER
     private JPanel southPanel;
     
     // THIS PANEL WILL RENDER OUR SPRITE
     private SceneRenderer sceneRenderingPanel;
     
+    // WHAT THE LAST CLICK IN THE SCENE SELECTED
+    private JLabel selectionLabel;
+    
+    // THIS FILLS IT FROM SCENE FILES, WHICH THE FILE MENU OPENS
+    private SceneLoader sceneLoader;
+    private JMenuItem openSceneItem;
+    
+    // THE VIEW MENU CAN SHOW EVERY STATE OF A TYPE AT ONCE, AND WHEN IT
+    // DOES, THIS IS THE TYPE WHOSE GRID IS IN THE SCENE
+    private JCheckBoxMenuItem allStatesItem;
+    private boolean showingAllStates;
+    private SpriteType gridSpriteType;
+    
+    // AND THIS ONE SHOWS EVERY POSE OF THE STATE BEING ANIMATED
+    private PoseFilmstrip poseFilmstrip;
+    private JScrollPane poseFilmstripJSP;
+    
     // THIS TOOLBAR WILL ALLOW THE USER TO CONTROL ANIMATION
     private JPanel animationToolbar;
     private JButton startButton,stopButton,slowDownButton,speedUpButton;
     
-    //Self-explanatory strings
-    public String directoryOfSprite,spriteType;
-    private String xmlOfSpriteType;
-    private ArrayList<String[][]> spriteAnimationAttributes;
+    // THE MOST RECENTLY LOADED SPRITE TYPE, WITH ITS ART AND TIMELINES
+    private SpriteType loadedSpriteType;
+    
+    // TRUE WHILE WE REFILL THE COMBO BOX, SO ITS EVENTS ARE IGNORED
+    private boolean fillingComboBox;
+    
+    // WHAT'S STILL LOADING IN THE BACKGROUND AT STARTUP, AND HOW LONG STARTUP TOOK
+    private ExecutorService startupExecutor;
+    private int startupTasksLeft;
+    private StartupLog startupLog;
     
     /**
      * The entire application will be initialized from here, including
      * the loading of all the sprite states from the xml file.
+     * 
+     * @param initAssetSource The sprite library to view.
      */
-    public AnimatedSpriteViewer()
+    public AnimatedSpriteViewer(AssetSource initAssetSource)
     {
+        assetSource = initAssetSource;
+        startupLog = new StartupLog();
+        startupLog.setReporting(Boolean.getBoolean(STARTUP_REPORT_PROPERTY));
         initWindow();
         initData();
         initGUI();
@@ -112,38 +211,221 @@ public class AnimatedSpriteViewer extends JFrame
     }
 
     /**
-     * Loads all the data needed for the sprite types. Note that we'll
-     * need all the sprite states, including their art and animations,
-     * loaded before we initialize the GUI.
+     * Sets up what loads the sprite data, without reading any of it yet.
+     * The sprite type list is streamed in by loadInBackground once the
+     * window is showing, and each sprite type, with its art and
+     * animations, loads when it's picked.
      */
     private void initData()
     {
         // WE'LL ONLY PUT ONE SPRITE IN THIS
         spriteList = new ArrayList<Sprite>();
         
-        // WE'LL PUT ALL THE SPRITE TYPES HERE
+        // WE'LL PUT ALL THE SPRITE TYPES HERE, ONCE loadInBackground HAS READ THEM
         spriteTypeNames = new ArrayList<String>();
         
-        // LOAD THE SPRITE TYPES FROM THE XML FILE
+        // SPRITE TYPES THEMSELVES LOAD LATER, AS THEY'RE PICKED
+        spriteTypeLoader = new SpriteTypeLoader(assetSource, openFrameCache(), createFrameConverter());
+        spriteTypeLoader.setReportingLoads(Boolean.getBoolean(LOAD_REPORT_PROPERTY));
+        spriteTypeLoader.setIndexedStorage(INDEXED_FRAME_STORAGE.equals(System.getProperty(FRAME_STORAGE_PROPERTY)));
+        spriteTypeCache = new MemoryBudgetCache<String, SpriteType>(SPRITE_TYPE_CACHE_BYTES);
+        selectionController = new SpriteSelectionController(this, spriteTypeLoader, spriteTypeCache);
+    }
+    
+    /**
+     * Loads the sprite type list and the button icons on background
+     * threads, side by side, so the window can be shown first. Sprite
+     * type names go into the list a batch at a time as they're read.
+     * Must be called on the event dispatch thread.
+     */
+    public void loadInBackground()
+    {
+        startupExecutor = Executors.newFixedThreadPool(STARTUP_THREADS, new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "StartupLoader");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        startupTasksLeft = 1 + BUTTON_ICON_FILES.length;
+        
+        // FIRST UP IS THE SPRITE TYPES LIST
+        startupExecutor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    AnimatedSpriteXMLLoader.streamSpriteTypeNames(assetSource, SPRITE_TYPE_LIST_FILE,
+                            new AnimatedSpriteXMLLoader.SpriteTypeNameListener()
+                    {
+                        @Override
+                        public void spriteTypeNamesFound(final List<String> names)
+                        {
+                            SwingUtilities.invokeLater(new Runnable()
+                            {
+                                @Override
+                                public void run()
+                                {
+                                    spriteTypeNames.addAll(names);
+                                    spriteTypesListModel.addNames(names);
+                                }
+                            });
+                        }
+                    });
+                }
+                catch(final InvalidXMLFileFormatException ixffe)
+                {
+                    SwingUtilities.invokeLater(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            // IF WE DON'T HAVE A VALID SPRITE TYPE 
+                            // LIST WE HAVE NOTHING TO DO, WE'LL POP
+                            // OPEN A DIALOG BOX SO THE USER KNOWS
+                            // WHAT HAPPENED
+                            JOptionPane.showMessageDialog(AnimatedSpriteViewer.this, ixffe.toString());
+                            System.exit(0);
+                        }
+                    });
+                }
+                catch(RuntimeException re)
+                {
+                    // WHATEVER WE GOT BEFORE IT BROKE IS STILL LISTED,
+                    // BUT THE USER NEEDS TO HEAR THE REST IS MISSING
+                    re.printStackTrace();
+                    final InvalidXMLFileFormatException reported
+                            = new InvalidXMLFileFormatException(SPRITE_TYPE_LIST_FILE, re.toString());
+                    SwingUtilities.invokeLater(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            showLoadError(reported);
+                        }
+                    });
+                }
+                finally
+                {
+                    startupTaskDone();
+                }
+            }
+        });
+        
+        // AND THE BUTTON ICONS
+        JButton[] buttons = { startButton, stopButton, slowDownButton, speedUpButton };
+        for (int i = 0; i < buttons.length; i++)
+        {
+            final JButton button = buttons[i];
+            final String iconFilename = BUTTON_ICON_FILES[i];
+            startupExecutor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        // THIS WAITS UNTIL THE IMAGE IS FULLY LOADED
+                        final ImageIcon icon = new ImageIcon(GUI_IMAGES_PATH + iconFilename);
+                        SwingUtilities.invokeLater(new Runnable()
+                        {
+                            @Override
+                            public void run()
+                            {
+                                button.setIcon(icon);
+                                animationToolbar.revalidate();
+                            }
+                        });
+                    }
+                    finally
+                    {
+                        startupTaskDone();
+                    }
+                }
+            });
+        }
+    }
+    
+    /**
+     * Called on a startup thread as each background task finishes. Once
+     * the last has, and the event dispatch thread has taken in everything
+     * they handed it, the viewer is fully usable.
+     */
+    private void startupTaskDone()
+    {
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                startupTasksLeft--;
+                if (startupTasksLeft == 0)
+                {
+                    startupExecutor.shutdown();
+                    startupLog.markInteractive(spriteTypeNames.size());
+                    if (Boolean.getBoolean(EXIT_WHEN_INTERACTIVE_PROPERTY))
+                        System.exit(0);
+                }
+            }
+        });
+    }
+    
+    /**
+     * Paints the window, noting the first time it's done.
+     * 
+     * @param g The graphics context to paint with.
+     */
+    @Override
+    public void paint(Graphics g)
+    {
+        super.paint(g);
+        startupLog.markFirstPaint();
+    }
+    
+    /**
+     * Opens the on-disk cache of decoded pixels, in the directory named
+     * by the asv.frame.cache system property or under the user's home
+     * directory if that isn't set.
+     * 
+     * @return The cache, or null if it can't be opened, in which case
+     * every image is simply decoded.
+     */
+    private DecodedFrameCache openFrameCache()
+    {
+        String location = System.getProperty(FRAME_CACHE_PROPERTY);
+        Path directory = (location != null)
+                ? Paths.get(location)
+                : Paths.get(System.getProperty("user.home"), DEFAULT_FRAME_CACHE);
         try
         {
-            // THIS WILL LOAD AND VALIDATE
-            // OUR XML FILES
-            xmlLoader = new AnimatedSpriteXMLLoader(this);
-            
-            // FIRST UP IS THE SPRITE TYPES LIST
-            //                       "./data/sprite_types/"   "sprite_type_list.xml"   Empty ArrayList of Strings     
-            xmlLoader.loadSpriteTypeNames(SPRITES_DATA_PATH,SPRITE_TYPE_LIST_FILE, spriteTypeNames);
+            return new DecodedFrameCache(directory, FRAME_CACHE_BYTES);
         }
-        catch(InvalidXMLFileFormatException ixffe)
+        catch(IOException ioe)
         {
-            // IF WE DON'T HAVE A VALID SPRITE TYPE 
-            // LIST WE HAVE NOTHING TO DO, WE'LL POP
-            // OPEN A DIALOG BOX SO THE USER KNOWS
-            // WHAT HAPPENED
-            JOptionPane.showMessageDialog(this, ixffe.toString());
-            System.exit(0);
+            ioe.printStackTrace();
+            return null;
+        }
+    }
+    
+    /**
+     * Sets up the conversion of sprite art for the screen we'll be
+     * showing it on, in the mode named by the asv.frames system property.
+     * 
+     * @return The frame converter.
+     */
+    private FrameConverter createFrameConverter()
+    {
+        GraphicsConfiguration gc = null;
+        if (!GraphicsEnvironment.isHeadless())
+        {
+            gc = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
         }
+        return new FrameConverter(gc, System.getProperty(FRAME_MODE_PROPERTY, FrameConverter.MODE_COMPATIBLE));
     }
     
     /**
@@ -152,20 +434,22 @@ public class AnimatedSpriteViewer extends JFrame
      */
     private void initGUI()
     {
-        // NOTE THAT WE'VE ALREADY LOADED THE XML FILE
-        // WITH ALL THE SPRITE TYPES, SO WE CAN USE
-        // THEM HERE TO POPULATE THE JList
-        spriteTypesListModel = new DefaultListModel();
-        Iterator<String> spriteTypeNamesIt = spriteTypeNames.iterator();
-        while (spriteTypeNamesIt.hasNext())
-        {
-            String spriteTypeName = spriteTypeNamesIt.next();
-            spriteTypesListModel.addElement(spriteTypeName);
-        }
-        spriteTypesList = new JList();
+        // THE JList STARTS OUT EMPTY, AND FILLS UP AS loadInBackground
+        // READS THE SPRITE TYPES LIST
+        spriteTypesListModel = new SpriteTypeListModel();
+        spriteTypesList = new JList<String>();
         
         spriteTypesList.setModel(spriteTypesListModel);
+        // A PROTOTYPE CELL SAVES THE LIST MEASURING EVERY NAME
+        spriteTypesList.setPrototypeCellValue(SPRITE_TYPE_PROTOTYPE_TEXT);
+        spriteTypesList.setVisibleRowCount(SPRITE_TYPE_VISIBLE_ROWS);
         spriteTypesListJSP = new JScrollPane(spriteTypesList);
+        spriteTypeFilterField = new JTextField();
+        spriteTypeFilterField.setToolTipText("Type the start of a sprite type's name");
+        spriteTypesPanel = new JPanel();
+        spriteTypesPanel.setLayout(new BorderLayout());
+        spriteTypesPanel.add(spriteTypeFilterField, BorderLayout.NORTH);
+        spriteTypesPanel.add(spriteTypesListJSP, BorderLayout.CENTER);
         
         // OUR COMBO BOX STARTS OUT EMPTY
         spriteStateComboBoxModel = new DefaultComboBoxModel();        
@@ -176,35 +460,42 @@ public class AnimatedSpriteViewer extends JFrame
         //Temporarily disables the ComboBox until the list of sprites is clicked on.
         spriteStateCombobox.setEnabled(false);
         
+        // THE VARIANTS TOO, UNTIL A TYPE THAT HAS SOME IS LOADED
+        variantComboBoxModel = new DefaultComboBoxModel<String>();
+        variantCombobox = new JComboBox<String>();
+        variantCombobox.setModel(variantComboBoxModel);
+        variantComboBoxModel.addElement(ORIGINAL_COLOURS_TEXT);
+        variantCombobox.setEnabled(false);
+        comboBoxPanel = new JPanel();
+        comboBoxPanel.setLayout(new GridLayout(2, 1));
+        comboBoxPanel.add(spriteStateCombobox);
+        comboBoxPanel.add(variantCombobox);
+        
         // NOW LET'S ARRANGE ALL OUR CONTROLS IN THE WEST
         westOfSouthPanel = new JPanel();
         westOfSouthPanel.setLayout(new BorderLayout());
-        westOfSouthPanel.add(spriteTypesList, BorderLayout.NORTH);
-        westOfSouthPanel.add(spriteStateCombobox, BorderLayout.SOUTH);
+        westOfSouthPanel.add(spriteTypesPanel, BorderLayout.NORTH);
+        westOfSouthPanel.add(comboBoxPanel, BorderLayout.SOUTH);
         
         // AND LET'S PUT A TITLED BORDER AROUND THE WEST OF THE SOUTH
         Border etchedBorder = BorderFactory.createEtchedBorder();
         Border titledBorder = BorderFactory.createTitledBorder(etchedBorder, "Sprite Type");
         westOfSouthPanel.setBorder(titledBorder);       
         
-        // NOW THE STUFF FOR THE SOUTH INCLUDING ALL THE BUTTONS
+        // NOW THE STUFF FOR THE SOUTH INCLUDING ALL THE BUTTONS,
+        // WHOSE ICONS loadInBackground WILL FILL IN
         animationToolbar = new JPanel();         
-        MediaTracker mt = new MediaTracker(this);
-        startButton = initButton(   "StartAnimationButton.png",     "Start Animation",      mt, 0, animationToolbar);
-        stopButton = initButton(   "StopAnimationButton.png",     "Start Animation",      mt, 0, animationToolbar);
-        slowDownButton = initButton(   "SlowDownAnimationButton.png",     "Start Animation",      mt, 0, animationToolbar);
-        speedUpButton = initButton(   "SpeedUpAnimationButton.png",     "Start Animation",      mt, 0, animationToolbar);
-        try{
-            mt.waitForAll(); 
-        }
-        catch(InterruptedException ie){
-            ie.printStackTrace(); 
-        }
+        startButton = initButton(   "Start Animation",      animationToolbar);
+        stopButton = initButton(   "Start Animation",      animationToolbar);
+        slowDownButton = initButton(   "Start Animation",      animationToolbar);
+        speedUpButton = initButton(   "Start Animation",      animationToolbar);
 
         // LET'S PUT OUR STUFF IN THE SOUTH
         southPanel = new JPanel();
         southPanel.add(westOfSouthPanel);
         southPanel.add(animationToolbar);
+        selectionLabel = new JLabel(NOTHING_SELECTED_TEXT);
+        southPanel.add(selectionLabel);
         
         
         //make north and south
@@ -214,79 +505,250 @@ public class AnimatedSpriteViewer extends JFrame
         // AND OF COURSE OUR RENDERING PANEL
         sceneRenderingPanel = new SceneRenderer(spriteList);
         sceneRenderingPanel.setBackground(Color.white);
+        sceneRenderingPanel.setReportingFrames(Boolean.getBoolean(FRAME_REPORT_PROPERTY));
         sceneRenderingPanel.startScene();
         sceneRenderingPanel.unpauseScene();
+        sceneLoader = new SceneLoader(this, sceneRenderingPanel, selectionController,
+                                      assetSource, SCENE_SCHEMA_FILE);
+        sceneLoader.setReportingLoads(Boolean.getBoolean(LOAD_REPORT_PROPERTY));
+        
+        // THE MENU, FOR WHAT DOESN'T NEED A BUTTON
+        openSceneItem = new JMenuItem("Open Scene...");
+        JMenu fileMenu = new JMenu("File");
+        fileMenu.add(openSceneItem);
+        allStatesItem = new JCheckBoxMenuItem("All States");
+        JMenu viewMenu = new JMenu("View");
+        viewMenu.add(allStatesItem);
+        JMenuBar menuBar = new JMenuBar();
+        menuBar.add(fileMenu);
+        menuBar.add(viewMenu);
+        setJMenuBar(menuBar);
+        
+        // THE FILMSTRIP ONLY PAINTS THE POSES SCROLLED INTO VIEW
+        poseFilmstrip = new PoseFilmstrip(new ThumbnailCache(ThumbnailCache.DEFAULT_THUMBNAIL_SIZE,
+                                                             ThumbnailCache.DEFAULT_MAX_BYTES));
+        poseFilmstripJSP = new JScrollPane(poseFilmstrip,
+                JScrollPane.VERTICAL_SCROLLBAR_NEVER, JScrollPane.HORIZONTAL_SCROLLBAR_ALWAYS);
         
         // AND LET'S ARRANGE EVERYTHING IN THE FRAME
+        add(poseFilmstripJSP, BorderLayout.NORTH);
         add(sceneRenderingPanel, BorderLayout.CENTER);
         add(southPanel, BorderLayout.SOUTH);
     }
     
     /**
-     * This helper method fills the combo box with the poses of the sprite clicked on and gets the attributes for later.
+     * This method is called when the user picks a sprite type in the
+     * list. The selection controller loads it in the background and
+     * calls fillComboBox once it's ready.
+     * 
+     * @param indexOfName Index of the sprite type's name in the list.
+     */
+    public void selectSpriteType(int indexOfName)
+    {
+        if ((indexOfName < 0) || (indexOfName >= spriteTypesListModel.getSize()))
+            return;
+        // THE TYPES AROUND THIS ONE ARE THE LIKELY NEXT PICKS, SO PRELOAD THEM
+        selectionController.requestSpriteType(spriteTypesListModel.getNameAt(indexOfName),
+                SpriteSelectionController.neighboursOf(spriteTypesListModel.getVisibleNames(), indexOfName, PRELOAD_RADIUS));
+    }
+    
+    /**
+     * This method is called as the user types in the filter field. Only
+     * the sprite types whose names start with what's typed stay listed.
+     * 
+     * @param prefix What's in the filter field.
+     */
+    public void filterSpriteTypes(String prefix)
+    {
+        spriteTypesListModel.setFilter(prefix.trim());
+    }
+    
+    /**
+     * Moves the sprite type selection up or down the list, as when the
+     * user presses the up or down arrow key.
+     * 
+     * @param step How many places to move, negative for up.
+     */
+    public void browseSpriteTypes(int step)
+    {
+        int size = spriteTypesListModel.getSize();
+        if (size == 0)
+            return;
+        int index = spriteTypesList.getSelectedIndex();
+        index = (index < 0) ? 0 : Math.max(0, Math.min(size - 1, index + step));
+        spriteTypesList.setSelectedIndex(index);
+        spriteTypesList.ensureIndexIsVisible(index);
+        selectSpriteType(index);
+    }
+    
+    /**
+     * Moves the animation state selection back or forward through the
+     * combo box, as when the user presses the left or right arrow key.
+     * The combo box fires its usual event, which shows the new state.
+     * 
+     * @param step How many places to move, negative for back.
+     */
+    public void browseAnimationStates(int step)
+    {
+        // ENTRY 0 IS THE "Select Animation State" PROMPT, SO SKIP IT
+        int size = spriteStateComboBoxModel.getSize();
+        if (!spriteStateCombobox.isEnabled() || (size < 2))
+            return;
+        int index = spriteStateCombobox.getSelectedIndex();
+        index = (index < 1) ? 1 : Math.max(1, Math.min(size - 1, index + step));
+        spriteStateCombobox.setSelectedIndex(index);
+    }
+    
+    /**
+     * This method is called when the user picks an animation state in
+     * the combo box. Events fired while we refill the combo box ourselves
+     * are not user choices, so they are ignored.
+     * 
+     * @param state Name of the animation state picked.
+     */
+    public void selectAnimationState(String state)
+    {
+        if (fillingComboBox || SELECT_ANIMATION_TEXT.equals(state))
+            return;
+        selectionController.requestState(state);
+    }
+    
+    /**
+     * This method is called when the user picks a colour variant in its
+     * combo box. Like animation states, events fired while we refill the
+     * combo box ourselves are ignored.
+     * 
+     * @param variant Name of the variant picked.
+     */
+    public void selectVariant(String variant)
+    {
+        if (fillingComboBox)
+            return;
+        selectionController.requestVariant(ORIGINAL_COLOURS_TEXT.equals(variant) ? null : variant);
+    }
+    
+    /**
+     * This helper method fills the combo boxes with the animation states
+     * and colour variants of a freshly loaded sprite type.
      * 
-     * @param indexOfName Contains the index of the name of the sprite to load the poses of into the combo box.
+     * @param spriteType The sprite type whose states to list.
+     * 
+     * @param state The animation state to go on showing, as when only
+     * the variant changed, or null to let the user pick one.
      */
-    public void fillComboBox(int indexOfName)
+    public void fillComboBox(SpriteType spriteType, String state)
     {
+        loadedSpriteType = spriteType;
+        fillingComboBox = true;
         spriteStateComboBoxModel.removeAllElements();
         spriteStateComboBoxModel.addElement(SELECT_ANIMATION_TEXT);
-        //INITIALIZE THE ARRAYLIST THAT loadSpriteAnimationStatesAndAttributes needs
-        spriteAnimationStates = new ArrayList<String>();
-        spriteAnimationAttributes = new ArrayList<String[][]>();
-        //USE THESE STRINGS FOR PARAMETERS IN loadSpriteAnimationStatesAndAttributes
-        spriteType = spriteTypeNames.get(indexOfName);
-        directoryOfSprite = SPRITES_DATA_PATH;
-        directoryOfSprite += spriteType;
-        directoryOfSprite += "/";
-        xmlOfSpriteType = spriteType; 
-        xmlOfSpriteType += ".xml";
-        try{
-            // THIS WILL LOAD AND VALIDATE
-            // OUR XML FILES
-            xmlLoader = new AnimatedSpriteXMLLoader(this);
-            // FIRST UP ARE THE ANIMATIONS STATES AND ATTRIBUTES
-            xmlLoader.loadSpriteAnimationStatesAndAttributes(directoryOfSprite, xmlOfSpriteType, spriteAnimationStates, spriteAnimationAttributes);        
-        }
-        catch(InvalidXMLFileFormatException ixffe){
-            // IF WE DON'T HAVE A VALID SPRITE TYPE 
-            // LIST WE HAVE NOTHING TO DO, WE'LL POP
-            // OPEN A DIALOG BOX SO THE USER KNOWS
-            // WHAT HAPPENED
-            JOptionPane.showMessageDialog(this, ixffe.toString());
-            System.exit(0);
-        }
         //PUT ALL OF THE ANIMATION STATES INTO THE COMBO BOX
-        for(int eachAnimationState=0;eachAnimationState<spriteAnimationStates.size();eachAnimationState++)
-            spriteStateComboBoxModel.addElement(spriteAnimationStates.get(eachAnimationState));
-        //Put a listener on the combo box
-        MeyeActionListener actionListener = new MeyeActionListener(this);
-        spriteStateCombobox.addActionListener(actionListener);
+        List<String> states = spriteType.getStateNames();
+        for(int eachAnimationState=0;eachAnimationState<states.size();eachAnimationState++)
+            spriteStateComboBoxModel.addElement(states.get(eachAnimationState));
+        if (state != null)
+            spriteStateComboBoxModel.setSelectedItem(state);
+        //AND THE VARIANTS, WITH THE ONE THIS TYPE IS SELECTED
+        variantComboBoxModel.removeAllElements();
+        variantComboBoxModel.addElement(ORIGINAL_COLOURS_TEXT);
+        ArrayList<String> variants = spriteType.getVariantNames();
+        for(int eachVariant=0;eachVariant<variants.size();eachVariant++)
+            variantComboBoxModel.addElement(variants.get(eachVariant));
+        int separator = spriteType.getName().indexOf(SpriteVariant.NAME_SEPARATOR);
+        if (separator >= 0)
+            variantComboBoxModel.setSelectedItem(spriteType.getName().substring(separator + SpriteVariant.NAME_SEPARATOR.length()));
+        fillingComboBox = false;
         spriteStateCombobox.setEnabled(true);
+        variantCombobox.setEnabled(!variants.isEmpty());
+        if (state != null)
+            loadSprite(spriteType, state);
+        else if (showingAllStates)
+            loadAllStates(spriteType, null);
+        else
+            poseFilmstrip.showTimeline(null, null);
+    }
+    
+    /**
+     * This method is called when the user ticks or unticks All States in
+     * the View menu. Ticked, every animation state of the loaded sprite
+     * type plays at once in a grid; unticked, only the state picked in
+     * the combo box does.
+     * 
+     * @param show true to show every state.
+     */
+    public void showAllStates(boolean show)
+    {
+        showingAllStates = show;
+        gridSpriteType = null;
+        if (loadedSpriteType == null)
+            return;
+        Object selected = spriteStateComboBoxModel.getSelectedItem();
+        String state = ((selected == null) || SELECT_ANIMATION_TEXT.equals(selected)) ? null : selected.toString();
+        if (show)
+            loadAllStates(loadedSpriteType, state);
+        else if (state != null)
+            loadSprite(loadedSpriteType, state);
+        else
+        {
+            sceneRenderingPanel.removeAllSprites();
+            sceneRenderingPanel.setSpriteArrayEngine(null);
+        }
+    }
+    
+    /**
+     * This method is called when the user clicks in the scene. The
+     * sprite clicked on, if any, is described in the selection label.
+     * 
+     * @param screenPoint Where the click was, on the scene panel.
+     */
+    public void selectSpriteAt(Point screenPoint)
+    {
+        String description = sceneRenderingPanel.describeSpriteAt(screenPoint);
+        selectionLabel.setText((description == null) ? NOTHING_SELECTED_TEXT : description);
+    }
+    
+    /**
+     * This method is called when the user picks Open Scene... from the
+     * File menu. The scene picked replaces what's showing, and fills in
+     * as it loads.
+     */
+    public void openScene()
+    {
+        JFileChooser chooser = new JFileChooser(SCENES_DATA_PATH);
+        chooser.setFileFilter(new FileNameExtensionFilter("Scene files", "xml"));
+        if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION)
+        {
+            // THE SCENE REPLACES ANY GRID, SO THE NEXT PICK LAYS IT OUT AGAIN
+            gridSpriteType = null;
+            sceneLoader.loadScene(chooser.getSelectedFile().toPath());
+        }
     }
     
     /**
-     * This is a helper method for making a button. It loads the image and sets
-     * it as the button image. It then puts it in the panel.
+     * Tells the user a sprite type could not be loaded.
+     * 
+     * @param ixffe What went wrong.
+     */
+    public void showLoadError(InvalidXMLFileFormatException ixffe)
+    {
+        // A BAD SPRITE TYPE DOESN'T STOP US VIEWING THE OTHERS,
+        // BUT THE USER SHOULD KNOW WHAT HAPPENED
+        JOptionPane.showMessageDialog(this, ixffe.toString());
+    }
+    
+    /**
+     * This is a helper method for making a button. Its image is loaded
+     * later, by loadInBackground. It then puts it in the panel.
      * 
-     * @param iconFilename Image for button
      * @param tooltip Tooltip for button
-     * @param mt Used for batch loading of images
-     * @param id Numeric id of image to help with batch loading
      * @param panel The container to place the button into
      * 
      * @return The fully constructed button, ready for use.
      */
-    private JButton initButton(String iconFilename, String tooltip, MediaTracker mt, int id, JPanel panel)
+    private JButton initButton(String tooltip, JPanel panel)
     {
-        // LOAD THE IMAGE
-        Toolkit tk = Toolkit.getDefaultToolkit();
-        Image img = tk.getImage(GUI_IMAGES_PATH + iconFilename);
-        mt.addImage(img, id);
-        
-        // AND USE IT TO BUILD THE BUTTON
-        ImageIcon ii = new ImageIcon(img);
-        JButton button = new JButton(ii);
+        // BUILD THE BUTTON, FOR NOW WITHOUT ITS IMAGE
+        JButton button = new JButton();
         button.setToolTipText(tooltip);
         
         // LET'S PUT A LITTLE BUFFER AROUND THE IMAGE AND THE EDGE OF THE BUTTON
@@ -306,13 +768,21 @@ public class AnimatedSpriteViewer extends JFrame
      */
     private void initHandlers()
     {
-        /* Note the handler for the combo box has to be added after the JListHandler
-         * is clicked on so it is within the method fillComboBox().
-         */
-        
         // CONSTRUCT AND REGISTER ALL THE HANDLERS FOR THE JLIST
         JListHaandler jListListener = new JListHaandler(this);
         spriteTypesList.addMouseListener(jListListener);
+        spriteTypeFilterField.getDocument().addDocumentListener(new SpriteTypeFilterHandler(this));
+        // THE COMBO BOX GETS EXACTLY ONE LISTENER FOR THE WHOLE SESSION
+        MeyeActionListener actionListener = new MeyeActionListener(this);
+        spriteStateCombobox.addActionListener(actionListener);
+        variantCombobox.addActionListener(new VariantComboBoxHandler(this));
+        // THE ARROW KEYS BROWSE TYPES AND STATES FROM ANYWHERE IN THE WINDOW,
+        // INCLUDING FROM THE LIST AND COMBO BOX, WHICH WOULD OTHERWISE
+        // CHANGE THEIR SELECTION WITHOUT LOADING ANYTHING
+        bindBrowseKey("UP", new KeyboardBrowseHandler(this, false, -1));
+        bindBrowseKey("DOWN", new KeyboardBrowseHandler(this, false, 1));
+        bindBrowseKey("LEFT", new KeyboardBrowseHandler(this, true, -1));
+        bindBrowseKey("RIGHT", new KeyboardBrowseHandler(this, true, 1));
         // CONSTRUCT AND REGISTER ALL THE HANDLERS FOR THE BUTTONS
         StartAnimationHandler startah = new StartAnimationHandler(sceneRenderingPanel);
         startButton.addActionListener(startah);
@@ -322,180 +792,153 @@ public class AnimatedSpriteViewer extends JFrame
         slowDownButton.addActionListener(slowah);
         SpeedUpAnimationHaandler speedah = new SpeedUpAnimationHaandler(sceneRenderingPanel);
         speedUpButton.addActionListener(speedah);
+        openSceneItem.addActionListener(new OpenSceneHandler(this));
+        allStatesItem.addActionListener(new AllStatesHandler(this));
+        // THE MOUSE ZOOMS AND PANS THE SCENE
+        ViewportMouseHandler viewportah = new ViewportMouseHandler(sceneRenderingPanel);
+        sceneRenderingPanel.addMouseListener(viewportah);
+        sceneRenderingPanel.addMouseMotionListener(viewportah);
+        sceneRenderingPanel.addMouseWheelListener(viewportah);
+        // AND A CLICK SELECTS THE SPRITE UNDER IT
+        sceneRenderingPanel.addMouseListener(new SpriteClickHandler(this));
     }
+    
     /**
-     * This helper method fills the combo box with the poses of the sprite clicked on and gets the attributes for later.
+     * This helper binds a key to a browsing action for the whole window.
      * 
-     * @param indexOfName Contains the index of the name of the sprite to load the poses of into the combo box.
+     * @param keyStroke The key, as understood by KeyStroke.getKeyStroke.
+     * @param action What to do when it's pressed.
      */
-    public ArrayList<String> getFileNames(ArrayList<Integer> numberOfImagesForEachState)
+    private void bindBrowseKey(String keyStroke, Action action)
     {
-        ArrayList<String> names = new ArrayList<String>();
-        try{
-            // THIS WILL LOAD AND VALIDATE
-            // OUR XML FILES
-            xmlLoader = new AnimatedSpriteXMLLoader(this);
-            //NEXT UP ARE THE NUMBERS OF IMAGES FOR EVERY STATE
-            xmlLoader.loadFileNames(directoryOfSprite, xmlOfSpriteType, numberOfImagesForEachState,names);        
-        }
-        catch(InvalidXMLFileFormatException ixffe){
-            // IF WE DON'T HAVE A VALID SPRITE TYPE 
-            // LIST WE HAVE NOTHING TO DO, WE'LL POP
-            // OPEN A DIALOG BOX SO THE USER KNOWS
-            // WHAT HAPPENED
-            JOptionPane.showMessageDialog(this, ixffe.toString());
-            System.exit(0);
-        }
-        return names;
+        KeyStroke key = KeyStroke.getKeyStroke(keyStroke);
+        String actionName = "browse" + keyStroke;
+        getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(key, actionName);
+        getRootPane().getActionMap().put(actionName, action);
+        spriteTypesList.getInputMap(JComponent.WHEN_FOCUSED).put(key, actionName);
+        spriteTypesList.getActionMap().put(actionName, action);
+        spriteStateCombobox.getInputMap(JComponent.WHEN_ANCESTOR_OF_FOCUSED_COMPONENT).put(key, actionName);
+        spriteStateCombobox.getActionMap().put(actionName, action);
     }
+    
     /**
-     * This helper method loads our player, including its art and poses
-     * and then initializing the player sprite and then adding it to
-     * the scene.
+     * This helper method puts our player, an already loaded sprite type in
+     * the chosen state, into the scene in place of whatever was there.
+     * 
+     * @param spriteType The loaded sprite type, including its art and poses.
+     * 
+     * @param state The animation state to show.
      */
-    public void loadSprite(String state,String type_man, String pathOfMan)
+    public void loadSprite(SpriteType spriteType, String state)
     {
-        //Loads the spirte type
-        SpriteType duhSprite = loadSpriteType(pathOfMan);//type_man,
-        
-        //Turns the string state into the AnimationState state
-        AnimationState aniState = AnimationState.valueOf(state);
+        // IN THE ALL STATES GRID THIS STATE IS ALREADY PLAYING
+        if (showingAllStates)
+        {
+            loadAllStates(spriteType, state);
+            return;
+        }
+        loadedSpriteType = spriteType;
+        gridSpriteType = null;
         
         // NOW LET'S INIT OUR PLAYER SPRITE
-        Sprite player = new Sprite(duhSprite, aniState);
+        Sprite player = new Sprite(spriteType, state);
         player.setPositionX(250);
         player.setPositionY(250);
         player.setVelocityX(0);
         player.setVelocityY(0);
         
-        //CLEARS DUH SPRITE LIST SO ONLY ONE GETS ANIMATED
-        spriteList.clear();//yeahhh
+        //CLEARS DUH SCENE SO ONLY ONE GETS ANIMATED
+        sceneRenderingPanel.removeAllSprites();
+        sceneRenderingPanel.setSpriteArrayEngine(null);
         // AND PUT THE PLAYER IN THE SCENE
-        spriteList.add(player);
+        sceneRenderingPanel.addSprite(player);
+        // AND SHOW ALL ITS POSES IN THE FILMSTRIP
+        poseFilmstrip.showTimeline(spriteType, state);
     }
     
-   private SpriteType loadSpriteType(String pathOfMan)//String type_man, 
-   {
-        // WE'LL USE THESE TO INITIALIZE OUR SPRITE TYPE
-        ArrayList<AnimationState> listOfAnimationStates = new ArrayList<AnimationState>();
-        
-        
-        
-        
-        //Adds all of those animation states in Animation State form (not String form like spriteAnimationStates)
-        for(int index=0;index<spriteAnimationStates.size();index++)
-            listOfAnimationStates.add(AnimationState.valueOf(spriteAnimationStates.get(index)));
-        
-        // WE NEED THE TRACKER TO ENSURE FULL IMAGE LOADING
-        MediaTracker tracker = new MediaTracker(this);
-        
-        // AND HERE'S THE ACTUAL SPRITE TYPE
-        SpriteType man = new SpriteType();
-        
-        
-        
-        
-        //Add all of the images
-        for (int eachAnimationState = 0; eachAnimationState < listOfAnimationStates.size(); eachAnimationState++){
-            // CREATE A NEW LIST
-            PoseList poseList = man.addPoseList(listOfAnimationStates.get(eachAnimationState));
-            //Get the two-dimensional attribute array for each animation state.
-            String[][] array = spriteAnimationAttributes.get(eachAnimationState);
-            //For every imageID there is going to be a duration so we'll just get the length of how many imageIDs there are.
-            String[] imageIDsArray = array[1];
-            int howManyImageIDs = imageIDsArray.length;
-            
-            //For how ever many durations/imageIDs there are add them to the postList.
-            for(int eachAttribute=0;eachAttribute<howManyImageIDs;eachAttribute++)
-                poseList.addPose(Integer.parseInt(array[1][eachAttribute]),Integer.parseInt(array[0][eachAttribute]));
-            ArrayList<Integer> imageIDsArrayList = new ArrayList<Integer>();
-            for(int i=0;i<howManyImageIDs;i++)
-                imageIDsArrayList.add(Integer.parseInt(imageIDsArray[i]));
-            ArrayList<Integer> uniqueIDList = new ArrayList<Integer>();
-            for(int eachImageID=0;eachImageID<howManyImageIDs;eachImageID++)
-                if(!uniqueIDList.contains(imageIDsArrayList.get(eachImageID)))
-                    uniqueIDList.add(imageIDsArrayList.get(eachImageID));
-            
-            //Make sure the file names are in sync with the imageIDs
-            Collections.sort(uniqueIDList);
-            //Get's the number of images for each state.
-            ArrayList<String> names = getFileNames(uniqueIDList);
-            
-            // AND NOW LOAD THE IMAGES
-            for (int i=0; i<names.size(); i++)
-            {
-                //Get file name
-                String fileName = names.get(i);
-                // LOAD THE IMAGE
-                Image img = loadImageInBatch(pathOfMan, fileName, tracker, uniqueIDList.get(i));
-                
-                // GIVE IT TO THE SPRITE TYPE
-                man.addImage(uniqueIDList.get(i), img);
-            }
-        }
-        
-        // WE BATCH LOADED THE SPRITES. BELOW THE MEDIA TRACKER
-        // MAKES SURE ALL OF THEM ARE FULLY IN MEMORY BEFORE
-        // WE GO ON. IT WAITS FOR THEM SO THAT THE APP DOESN'T
-        // START WITHOUT THEM. THIS IS BECAUSE Java's METHODS
-        // FOR LOADING AN IMAGE WORK ASYNCHRONOUSLY IN THE BACKGROUND,
-        // i.e. ANOTHER THREAD
-        try
-        {
-            tracker.waitForAll();
-        }
-        catch(InterruptedException ie)
-        {
-            // THIS SHOULD NEVER HAPPEN, BUT WE SHOULD AT LEAST PRINT THE
-            // STACK TRACE JUST IN CASE THE IMPOSSIBLE IS MADE POSSIBLE
-            ie.printStackTrace();
-        }
-        
-        // RETURN OUR NEWLY CONSTRUCTED SPRITE TYPE FOR USE
-        return man; 
-    }
-   
     /**
-     * This method is used to load an individual image among many
-     * in a batch. The reason for batch loading is to use a single
-     * MediaTracker to ensure that all images in the batch are fully
-     * loaded before continuing.
-     * 
-     * @param path Relative path to the image location from the working directory.
+     * This helper method fills the scene with one sprite per animation
+     * state of a loaded sprite type, laid out in a grid as wide as the
+     * scene panel. They all share the type's frames and are added at
+     * once, so they run off the same tick of the scene clock and are
+     * drawn in the same paint as any single sprite. A grid that's
+     * already showing this type is left running, and only the filmstrip
+     * follows the state picked.
      * 
-     * @param fileName File name of the image to load
+     * @param spriteType The loaded sprite type, including its art and poses.
      * 
-     * @param tracker The MediaTracker to ensure the image is fully loaded.
-     * 
-     * @param id A unique number for the image so the tracker can identify it.
-     * 
-     * @return A reference to the Image represented by the path + fileName.
+     * @param state The animation state to show in the filmstrip, or null
+     * for none.
      */
-    private Image loadImageInBatch( String path,
-                                    String fileName,
-                                    MediaTracker tracker,
-                                    int id)
+    private void loadAllStates(SpriteType spriteType, String state)
     {
-        Toolkit tk = Toolkit.getDefaultToolkit();//CToolKit
-        String fullFileNameWithPath = path + fileName;
-        System.out.println("hi");
-
-        Image ibsfmwl = tk.getImage(fullFileNameWithPath);
-        Image img = tk.getImage(fullFileNameWithPath);
-        tracker.addImage(img, id);
-        return img;
+        loadedSpriteType = spriteType;
+        poseFilmstrip.showTimeline((state == null) ? null : spriteType, state);
+        if (gridSpriteType == spriteType)
+            return;
+        gridSpriteType = spriteType;
+        
+        // EVERY CELL IS AS BIG AS THE TYPE'S BIGGEST UNTRIMMED FRAME
+        int cellWidth = 1;
+        int cellHeight = 1;
+        for (Integer imageId : spriteType.getImageIds())
+        {
+            cellWidth = Math.max(cellWidth, spriteType.getFrame(imageId).getSourceWidth());
+            cellHeight = Math.max(cellHeight, spriteType.getFrame(imageId).getSourceHeight());
+        }
+        int stateCount = spriteType.getStates().size();
+        int columns = (sceneRenderingPanel.getWidth() - GRID_MARGIN) / (cellWidth + GRID_GAP);
+        if (columns < 1)
+            columns = (int)Math.ceil(Math.sqrt(stateCount));
+        
+        // ONE SPRITE PER STATE, BY HANDLE, IN THE ORDER THE XML LISTS THEM
+        ArrayList<Sprite> cells = new ArrayList<Sprite>(stateCount);
+        for (int stateHandle = 0; stateHandle < stateCount; stateHandle++)
+        {
+            Sprite cell = new Sprite(spriteType, stateHandle);
+            cell.setPositionX(GRID_MARGIN + (stateHandle % columns) * (cellWidth + GRID_GAP));
+            cell.setPositionY(GRID_MARGIN + (stateHandle / columns) * (cellHeight + GRID_GAP));
+            cells.add(cell);
+        }
+        sceneRenderingPanel.removeAllSprites();
+        sceneRenderingPanel.setSpriteArrayEngine(null);
+        sceneRenderingPanel.addSprites(cells);
     }
     
     /**
      * This is where this app starts. The main method just constructs
      * the frame and then sets it visible, handing off control to Swing.
      * 
-     * @param args 
+     * @param args Optionally, where the sprite library is. By default
+     * it's ./data/sprite_types/
      */
     public static void main(String[] args)
     {
-        // START IT UP
-        AnimatedSpriteViewer appWindow = new AnimatedSpriteViewer();
-        appWindow.setVisible(true);
+        // OPEN THE SPRITE LIBRARY, WHEREVER IT IS
+        String location = (args.length > 0) ? args[0] : SPRITES_DATA_PATH;
+        AssetSource source = null;
+        try
+        {
+            source = AssetSources.open(location);
+        }
+        catch(IOException ioe)
+        {
+            // NO LIBRARY, NOTHING TO VIEW
+            JOptionPane.showMessageDialog(null, ioe.toString());
+            System.exit(0);
+        }
+        
+        // START IT UP, SHOWING THE WINDOW BEFORE ANYTHING SLOW IS LOADED
+        final AssetSource library = source;
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                AnimatedSpriteViewer appWindow = new AnimatedSpriteViewer(library);
+                appWindow.setVisible(true);
+                appWindow.loadInBackground();
+            }
+        });
     }
 }
\ No newline at end of file
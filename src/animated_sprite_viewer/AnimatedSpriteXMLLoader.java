@@ -1,19 +1,36 @@
 package animated_sprite_viewer;
 
-import java.io.File;
+import animated_sprite_viewer.assets.AssetSource;
+import animated_sprite_viewer.renderer.SpriteVariant;
+import java.awt.Rectangle;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
 import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
+import javax.xml.validation.ValidatorHandler;
 import org.w3c.dom.Document;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * The AnimatedSpriteXMLLoader class knows how to load and 
@@ -42,6 +59,7 @@ public class AnimatedSpriteXMLLoader
     
     // DON'T BURY IMPORTANT STRING CONSTANTS INSIDE METHODS
     public static final String SCHEMA_STANDARD_SPEC_URL = "http://www.w3.org/2001/XMLSchema";
+    public static final String SPRITE_TYPE_SCHEMA_FILE = "sprite_type.xsd";
     public static final String SPRITE_TYPE_LIST_NODE_NAME = "sprite_type_list";
     public static final String SPRITE_TYPE_NODE_NAME = "sprite_type";
     public static final String WIDTH_NODE_NAME = "width";
@@ -50,6 +68,17 @@ public class AnimatedSpriteXMLLoader
     public static final String IMAGE_FILE_NODE_NAME = "image_file";
     public static final String ID_ATTRIBUTE_NAME = "id";
     public static final String FILE_NAME_ATTRIBUTE_NAME = "file_name";
+    public static final String SPRITE_SHEET_NODE_NAME = "sprite_sheet";
+    public static final String NAME_ATTRIBUTE_NAME = "name";
+    public static final String CELL_WIDTH_ATTRIBUTE_NAME = "cell_width";
+    public static final String CELL_HEIGHT_ATTRIBUTE_NAME = "cell_height";
+    public static final String SHEET_ATTRIBUTE_NAME = "sheet";
+    public static final String X_ATTRIBUTE_NAME = "x";
+    public static final String Y_ATTRIBUTE_NAME = "y";
+    public static final String W_ATTRIBUTE_NAME = "w";
+    public static final String H_ATTRIBUTE_NAME = "h";
+    public static final String ROW_ATTRIBUTE_NAME = "row";
+    public static final String COLUMN_ATTRIBUTE_NAME = "column";
     public static final String ANIMATIONS_LIST_NODE_NAME = "animations_list";
     public static final String ANIMATION_STATE_NODE_NAME = "animation_state";
     public static final String STATE_NODE_NAME = "state";
@@ -57,6 +86,74 @@ public class AnimatedSpriteXMLLoader
     public static final String POSE_NODE_NAME = "pose";
     public static final String IMAGE_ID_ATTRIBUTE_NAME = "image_id";
     public static final String DURATION_ATTRIBUTE_NAME = "duration";
+    public static final String VARIANTS_LIST_NODE_NAME = "variants_list";
+    public static final String VARIANT_NODE_NAME = "variant";
+    public static final String COLOUR_SWAP_NODE_NAME = "colour_swap";
+    public static final String FROM_ATTRIBUTE_NAME = "from";
+    public static final String TO_ATTRIBUTE_NAME = "to";
+    public static final String TINT_NODE_NAME = "tint";
+    public static final String RED_ATTRIBUTE_NAME = "red";
+    public static final String GREEN_ATTRIBUTE_NAME = "green";
+    public static final String BLUE_ATTRIBUTE_NAME = "blue";
+    public static final String ALPHA_ATTRIBUTE_NAME = "alpha";
+    public static final String SCENE_SPRITE_NODE_NAME = "sprite";
+    public static final String TYPE_ATTRIBUTE_NAME = "type";
+    public static final String STATE_ATTRIBUTE_NAME = "state";
+    public static final String VX_ATTRIBUTE_NAME = "vx";
+    public static final String VY_ATTRIBUTE_NAME = "vy";
+    public static final String START_OFFSET_ATTRIBUTE_NAME = "start_offset";
+    
+    // HOW MANY SPRITE TYPE NAMES WE HAND OVER AT A TIME WHEN STREAMING THE LIST
+    public static final int SPRITE_TYPE_NAME_BATCH_SIZE = 256;
+    
+    /**
+     * Receives sprite type names as they're read from the sprite type
+     * list, a batch at a time.
+     */
+    public interface SpriteTypeNameListener
+    {
+        /**
+         * Called on the reading thread for each batch of names found.
+         * 
+         * @param spriteTypeNames The names, in the order listed. The
+         * list is the listener's to keep.
+         */
+        public void spriteTypeNamesFound(List<String> spriteTypeNames);
+    }
+    
+    // AND HOW MANY SPRITES WHEN STREAMING A SCENE
+    public static final int SCENE_SPRITE_BATCH_SIZE = 1024;
+    
+    /**
+     * Receives the sprites placed in a scene file as they're read, a
+     * batch at a time.
+     */
+    public interface SceneSpriteListener
+    {
+        /**
+         * Called on the reading thread for each batch of sprites found.
+         * 
+         * @param sprites The sprites, in the order listed. The list is
+         * the listener's to keep.
+         * 
+         * @return true to go on reading, false to stop here.
+         */
+        public boolean sceneSpritesFound(List<SceneSpriteDescription> sprites);
+    }
+    
+    /**
+     * Thrown by a streaming handler to stop the parse early, when its
+     * listener has seen enough. Not an error.
+     */
+    private static class StopStreaming extends SAXException
+    {
+        private static final long serialVersionUID = 1L;
+
+        public StopStreaming()
+        {
+            super("Stopped by listener");
+        }
+    }
 
     /**
      * Constructor for this XML loader. 
@@ -69,205 +166,529 @@ public class AnimatedSpriteXMLLoader
     }
     
     /**
-     * This method extracts the names of all sprite types from the provided
-     * xml file argument and loads these names into the spriteTypeNames
-     * list.
+     * This method reads the sprite type list of a sprite library in one
+     * streaming pass, validating it against its schema as it goes, and
+     * hands the names over in batches as soon as they're read, rather
+     * than after the whole document has been validated and then built
+     * into a tree. A big list can so start filling the GUI right away.
+     * 
+     * Should the list turn out to be invalid part way through, the
+     * batches already handed over stay handed over.
      * 
-     * @param path Path to where the sprite types home directory. Note that
-     * each sprite would have its own directory inside this directory.
+     * @param source The sprite library.
      * 
      * @param spriteTypesXMLFile File name for the xml file with a list of
-     * all the sprite types.
+     * all the sprite types. Its schema is expected next to it, with the
+     * same name but an .xsd extension.
      * 
-     * @param spriteTypeNames List where we'll put all the sprite type
-     * names we find.
+     * @param listener Receives the names as they're read.
      * 
-     * @throws InvalidXMLFileFormatException Thrown if we encounter an xml
-     * file that does not validate against its schema.
+     * @throws InvalidXMLFileFormatException Thrown if the list is missing,
+     * not well formed, or does not validate against its schema.
      */
-    public static void loadSpriteTypeNames(String path,
-                                           String spriteTypesXMLFile,
-                                           ArrayList<String> spriteTypeNames)
-                                           throws InvalidXMLFileFormatException
+    public static void streamSpriteTypeNames(AssetSource source,
+                                             String spriteTypesXMLFile,
+                                             final SpriteTypeNameListener listener)
+                                             throws InvalidXMLFileFormatException
     {
-        // FIRST LET'S BUILD THE NAME OF THE XML FILE
-        String xmlFile = (path + spriteTypesXMLFile).trim();
-        //"./data/sprite_types/sprite_type_list.xml"
-        
-        //
-        // NOW LET'S BUILD THE NAME OF THE SCHEMA
-        String xsdFile = xmlFile.substring(0, xmlFile.length()-4) + ".xsd";
-        //"./data/sprite_types/sprite_type_list.xsd"
-        
-        // IS THE XML VALID PER THE SCHEMA?
-        WhitespaceFreeXMLDoc cleanDoc = loadXMLDocument(xmlFile, xsdFile);
+        String xsdFile = spriteTypesXMLFile.substring(0, spriteTypesXMLFile.length()-4) + ".xsd";
+        final ArrayList<String> batch = new ArrayList<String>();
         
-        //A placeholder string to hold each sprite name.
-        String eachNameOfSprite;
+        // THIS PICKS THE NAMES OUT OF THE VALIDATED STREAM OF EVENTS
+        DefaultHandler nameCollector = new DefaultHandler()
+        {
+            // THE TEXT OF THE sprite_type WE'RE IN, OR null
+            private StringBuilder name;
+            
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes atts)
+            {
+                if (SPRITE_TYPE_NODE_NAME.equals(localName))
+                {
+                    name = new StringBuilder();
+                }
+            }
+            
+            @Override
+            public void characters(char[] ch, int start, int length)
+            {
+                if (name != null)
+                {
+                    name.append(ch, start, length);
+                }
+            }
+            
+            @Override
+            public void endElement(String uri, String localName, String qName)
+            {
+                if ((name != null) && SPRITE_TYPE_NODE_NAME.equals(localName))
+                {
+                    batch.add(name.toString().trim());
+                    name = null;
+                    if (batch.size() >= SPRITE_TYPE_NAME_BATCH_SIZE)
+                    {
+                        listener.spriteTypeNamesFound(new ArrayList<String>(batch));
+                        batch.clear();
+                    }
+                }
+            }
+        };
         
-        // IF THERE'S A PROBLEM LOADING THE XML FILE THEN
-        // SKIP THIS SPRITE TYPE
-        if (cleanDoc == null)
+        try
         {
-            throw new InvalidXMLFileFormatException(xmlFile, xsdFile);
+            parseValidated(source.resolve(spriteTypesXMLFile), source.resolve(xsdFile), nameCollector);
+            if (!batch.isEmpty())
+            {
+                listener.spriteTypeNamesFound(new ArrayList<String>(batch));
+            }
         }
+        catch(SAXException se)
+        {
+            // NOT WELL FORMED, OR NOT VALID
+            se.printStackTrace();
+            throw new InvalidXMLFileFormatException(source.getDescription() + "/" + spriteTypesXMLFile, xsdFile);
+        }
+        catch(ParserConfigurationException pce)
+        {
+            pce.printStackTrace();
+            throw new InvalidXMLFileFormatException(source.getDescription() + "/" + spriteTypesXMLFile, xsdFile);
+        }
+        catch(IOException io)
+        {
+            io.printStackTrace();
+            throw new InvalidXMLFileFormatException(source.getDescription() + "/" + spriteTypesXMLFile, xsdFile);
+        }
+    }
+    
+    /**
+     * This method reads a scene file in one streaming pass, validating it
+     * against the scene schema as it goes, and hands the placed sprites
+     * over in batches. Only one batch is ever held, so a scene of any
+     * size is read in the same small amount of memory.
+     * 
+     * Should the scene turn out to be invalid part way through, the
+     * batches already handed over stay handed over. The schema keeps
+     * positions, velocities and offsets to finite values that fit what
+     * they're read into, and they're checked again as they're read.
+     * 
+     * @param sceneFile The scene file.
+     * 
+     * @param xsdPath The scene schema.
+     * 
+     * @param listener Receives the sprites as they're read, and may stop
+     * the reading.
+     * 
+     * @throws InvalidXMLFileFormatException Thrown if the scene is missing,
+     * not well formed, or does not validate against the schema. Where
+     * the file went wrong is named along with it.
+     */
+    public static void streamSceneSprites(Path sceneFile, Path xsdPath,
+                                          final SceneSpriteListener listener)
+                                          throws InvalidXMLFileFormatException
+    {
+        final ArrayList<SceneSpriteDescription> batch = new ArrayList<SceneSpriteDescription>();
         
-        // IT'S A VALID XML FILE SO LET'S GET THE DATA
-        //Gets the root of sprite_type_list.xml which is <sprite_type_list>
-        WhitespaceFreeXMLNode spriteTypeListNode = cleanDoc.getRoot();
+        // THIS TURNS EACH VALIDATED sprite ELEMENT INTO A DESCRIPTION
+        DefaultHandler spriteCollector = new DefaultHandler()
+        {
+            private Locator locator;
+            
+            @Override
+            public void setDocumentLocator(Locator initLocator)
+            {
+                locator = initLocator;
+            }
+            
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes atts)
+                    throws SAXException
+            {
+                if (!SCENE_SPRITE_NODE_NAME.equals(localName))
+                {
+                    return;
+                }
+                batch.add(new SceneSpriteDescription(
+                        atts.getValue(TYPE_ATTRIBUTE_NAME),
+                        atts.getValue(STATE_ATTRIBUTE_NAME),
+                        floatAttribute(atts, X_ATTRIBUTE_NAME, locator),
+                        floatAttribute(atts, Y_ATTRIBUTE_NAME, locator),
+                        floatAttribute(atts, VX_ATTRIBUTE_NAME, locator),
+                        floatAttribute(atts, VY_ATTRIBUTE_NAME, locator),
+                        longAttribute(atts, START_OFFSET_ATTRIBUTE_NAME, locator)));
+                if ((batch.size() >= SCENE_SPRITE_BATCH_SIZE) && !handOver())
+                {
+                    throw new StopStreaming();
+                }
+            }
+            
+            @Override
+            public void endDocument() throws SAXException
+            {
+                if (!batch.isEmpty() && !handOver())
+                {
+                    throw new StopStreaming();
+                }
+            }
+            
+            private boolean handOver()
+            {
+                ArrayList<SceneSpriteDescription> sprites = new ArrayList<SceneSpriteDescription>(batch);
+                batch.clear();
+                return listener.sceneSpritesFound(sprites);
+            }
+        };
         
-        //Gets the children of <sprite_type_list> named <sprite_type> containing the different names of the sprites and puts them in an ArrayList.
-        ArrayList<WhitespaceFreeXMLNode> listOfSpriteTypes = spriteTypeListNode.getChildrenOfType("sprite_type");
+        try
+        {
+            parseValidated(sceneFile, xsdPath, spriteCollector);
+        }
+        catch(StopStreaming ss)
+        {
+            // THE LISTENER HAS ALL IT WANTS
+        }
+        catch(SAXParseException spe)
+        {
+            // NOT WELL FORMED, OR NOT VALID, AT A PLACE WE CAN POINT TO
+            spe.printStackTrace();
+            throw new InvalidXMLFileFormatException(sceneFile + ", line " + spe.getLineNumber()
+                    + ", column " + spe.getColumnNumber(), xsdPath.getFileName().toString());
+        }
+        catch(SAXException se)
+        {
+            // NOT WELL FORMED, OR NOT VALID
+            se.printStackTrace();
+            throw new InvalidXMLFileFormatException(sceneFile.toString(), xsdPath.getFileName().toString());
+        }
+        catch(ParserConfigurationException pce)
+        {
+            pce.printStackTrace();
+            throw new InvalidXMLFileFormatException(sceneFile.toString(), xsdPath.getFileName().toString());
+        }
+        catch(IOException io)
+        {
+            io.printStackTrace();
+            throw new InvalidXMLFileFormatException(sceneFile.toString(), xsdPath.getFileName().toString());
+        }
+    }
+    
+    /**
+     * This helper reads a decimal attribute that has to be finite.
+     * 
+     * @param atts The element's attributes.
+     * 
+     * @param name Name of the attribute.
+     * 
+     * @param locator Where the element is, for the error.
+     * 
+     * @return Its value, or 0 if it isn't there.
+     * 
+     * @throws SAXParseException Thrown if the value isn't a finite number.
+     */
+    private static float floatAttribute(Attributes atts, String name, Locator locator)
+            throws SAXParseException
+    {
+        String value = atts.getValue(name);
+        if (value == null)
+        {
+            return 0;
+        }
+        try
+        {
+            float parsed = Float.parseFloat(value);
+            if (!Float.isInfinite(parsed) && !Float.isNaN(parsed))
+            {
+                return parsed;
+            }
+        }
+        catch(NumberFormatException nfe)
+        {
+            // REPORTED BELOW
+        }
+        throw new SAXParseException(name + " must be a finite number, not " + value, locator);
+    }
+    
+    /**
+     * This helper reads a whole number attribute that has to fit a long.
+     * 
+     * @param atts The element's attributes.
+     * 
+     * @param name Name of the attribute.
+     * 
+     * @param locator Where the element is, for the error.
+     * 
+     * @return Its value, or 0 if it isn't there.
+     * 
+     * @throws SAXParseException Thrown if the value doesn't fit.
+     */
+    private static long longAttribute(Attributes atts, String name, Locator locator)
+            throws SAXParseException
+    {
+        String value = atts.getValue(name);
+        if (value == null)
+        {
+            return 0;
+        }
+        try
+        {
+            return Long.parseLong(value.trim());
+        }
+        catch(NumberFormatException nfe)
+        {
+            throw new SAXParseException(name + " is out of range: " + value, locator);
+        }
+    }
+    
+    /**
+     * This helper parses an xml file with SAX, with the schema's validator
+     * between the parser and the handler, so the handler only ever sees
+     * a document that's valid so far.
+     * 
+     * @param xmlPath The file to read.
+     * 
+     * @param xsdPath The schema to validate it against.
+     * 
+     * @param handler Receives the validated events.
+     */
+    private static void parseValidated(Path xmlPath, Path xsdPath, ContentHandler handler)
+            throws SAXException, ParserConfigurationException, IOException
+    {
+        // COMPILE THE SCHEMA, THEN PUT ITS VALIDATOR BETWEEN THE PARSER AND US
+        Schema schema;
+        InputStream schemaIn = Files.newInputStream(xsdPath);
+        try
+        {
+            schema = SchemaFactory.newInstance(SCHEMA_STANDARD_SPEC_URL)
+                    .newSchema(new StreamSource(schemaIn, xsdPath.toUri().toString()));
+        }
+        finally
+        {
+            schemaIn.close();
+        }
+        ValidatorHandler validatorHandler = schema.newValidatorHandler();
+        validatorHandler.setContentHandler(handler);
+        SAXParserFactory spf = SAXParserFactory.newInstance();
+        spf.setNamespaceAware(true);
+        XMLReader reader = spf.newSAXParser().getXMLReader();
+        reader.setContentHandler(validatorHandler);
         
-        //A loop to go through each <sprite_type> and get the names of each sprite to add to the arrayList of Strings named spriteTypeNames.
-        for(int index=0;index<listOfSpriteTypes.size();index++)
+        // ONE PASS THROUGH THE FILE DOES EVERYTHING
+        InputStream xmlIn = Files.newInputStream(xmlPath);
+        try
         {
-            eachNameOfSprite = listOfSpriteTypes.get(index).getData();
-            spriteTypeNames.add(eachNameOfSprite);
+            InputSource input = new InputSource(xmlIn);
+            input.setSystemId(xmlPath.toUri().toString());
+            reader.parse(input);
+        }
+        finally
+        {
+            xmlIn.close();
         }
     }
     
     /**
-     * This method extracts the animation states and attributes of all sprite types from the provided
-     * xml file argument and loads these names into the animationStates and animationAttributes
-     * lists.
+     * This method extracts everything needed to build a sprite type from
+     * its xml file in a single validation and parse: the animation states,
+     * the pose attributes of each state, the file name of each image id
+     * and the colour variants the type comes in.
      * 
-     * @param pathToSprite Path to where the sprite is.
+     * @param source The sprite library the sprite type is in.
      * 
-     * @param xmlOfSpriteType File name for the xml file of the sprite.
+     * @param spriteTypeName Name of the sprite type. Its xml file is
+     * spriteTypeName/spriteTypeName.xml within the library.
      * 
      * @param animationStates List where we'll put all the sprite animation
      * states.
      * 
-     * @param animationAttributes List where we'll put all the sprite animation
-     * attributes.
+     * @param animationAttributes List where we'll put the [2][numberOfPoses]
+     * attribute table of each state, durations in row 0 and image ids in row 1.
+     * 
+     * @param imageDescriptions Map where we'll put where each image id
+     * comes from: a file of its own or a region of a sprite sheet.
+     * 
+     * @param variants List where we'll put the sprite type's variants.
      * 
      * @throws InvalidXMLFileFormatException Thrown if we encounter an xml
-     * file that does not validate against its schema.
+     * file that does not validate against its schema, or an image that
+     * names neither a file nor a usable sprite sheet region.
      */
-    public static void loadSpriteAnimationStatesAndAttributes(String pathToSprite,
-                                                 String xmlOfSpriteType,
+    public static void loadSpriteTypeDescription(AssetSource source,
+                                                 String spriteTypeName,
                                                  ArrayList<String> animationStates,
-                                                 ArrayList<String[][]> animationAttributes)
+                                                 ArrayList<String[][]> animationAttributes,
+                                                 HashMap<Integer, SpriteImageDescription> imageDescriptions,
+                                                 ArrayList<SpriteVariant> variants)
                                                  throws InvalidXMLFileFormatException
     {
-        // FIRST LET'S BUILD THE NAME OF THE XML FILE
-        String xmlFile = (pathToSprite + xmlOfSpriteType).trim();
-        
-        // NOW LET'S BUILD THE NAME OF THE SCHEMA
-        String xsdFile = "./data/sprite_types/sprite_type.xsd";
+        // THE XML FILE IS IN THE TYPE'S OWN DIRECTORY, THE SCHEMA AT THE LIBRARY ROOT
+        String xmlFile = spriteTypeName + "/" + spriteTypeName + ".xml";
+        String xsdFile = SPRITE_TYPE_SCHEMA_FILE;
         
         // IS THE XML VALID PER THE SCHEMA?
-        WhitespaceFreeXMLDoc cleanDoc = loadXMLDocument(xmlFile, xsdFile);
-
-        // IF THERE'S A PROBLEM LOADING THE XML FILE THEN
-        // SKIP THIS SPRITE TYPE
-        if (cleanDoc == null)
-        {
-            throw new InvalidXMLFileFormatException(xmlFile, xsdFile);
-        }
-
-        // IT'S A VALID XML FILE SO LET'S GET THE DATA
-        //Gets the root of sprite_type_list.xml which is <sprite_type>.
+        WhitespaceFreeXMLDoc cleanDoc = loadXMLDocument(source, xmlFile, xsdFile);
         WhitespaceFreeXMLNode root = cleanDoc.getRoot();
         
-        //Puts all the animations_list's in an ArrayList.
-        ArrayList<WhitespaceFreeXMLNode> listOfAnimations_Lists = root.getChildrenOfType("animations_list");
-        
-        //Make an ArrayList for each nested loop so every child of every child can be accessed.
-        ArrayList<WhitespaceFreeXMLNode> listOfAnimation_States,listOfStates,listOfAnimation_Sequences,listOfPoses;
-        
-        //Go through each animation list and get each animation_state.
-        for(int eachAnimations_List=0;eachAnimations_List<listOfAnimations_Lists.size();eachAnimations_List++){
-            listOfAnimation_States = listOfAnimations_Lists.get(eachAnimations_List).getChildrenOfType("animation_state");
+        // THE IMAGES, BY ID
+        ArrayList<WhitespaceFreeXMLNode> imagesLists = root.getChildrenOfType(IMAGES_LIST_NODE_NAME);
+        for (int i = 0; i < imagesLists.size(); i++)
+        {
+            // FIRST THE SHARED SHEETS, SO IMAGES CAN REFER TO THEM BY NAME
+            HashMap<String, WhitespaceFreeXMLNode> sheets = new HashMap<String, WhitespaceFreeXMLNode>();
+            ArrayList<WhitespaceFreeXMLNode> sheetNodes = imagesLists.get(i).getChildrenOfType(SPRITE_SHEET_NODE_NAME);
+            for (int j = 0; j < sheetNodes.size(); j++)
+            {
+                sheets.put(sheetNodes.get(j).getAttributeValue(NAME_ATTRIBUTE_NAME), sheetNodes.get(j));
+            }
             
-            //Go through each animation state and get each state.
-            for(int eachAnimation_State=0;eachAnimation_State<listOfAnimation_States.size();eachAnimation_State++){
-                listOfStates = listOfAnimation_States.get(eachAnimation_State).getChildrenOfType("state");
-                
-                //Add each state to the animationStates parameter.
-                for(int eachState=0;eachState<listOfStates.size();eachState++)
-                    animationStates.add(listOfStates.get(eachState).getData());
-                
-                //Puts all the animation_sequences's in an ArrayList.
-                listOfAnimation_Sequences = listOfAnimation_States.get(eachAnimation_State).getChildrenOfType("animation_sequence");
-                
-                //Go through each animation sequence and get each pose.
-                for(int eachPose=0;eachPose<listOfAnimation_Sequences.size();eachPose++){
-                    listOfPoses = listOfAnimation_Sequences.get(eachPose).getChildrenOfType("pose");
-                    
-                    //Make an array for the 2 attributes of each pose.
-                    String attributeArray[][] = new String[2][listOfPoses.size()];
-                    
-                    //Fill the array with each attribute.
-                    for(int eachAttribute=0;eachAttribute<listOfPoses.size();eachAttribute++){
-                        attributeArray[0][eachAttribute] = listOfPoses.get(eachAttribute).getAttributeValue("duration");
-                        attributeArray[1][eachAttribute] = listOfPoses.get(eachAttribute).getAttributeValue("image_id");
-                    }
-                    
-                    //Add the attribute array to the animationAttributes parameter holding all the attribute arrays for each pose.
-                    animationAttributes.add(attributeArray);
+            ArrayList<WhitespaceFreeXMLNode> imageFiles = imagesLists.get(i).getChildrenOfType(IMAGE_FILE_NODE_NAME);
+            for (int j = 0; j < imageFiles.size(); j++)
+            {
+                WhitespaceFreeXMLNode imageFile = imageFiles.get(j);
+                int id = Integer.parseInt(imageFile.getAttributeValue(ID_ATTRIBUTE_NAME));
+                SpriteImageDescription description = describeImage(imageFile, sheets);
+                if (description == null)
+                {
+                    throw new InvalidXMLFileFormatException(xmlFile, xsdFile + ", image id " + id
+                            + " needs a file_name, or a sheet with x, y, w, h or row and column");
                 }
+                imageDescriptions.put(id, description);
             }
         }
         
+        // AND THE ANIMATIONS, STATE BY STATE
+        ArrayList<WhitespaceFreeXMLNode> animationsLists = root.getChildrenOfType(ANIMATIONS_LIST_NODE_NAME);
+        for (int i = 0; i < animationsLists.size(); i++)
+        {
+            ArrayList<WhitespaceFreeXMLNode> states = animationsLists.get(i).getChildrenOfType(ANIMATION_STATE_NODE_NAME);
+            for (int j = 0; j < states.size(); j++)
+            {
+                WhitespaceFreeXMLNode stateNode = states.get(j);
+                animationStates.add(stateNode.getChildOfType(STATE_NODE_NAME).getData());
+                
+                // ALL OF A STATE'S SEQUENCES PLAY ONE AFTER ANOTHER
+                ArrayList<WhitespaceFreeXMLNode> poses = new ArrayList<WhitespaceFreeXMLNode>();
+                ArrayList<WhitespaceFreeXMLNode> sequences = stateNode.getChildrenOfType(ANIMATION_SEQUENCE_NODE_NAME);
+                for (int k = 0; k < sequences.size(); k++)
+                {
+                    poses.addAll(sequences.get(k).getChildrenOfType(POSE_NODE_NAME));
+                }
+                String attributeArray[][] = new String[2][poses.size()];
+                for (int k = 0; k < poses.size(); k++)
+                {
+                    attributeArray[0][k] = poses.get(k).getAttributeValue(DURATION_ATTRIBUTE_NAME);
+                    attributeArray[1][k] = poses.get(k).getAttributeValue(IMAGE_ID_ATTRIBUTE_NAME);
+                }
+                animationAttributes.add(attributeArray);
+            }
+        }
         
+        // AND THE VARIANTS, IF THERE ARE ANY
+        ArrayList<WhitespaceFreeXMLNode> variantsLists = root.getChildrenOfType(VARIANTS_LIST_NODE_NAME);
+        for (int i = 0; i < variantsLists.size(); i++)
+        {
+            ArrayList<WhitespaceFreeXMLNode> variantNodes = variantsLists.get(i).getChildrenOfType(VARIANT_NODE_NAME);
+            for (int j = 0; j < variantNodes.size(); j++)
+            {
+                variants.add(describeVariant(variantNodes.get(j)));
+            }
+        }
     }
+    
     /**
-     * This method extracts the animation states and attributes of all sprite types from the provided
-     * xml file argument and loads these names into the animationStates and animationAttributes
-     * lists.
+     * Builds a variant from its variant node: its colour swaps, applied
+     * first, and then its tint, if it has one.
      * 
-     * @param pathToSprite Path to where the sprite is.
+     * @param variantNode The variant node.
      * 
-     * @param xmlOfSpriteType File name for the xml file of the sprite.
+     * @return The variant it describes.
+     */
+    private static SpriteVariant describeVariant(WhitespaceFreeXMLNode variantNode)
+    {
+        SpriteVariant variant = new SpriteVariant(variantNode.getAttributeValue(NAME_ATTRIBUTE_NAME));
+        ArrayList<WhitespaceFreeXMLNode> swaps = variantNode.getChildrenOfType(COLOUR_SWAP_NODE_NAME);
+        for (int i = 0; i < swaps.size(); i++)
+        {
+            // COLOURS ARE #RRGGBB, AS THE SCHEMA INSISTS
+            variant.addColourSwap(Integer.parseInt(swaps.get(i).getAttributeValue(FROM_ATTRIBUTE_NAME).substring(1), 16),
+                                  Integer.parseInt(swaps.get(i).getAttributeValue(TO_ATTRIBUTE_NAME).substring(1), 16));
+        }
+        ArrayList<WhitespaceFreeXMLNode> tints = variantNode.getChildrenOfType(TINT_NODE_NAME);
+        if (!tints.isEmpty())
+        {
+            WhitespaceFreeXMLNode tint = tints.get(0);
+            variant.setTint(tintFactor(tint, RED_ATTRIBUTE_NAME), tintFactor(tint, GREEN_ATTRIBUTE_NAME),
+                            tintFactor(tint, BLUE_ATTRIBUTE_NAME), tintFactor(tint, ALPHA_ATTRIBUTE_NAME));
+        }
+        return variant;
+    }
+    
+    /**
+     * Reads one channel's factor from a tint node. A channel that isn't
+     * given is left as it is.
      * 
-     * @param uniqueIDList List of IDs were looking for.
+     * @param tint The tint node.
      * 
-     * @param names Holds the file names of the .png's we are looking for.
+     * @param channel The attribute naming the channel.
      * 
-     * @throws InvalidXMLFileFormatException Thrown if we encounter an xml
-     * file that does not validate against its schema.
+     * @return The factor to scale that channel by.
      */
-    public static void loadFileNames(String pathToSprite,
-                                           String xmlOfSpriteType,
-                                           ArrayList<Integer> uniqueIDList,
-                                           ArrayList<String> names)
-                                           throws InvalidXMLFileFormatException
+    private static float tintFactor(WhitespaceFreeXMLNode tint, String channel)
     {
-        // FIRST LET'S BUILD THE NAME OF THE XML FILE
-        String xmlFile = (pathToSprite + xmlOfSpriteType).trim();
-        
-        // NOW LET'S BUILD THE NAME OF THE SCHEMA
-        String xsdFile = "./data/sprite_types/sprite_type.xsd";
-        
-        // IS THE XML VALID PER THE SCHEMA?
-        WhitespaceFreeXMLDoc cleanDoc = loadXMLDocument(xmlFile, xsdFile);
-
-        // IF THERE'S A PROBLEM LOADING THE XML FILE THEN
-        // SKIP THIS SPRITE TYPE
-        if (cleanDoc == null)
+        String factor = tint.getAttributeValue(channel);
+        return (factor == null) ? 1.0f : Float.parseFloat(factor);
+    }
+    
+    /**
+     * Works out where an image_file node's image comes from. It's either
+     * its own file_name, a sheet region given by x, y, w and h, or a grid
+     * cell of a sheet given by row and column, which uses the sheet's
+     * cell_width and cell_height.
+     * 
+     * @param imageFile The image_file node.
+     * 
+     * @param sheets The sprite_sheet nodes of the images_list, by name.
+     * 
+     * @return The description, or null if the node doesn't say enough.
+     */
+    private static SpriteImageDescription describeImage(WhitespaceFreeXMLNode imageFile,
+                                                        HashMap<String, WhitespaceFreeXMLNode> sheets)
+    {
+        String sheetName = imageFile.getAttributeValue(SHEET_ATTRIBUTE_NAME);
+        if (sheetName == null)
         {
-            throw new InvalidXMLFileFormatException(xmlFile, xsdFile);
+            String fileName = imageFile.getAttributeValue(FILE_NAME_ATTRIBUTE_NAME);
+            return (fileName == null) ? null : new SpriteImageDescription(fileName, null);
         }
-
-        // IT'S A VALID XML FILE SO LET'S GET THE DATA
-        //Gets the root of sprite_type_list.xml which is <sprite_type>.
-        WhitespaceFreeXMLNode root = cleanDoc.getRoot();
-        
-        //Puts all the animations_list's in an ArrayList.
-        ArrayList<WhitespaceFreeXMLNode> listOfImages_List = root.getChildrenOfType("images_list");
+        WhitespaceFreeXMLNode sheet = sheets.get(sheetName);
+        if (sheet == null)
+        {
+            return null;
+        }
+        String sheetFile = sheet.getAttributeValue(FILE_NAME_ATTRIBUTE_NAME);
         
-        //The list for all the image_file nodes
-        ArrayList<WhitespaceFreeXMLNode> listOfImages;
+        // AN EXPLICIT REGION?
+        String x = imageFile.getAttributeValue(X_ATTRIBUTE_NAME);
+        String y = imageFile.getAttributeValue(Y_ATTRIBUTE_NAME);
+        String w = imageFile.getAttributeValue(W_ATTRIBUTE_NAME);
+        String h = imageFile.getAttributeValue(H_ATTRIBUTE_NAME);
+        if ((x != null) && (y != null) && (w != null) && (h != null))
+        {
+            return new SpriteImageDescription(sheetFile, new Rectangle(
+                    Integer.parseInt(x), Integer.parseInt(y), Integer.parseInt(w), Integer.parseInt(h)));
+        }
         
-        //Go through each Image and get the file_names of the images that have the same id as the ones we are looking for.
-        for(int eachImages_List=0;eachImages_List<listOfImages_List.size();eachImages_List++){
-            listOfImages = listOfImages_List.get(eachImages_List).getChildrenOfType("image_file");
-            for(int eachImage=0;eachImage<listOfImages.size();eachImage++)
-                if(uniqueIDList.contains(Integer.parseInt(listOfImages.get(eachImage).getAttributeValue("id"))))
-                    names.add(listOfImages.get(eachImage).getAttributeValue("file_name"));
+        // OR A CELL OF THE SHEET'S GRID?
+        String row = imageFile.getAttributeValue(ROW_ATTRIBUTE_NAME);
+        String column = imageFile.getAttributeValue(COLUMN_ATTRIBUTE_NAME);
+        String cellWidth = sheet.getAttributeValue(CELL_WIDTH_ATTRIBUTE_NAME);
+        String cellHeight = sheet.getAttributeValue(CELL_HEIGHT_ATTRIBUTE_NAME);
+        if ((row != null) && (column != null) && (cellWidth != null) && (cellHeight != null))
+        {
+            int cw = Integer.parseInt(cellWidth);
+            int ch = Integer.parseInt(cellHeight);
+            return new SpriteImageDescription(sheetFile, new Rectangle(
+                    Integer.parseInt(column) * cw, Integer.parseInt(row) * ch, cw, ch));
         }
+        return null;
     }
     
     /**
@@ -289,13 +710,74 @@ public class AnimatedSpriteXMLLoader
     public static WhitespaceFreeXMLDoc loadXMLDocument(String xmlFile,
                                                 String schemaFile)
             throws InvalidXMLFileFormatException
+    {
+        return loadXMLDocument(Paths.get(xmlFile), Paths.get(schemaFile));
+    }
+    
+    /**
+     * This method finds an xml file and its schema in a sprite library,
+     * then validates and loads the xml file just like loadXMLDocument
+     * does for files on disk.
+     * 
+     * @param source The sprite library.
+     * 
+     * @param xmlFile Path of the xml file from the library root.
+     * 
+     * @param schemaFile Path of the schema file from the library root.
+     * 
+     * @return A WhitespaceFreeXMLDoc object fully loaded with the data found
+     * in the xmlFile.
+     * 
+     * @throws InvalidXMLFileFormatException Thrown if either file is missing
+     * or the xml file validation fails.
+     */
+    public static WhitespaceFreeXMLDoc loadXMLDocument(AssetSource source,
+                                                       String xmlFile,
+                                                       String schemaFile)
+            throws InvalidXMLFileFormatException
+    {
+        WhitespaceFreeXMLDoc cleanDoc;
+        try
+        {
+            cleanDoc = loadXMLDocument(source.resolve(xmlFile), source.resolve(schemaFile));
+        }
+        catch(IOException io)
+        {
+            io.printStackTrace();
+            cleanDoc = null;
+        }
+        if (cleanDoc == null)
+        {
+            throw new InvalidXMLFileFormatException(source.getDescription() + "/" + xmlFile, schemaFile);
+        }
+        return cleanDoc;
+    }
+    
+    /**
+     * This method reads in the xmlFile, validates it against the
+     * schemaFile, and if valid, loads it into a WhitespaceFreeXMLDoc
+     * and returns it. The files may be on any file system, including
+     * inside a zip or jar archive.
+     * 
+     * @param xmlFile Path of xml file to load.
+     * 
+     * @param schemaFile Path of schema file to use for validation.
+     * 
+     * @return A WhitespaceFreeXMLDoc object fully loaded with the data found
+     * in the xmlFile, or null if it could not be read.
+     * 
+     * @throws InvalidXMLFileFormatException Thrown if the xml file validation fails.
+     */
+    public static WhitespaceFreeXMLDoc loadXMLDocument(Path xmlFile,
+                                                       Path schemaFile)
+            throws InvalidXMLFileFormatException
     {
         // FIRST LET'S VALIDATE IT
         boolean validDoc = validateXMLDoc(xmlFile, schemaFile);
         if (!validDoc)
         {
             // FAIL
-            throw new InvalidXMLFileFormatException(xmlFile, schemaFile);
+            throw new InvalidXMLFileFormatException(xmlFile.toString(), schemaFile.toString());
         }
 
         // THIS IS JAVA API STUFF
@@ -304,7 +786,16 @@ public class AnimatedSpriteXMLLoader
         {            
             // FIRST RETRIEVE AND LOAD THE FILE INTO A TREE
             DocumentBuilder db = dbf.newDocumentBuilder();
-            Document xmlDoc = db.parse(xmlFile);
+            Document xmlDoc;
+            InputStream in = Files.newInputStream(xmlFile);
+            try
+            {
+                xmlDoc = db.parse(in, xmlFile.toUri().toString());
+            }
+            finally
+            {
+                in.close();
+            }
             
             // THEN PUT IT INTO A FORMAT WE LIKE
             WhitespaceFreeXMLDoc cleanDoc = new WhitespaceFreeXMLDoc();
@@ -348,6 +839,24 @@ public class AnimatedSpriteXMLLoader
     public static boolean validateXMLDoc(  String xmlDocNameAndPath,
                                     String xmlSchemaNameAndPath)
     {
+        return validateXMLDoc(Paths.get(xmlDocNameAndPath), Paths.get(xmlSchemaNameAndPath));
+    }
+    
+    /**
+     * This method validates the xmlDoc against the xmlSchema, reading
+     * both through java.nio.file so that they may be on any file system,
+     * including inside a zip or jar archive.
+     * 
+     * @param xmlDoc XML Doc to validate
+     * 
+     * @param xmlSchema XML Schema to use in validation
+     * 
+     * @return true if the xml doc is validate, false if it does not.
+     */
+    public static boolean validateXMLDoc(Path xmlDoc, Path xmlSchema)
+    {
+        InputStream schemaIn = null;
+        InputStream docIn = null;
         try
         {
             // 1. Lookup a factory for the W3C XML Schema language
@@ -355,16 +864,17 @@ public class AnimatedSpriteXMLLoader
                     SchemaFactory.newInstance(SCHEMA_STANDARD_SPEC_URL);
             
             // 2. Compile the schema. 
-            // Here the schema is loaded from a java.io.File, but you could use 
-            // a java.net.URL or a javax.xml.transform.Source instead.
-            File schemaLocation = new File(xmlSchemaNameAndPath);//950 for sprite_type_list
-            Schema schema = factory.newSchema(schemaLocation);
+            // Here the schema is streamed from its Path, so that it may be
+            // inside an archive as easily as on disk.
+            schemaIn = Files.newInputStream(xmlSchema);
+            Schema schema = factory.newSchema(new StreamSource(schemaIn, xmlSchema.toUri().toString()));
             
             // 3. Get a validator from the schema.
             Validator validator = schema.newValidator();
             
             // 4. Parse the document you want to check.
-            Source source = new StreamSource(xmlDocNameAndPath);
+            docIn = Files.newInputStream(xmlDoc);
+            Source source = new StreamSource(docIn, xmlDoc.toUri().toString());
             
             // 5. Check the document
             validator.validate(source);//1148 = stream for source and  2144 for fuckup
@@ -373,6 +883,30 @@ public class AnimatedSpriteXMLLoader
         catch (Exception e) 
         {
             return false;
-        }          
+        }
+        finally
+        {
+            closeQuietly(schemaIn);
+            closeQuietly(docIn);
+        }
+    }
+    
+    /**
+     * Closes a stream we're done reading, if it was opened at all.
+     * 
+     * @param in The stream, may be null.
+     */
+    private static void closeQuietly(InputStream in)
+    {
+        if (in == null)
+            return;
+        try
+        {
+            in.close();
+        }
+        catch(IOException io)
+        {
+            // NOTHING LEFT TO READ, SO NOTHING LOST
+        }
     }
 }
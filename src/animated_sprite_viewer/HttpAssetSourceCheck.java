@@ -0,0 +1,338 @@
+package animated_sprite_viewer;
+
+import animated_sprite_viewer.assets.HttpAssetSource;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The HttpAssetSourceCheck serves a sprite library from a little local
+ * web server and puts an HttpAssetSource through its paces against it:
+ * a cold start that downloads everything, a warm start that should get
+ * nothing but 304s for the ETags and dates it cached, a run with the
+ * server gone that should make do with the cached copies, and a fetch
+ * that fails once and has to work when asked again. Each check is
+ * printed, and the exit status is 1 if any failed. Run it with the
+ * library to serve, as in
+ *
+ *   java -cp dist/AnimatedSpriteViewer.jar animated_sprite_viewer.HttpAssetSourceCheck ./data/sprite_types/
+ *
+ * @author  Kevin Hock
+ */
+public class HttpAssetSourceCheck
+{
+    // THE FORMAT HTTP DATES COME IN
+    public static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME;
+
+    // HOW MANY CHECKS FAILED SO FAR
+    private static int failures;
+
+    /**
+     * Runs the checks and prints the results.
+     *
+     * @param args The sprite library to serve, optional.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        Path library = Paths.get((args.length > 0) ? args[0] : AnimatedSpriteViewer.SPRITES_DATA_PATH)
+                .toAbsolutePath().normalize();
+        List<String> assets = listFiles(library);
+        long libraryBytes = 0;
+        for (int i = 0; i < assets.size(); i++)
+        {
+            libraryBytes += Files.size(library.resolve(assets.get(i)));
+        }
+        Path cache = Files.createTempDirectory("asv-http-check");
+        LibraryServer server = new LibraryServer(library);
+        URI baseUri = server.start();
+        System.out.println("Serving " + assets.size() + " files (" + libraryBytes + " bytes) from "
+                + library + " at " + baseUri);
+        try
+        {
+            // A COLD START DOWNLOADS EVERYTHING, ONCE
+            HttpAssetSource cold = new HttpAssetSource(baseUri, cache, HttpAssetSource.DEFAULT_MAX_CONCURRENT_FETCHES);
+            try
+            {
+                resolveAll(cold, assets);
+                resolveAll(cold, assets);
+                check(server.okResponses.get() == assets.size(), "cold start: a 200 for every file",
+                        server.okResponses.get() + " of " + assets.size());
+                check(cold.getRequestsSent() == assets.size(), "cold start: one request per file per run",
+                        cold.getRequestsSent() + " requests");
+                check(cold.getBytesDownloaded() == libraryBytes, "cold start: every byte downloaded",
+                        cold.getBytesDownloaded() + " bytes");
+                check(sameFiles(library, cache, assets), "cold start: cached copies match the library", "");
+            }
+            finally
+            {
+                cold.close();
+            }
+
+            // A WARM START ASKS ABOUT EVERYTHING AND GETS NOTHING BACK
+            server.reset();
+            HttpAssetSource warm = new HttpAssetSource(baseUri, cache, HttpAssetSource.DEFAULT_MAX_CONCURRENT_FETCHES);
+            try
+            {
+                resolveAll(warm, assets);
+                check(server.notModifiedResponses.get() == assets.size(), "warm start: a 304 for every file",
+                        server.notModifiedResponses.get() + " of " + assets.size());
+                check(server.etagsMatched.get() == assets.size(), "warm start: the stored ETag sent back",
+                        server.etagsMatched.get() + " of " + assets.size());
+                check(server.datesMatched.get() == assets.size(), "warm start: the stored Last-Modified sent back",
+                        server.datesMatched.get() + " of " + assets.size());
+                check(warm.getRequestsSent() == assets.size(), "warm start: requestsSent",
+                        warm.getRequestsSent() + " requests");
+                check(warm.getBytesDownloaded() == 0, "warm start: bytesDownloaded",
+                        warm.getBytesDownloaded() + " bytes");
+            }
+            finally
+            {
+                warm.close();
+            }
+
+            // A FILE THAT FAILS ONCE IS FETCHED AGAIN WHEN ASKED AGAIN
+            server.reset();
+            String flaky = assets.get(0);
+            server.failNext.put("/" + flaky, Boolean.TRUE);
+            HttpAssetSource retrying = new HttpAssetSource(baseUri, Files.createTempDirectory("asv-http-check"),
+                    HttpAssetSource.DEFAULT_MAX_CONCURRENT_FETCHES);
+            try
+            {
+                boolean failed = false;
+                try
+                {
+                    retrying.resolve(flaky);
+                }
+                catch(IOException ioe)
+                {
+                    failed = true;
+                }
+                boolean retried;
+                try
+                {
+                    retried = Arrays.equals(Files.readAllBytes(retrying.resolve(flaky)),
+                                            Files.readAllBytes(library.resolve(flaky)));
+                }
+                catch(IOException ioe)
+                {
+                    retried = false;
+                }
+                check(failed && retried, "a failed fetch is retried", retrying.getRequestsSent() + " requests");
+            }
+            finally
+            {
+                retrying.close();
+            }
+        }
+        finally
+        {
+            server.stop();
+        }
+
+        // WITH THE SERVER GONE, THE CACHED COPIES WILL DO
+        HttpAssetSource offline = new HttpAssetSource(baseUri, cache, HttpAssetSource.DEFAULT_MAX_CONCURRENT_FETCHES);
+        try
+        {
+            int served = 0;
+            for (int i = 0; i < assets.size(); i++)
+            {
+                Path copy = offline.resolve(assets.get(i));
+                if (Arrays.equals(Files.readAllBytes(copy), Files.readAllBytes(library.resolve(assets.get(i)))))
+                {
+                    served++;
+                }
+            }
+            check(served == assets.size(), "server down: cached copies served", served + " of " + assets.size());
+        }
+        finally
+        {
+            offline.close();
+        }
+
+        System.out.println((failures == 0) ? "All checks passed" : (failures + " checks FAILED"));
+        System.exit((failures == 0) ? 0 : 1);
+    }
+
+    /**
+     * Prints how one check went.
+     */
+    private static void check(boolean passed, String what, String detail)
+    {
+        if (!passed)
+        {
+            failures++;
+        }
+        System.out.println(String.format("%-6s %-48s %s", passed ? "ok" : "FAILED", what, detail));
+    }
+
+    /**
+     * Resolves every asset, starting them all at once the way a sprite
+     * type load does.
+     */
+    private static void resolveAll(HttpAssetSource source, List<String> assets) throws IOException
+    {
+        source.prefetch(assets);
+        for (int i = 0; i < assets.size(); i++)
+        {
+            source.resolve(assets.get(i));
+        }
+    }
+
+    /**
+     * Checks that every cached copy has the library file's bytes.
+     */
+    private static boolean sameFiles(Path library, Path cache, List<String> assets) throws IOException
+    {
+        for (int i = 0; i < assets.size(); i++)
+        {
+            if (!Arrays.equals(Files.readAllBytes(library.resolve(assets.get(i))),
+                               Files.readAllBytes(cache.resolve(assets.get(i)))))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lists every file in the library, as paths relative to its root
+     * with forward slashes, the way an AssetSource is asked for them.
+     */
+    private static List<String> listFiles(final Path library) throws IOException
+    {
+        final ArrayList<String> files = new ArrayList<String>();
+        Files.walkFileTree(library, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+            {
+                files.add(library.relativize(file).toString().replace('\\', '/'));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
+    /**
+     * Serves a library's files the way an asset server would, with an
+     * ETag and Last-Modified on each, and a 304 for a request that
+     * already has the current version. It counts what it sent, and can
+     * be told to fail the next request for a file.
+     */
+    private static class LibraryServer implements HttpHandler
+    {
+        private Path library;
+        private HttpServer server;
+
+        // WHAT WE'VE SENT SINCE THE LAST RESET
+        AtomicInteger okResponses = new AtomicInteger();
+        AtomicInteger notModifiedResponses = new AtomicInteger();
+        AtomicInteger etagsMatched = new AtomicInteger();
+        AtomicInteger datesMatched = new AtomicInteger();
+
+        // PATHS TO ANSWER WITH A 503 JUST ONCE
+        ConcurrentHashMap<String, Boolean> failNext = new ConcurrentHashMap<String, Boolean>();
+
+        LibraryServer(Path initLibrary)
+        {
+            library = initLibrary;
+        }
+
+        URI start() throws IOException
+        {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            server.createContext("/", this);
+            server.start();
+            return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+        }
+
+        void stop()
+        {
+            server.stop(0);
+        }
+
+        void reset()
+        {
+            okResponses.set(0);
+            notModifiedResponses.set(0);
+            etagsMatched.set(0);
+            datesMatched.set(0);
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException
+        {
+            try
+            {
+                String path = exchange.getRequestURI().getPath();
+                Path file = library.resolve(path.substring(1)).normalize();
+                if (failNext.remove(path) != null)
+                {
+                    exchange.sendResponseHeaders(503, -1);
+                    return;
+                }
+                if (!file.startsWith(library) || !Files.isRegularFile(file))
+                {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+                byte[] body = Files.readAllBytes(file);
+                String etag = "\"" + Integer.toHexString(Arrays.hashCode(body)) + "\"";
+                String lastModified = HTTP_DATE.format(Instant.ofEpochMilli(
+                        Files.getLastModifiedTime(file).toMillis()).atZone(ZoneOffset.UTC));
+                String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+                String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+                if (etag.equals(ifNoneMatch))
+                {
+                    etagsMatched.incrementAndGet();
+                }
+                if (lastModified.equals(ifModifiedSince))
+                {
+                    datesMatched.incrementAndGet();
+                }
+                exchange.getResponseHeaders().set("ETag", etag);
+                exchange.getResponseHeaders().set("Last-Modified", lastModified);
+                if (etag.equals(ifNoneMatch))
+                {
+                    notModifiedResponses.incrementAndGet();
+                    exchange.sendResponseHeaders(304, -1);
+                    return;
+                }
+                okResponses.incrementAndGet();
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                try
+                {
+                    out.write(body);
+                }
+                finally
+                {
+                    out.close();
+                }
+            }
+            finally
+            {
+                exchange.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package animated_sprite_viewer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The MemoryBudgetCache keeps loaded things around for as long as a
+ * fixed memory budget allows. Each entry is stored along with an
+ * estimate of how many bytes it holds, and when the total goes over
+ * budget the least recently used entries are thrown out first. This
+ * is the one budget all our decoded sprite art is kept under, so
+ * whatever is cached (sprite types, preloaded neighbours, variants)
+ * competes for the same memory.
+ *
+ * All methods are thread safe.
+ *
+ * @author  Kevin Hock
+ */
+public class MemoryBudgetCache<K, V>
+{
+    // MOST RECENTLY USED ENTRIES ARE AT THE END
+    private LinkedHashMap<K, Entry<V>> entries;
+
+    // HOW MUCH WE MAY HOLD AND HOW MUCH WE DO
+    private long maxBytes;
+    private long totalBytes;
+
+    // HOW WELL WE'RE DOING
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param initMaxBytes The memory budget, in bytes.
+     */
+    public MemoryBudgetCache(long initMaxBytes)
+    {
+        maxBytes = initMaxBytes;
+        entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+    }
+
+    // ACCESSOR METHODS
+
+    public synchronized long getMaxBytes() { return maxBytes; }
+    public synchronized long getTotalBytes() { return totalBytes; }
+    public synchronized int size() { return entries.size(); }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+
+    /**
+     * Looks up a cached value, marking it as recently used.
+     *
+     * @param key The key the value was stored under.
+     *
+     * @return The value, or null if it isn't cached.
+     */
+    public synchronized V get(K key)
+    {
+        Entry<V> entry = entries.get(key);
+        if (entry == null)
+        {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    /**
+     * Checks for a cached value without counting it as a use.
+     *
+     * @param key The key to look for.
+     *
+     * @return true if a value is cached under that key.
+     */
+    public synchronized boolean containsKey(K key)
+    {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Stores a value, then evicts the least recently used entries until
+     * the cache is back under budget. The value just stored is never
+     * evicted by its own put, even if it alone is over budget.
+     *
+     * @param key The key to store the value under.
+     *
+     * @param value The value to cache.
+     *
+     * @param bytes Estimate of the memory the value holds.
+     */
+    public synchronized void put(K key, V value, long bytes)
+    {
+        Entry<V> old = entries.put(key, new Entry<V>(value, bytes));
+        if (old != null)
+        {
+            totalBytes -= old.bytes;
+        }
+        totalBytes += bytes;
+
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        while ((totalBytes > maxBytes) && it.hasNext())
+        {
+            Map.Entry<K, Entry<V>> eldest = it.next();
+            if (eldest.getKey().equals(key))
+            {
+                continue;
+            }
+            totalBytes -= eldest.getValue().bytes;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes a value from the cache.
+     *
+     * @param key The key the value was stored under.
+     */
+    public synchronized void remove(K key)
+    {
+        Entry<V> old = entries.remove(key);
+        if (old != null)
+        {
+            totalBytes -= old.bytes;
+        }
+    }
+
+    /**
+     * Summarizes how full the cache is and how well it's working.
+     *
+     * @return A one line description, for logging.
+     */
+    @Override
+    public synchronized String toString()
+    {
+        return entries.size() + " entries, " + (totalBytes / 1024) + " of " + (maxBytes / 1024)
+                + " KB, " + hits + " hits, " + misses + " misses, " + evictions + " evictions";
+    }
+
+    // A CACHED VALUE AND ITS SIZE
+    private static class Entry<V>
+    {
+        private V value;
+        private long bytes;
+
+        private Entry(V initValue, long initBytes)
+        {
+            value = initValue;
+            bytes = initBytes;
+        }
+    }
+}
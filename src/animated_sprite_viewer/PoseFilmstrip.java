@@ -0,0 +1,165 @@
+package animated_sprite_viewer;
+
+import animated_sprite_viewer.renderer.SpriteFrame;
+import animated_sprite_viewer.renderer.SpriteType;
+import java.awt.Component;
+import java.awt.image.BufferedImage;
+import javax.swing.AbstractListModel;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.Icon;
+import javax.swing.ImageIcon;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.SwingConstants;
+
+/**
+ * The PoseFilmstrip shows every pose of one animation state side by
+ * side, each as a thumbnail with its duration underneath. It's a JList
+ * over the state's PoseTimeline with a fixed cell size, so the list
+ * never measures its cells and only paints the ones scrolled into
+ * view; thumbnails come from a ThumbnailCache, which makes them in the
+ * background as they're first needed. Thousands of poses cost no more
+ * than a dozen.
+ *
+ * @author  Kevin Hock
+ */
+public class PoseFilmstrip extends JList<Integer>
+{
+    private static final long serialVersionUID = 1L;
+
+    // ROOM AROUND EACH THUMBNAIL AND FOR THE DURATION UNDER IT
+    public static final int CELL_PADDING = 8;
+    public static final int CELL_TEXT_HEIGHT = 18;
+
+    // WHAT WE'RE SHOWING
+    private PoseListModel poseListModel;
+
+    // WHERE THE THUMBNAILS COME FROM, AND WHAT WE SHOW UNTIL THEY DO
+    private ThumbnailCache thumbnailCache;
+    private Icon placeholderIcon;
+
+    /**
+     * Constructs an empty filmstrip.
+     *
+     * @param initThumbnailCache Makes and keeps the thumbnails.
+     */
+    public PoseFilmstrip(ThumbnailCache initThumbnailCache)
+    {
+        thumbnailCache = initThumbnailCache;
+        int size = thumbnailCache.getThumbnailSize();
+        placeholderIcon = new ImageIcon(new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB));
+        poseListModel = new PoseListModel();
+        setModel(poseListModel);
+        setLayoutOrientation(JList.HORIZONTAL_WRAP);
+        setVisibleRowCount(1);
+        setFixedCellWidth(size + CELL_PADDING);
+        setFixedCellHeight(size + CELL_PADDING + CELL_TEXT_HEIGHT);
+        setCellRenderer(new PoseCellRenderer());
+    }
+
+    // MUTATOR METHODS
+
+    /**
+     * Shows the poses of one animation state.
+     *
+     * @param spriteType The loaded sprite type.
+     *
+     * @param state The state whose poses to show.
+     */
+    public void showTimeline(SpriteType spriteType, String state)
+    {
+        thumbnailCache.cancelPending();
+        poseListModel.setTimeline(spriteType, (spriteType == null) ? null : spriteType.getPoseTimeline(state));
+        if (poseListModel.getSize() > 0)
+        {
+            ensureIndexIsVisible(0);
+        }
+    }
+
+    /**
+     * The list model: one element per pose, each just its index, since
+     * the renderer looks everything else up in the timeline.
+     */
+    private static class PoseListModel extends AbstractListModel<Integer>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private SpriteType spriteType;
+        private PoseTimeline timeline;
+
+        public SpriteType getSpriteType() { return spriteType; }
+        public PoseTimeline getTimeline() { return timeline; }
+
+        @Override
+        public int getSize()
+        {
+            return (timeline == null) ? 0 : timeline.getPoseCount();
+        }
+
+        @Override
+        public Integer getElementAt(int index)
+        {
+            return index;
+        }
+
+        /**
+         * Swaps in another timeline, telling the list only what it
+         * needs to know: the poses that went and the poses that came.
+         */
+        public void setTimeline(SpriteType initSpriteType, PoseTimeline initTimeline)
+        {
+            int oldSize = getSize();
+            spriteType = initSpriteType;
+            timeline = initTimeline;
+            int newSize = getSize();
+            if (oldSize > newSize)
+            {
+                fireIntervalRemoved(this, newSize, oldSize - 1);
+            }
+            else if (newSize > oldSize)
+            {
+                fireIntervalAdded(this, oldSize, newSize - 1);
+            }
+            if (Math.min(oldSize, newSize) > 0)
+            {
+                fireContentsChanged(this, 0, Math.min(oldSize, newSize) - 1);
+            }
+        }
+    }
+
+    /**
+     * Draws one pose: its thumbnail, or a blank until that's ready,
+     * over its number and duration.
+     */
+    private class PoseCellRenderer extends DefaultListCellRenderer
+    {
+        private static final long serialVersionUID = 1L;
+
+        // REPAINTS THE FILMSTRIP WHEN A THUMBNAIL ARRIVES
+        private Runnable repainter = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                repaint();
+            }
+        };
+
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                      boolean isSelected, boolean cellHasFocus)
+        {
+            PoseTimeline timeline = poseListModel.getTimeline();
+            int pose = ((Integer)value).intValue();
+            String text = (pose + 1) + ": " + timeline.getDuration(pose) + " ticks";
+            JLabel label = (JLabel)super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+            SpriteFrame frame = poseListModel.getSpriteType().getFrame(timeline.getImageId(pose));
+            BufferedImage thumbnail = (frame == null) ? null : thumbnailCache.getThumbnail(frame, repainter);
+            label.setIcon((thumbnail == null) ? placeholderIcon : new ImageIcon(thumbnail));
+            label.setHorizontalAlignment(SwingConstants.CENTER);
+            label.setHorizontalTextPosition(SwingConstants.CENTER);
+            label.setVerticalTextPosition(SwingConstants.BOTTOM);
+            return label;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package animated_sprite_viewer;
+
+import java.util.Map;
+
+/**
+ * The PoseTimeline class is a precomputed, read-only view of one
+ * animation state's poses. Alongside the image ids and durations it
+ * keeps a prefix-sum table of when each pose ends, so the pose that is
+ * showing at any tick can be found with a binary search instead of
+ * walking the sequence frame by frame. For short loops it also builds a
+ * direct tick-to-pose table, making the lookup a single array read.
+ *
+ * Time is measured in ticks, the same unit as the duration attribute
+ * of a pose in the sprite type xml files. Timelines loop, so any tick,
+ * however large, maps onto a pose.
+ *
+ * @author  Kevin Hock
+ */
+public class PoseTimeline
+{
+    // LOOPS UP TO THIS MANY TICKS LONG GET A DIRECT LOOKUP TABLE
+    public static final int DIRECT_LOOKUP_LIMIT = 4096;
+
+    // THE POSES THEMSELVES, IN ORDER
+    private int[] imageIds;
+    private int[] durations;
+
+    // poseEnds[i] IS THE FIRST TICK AFTER POSE i, SO
+    // poseEnds[poseEnds.length-1] IS THE LENGTH OF THE LOOP
+    private long[] poseEnds;
+    private long totalDuration;
+
+    // tickToPose[t] IS THE POSE SHOWING AT TICK t, OR null FOR LONG LOOPS
+    private int[] tickToPose;
+
+    /**
+     * Builds the timeline for a sequence of poses. Both arrays must be
+     * the same length and every duration must be positive, which the
+     * sprite type schema already guarantees.
+     *
+     * @param initImageIds The image id of each pose, in order.
+     *
+     * @param initDurations How many ticks each pose is shown for.
+     */
+    public PoseTimeline(int[] initImageIds, int[] initDurations)
+    {
+        if (initImageIds.length != initDurations.length)
+        {
+            throw new IllegalArgumentException("Every pose needs both an image id and a duration");
+        }
+        imageIds = initImageIds.clone();
+        durations = initDurations.clone();
+
+        // RUNNING SUM OF THE DURATIONS
+        poseEnds = new long[durations.length];
+        long sum = 0;
+        for (int i = 0; i < durations.length; i++)
+        {
+            if (durations[i] <= 0)
+            {
+                throw new IllegalArgumentException("Pose " + i + " has a non-positive duration");
+            }
+            sum += durations[i];
+            poseEnds[i] = sum;
+        }
+        totalDuration = sum;
+
+        // SHORT LOOPS ARE CHEAP ENOUGH TO TABULATE TICK BY TICK
+        if ((totalDuration > 0) && (totalDuration <= DIRECT_LOOKUP_LIMIT))
+        {
+            tickToPose = new int[(int)totalDuration];
+            int tick = 0;
+            for (int pose = 0; pose < durations.length; pose++)
+            {
+                for (int i = 0; i < durations[pose]; i++)
+                {
+                    tickToPose[tick++] = pose;
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the timeline from the string attribute table SpriteTypeLoader
+     * gets out of a sprite type's xml file, where row 0 holds the durations and row 1 holds the image ids.
+     *
+     * @param attributes The [2][numberOfPoses] attribute table for one state.
+     *
+     * @return The timeline for those poses.
+     */
+    public static PoseTimeline fromAttributes(String[][] attributes)
+    {
+        int numPoses = attributes[1].length;
+        int[] ids = new int[numPoses];
+        int[] durations = new int[numPoses];
+        for (int i = 0; i < numPoses; i++)
+        {
+            durations[i] = Integer.parseInt(attributes[0][i]);
+            ids[i] = Integer.parseInt(attributes[1][i]);
+        }
+        return new PoseTimeline(ids, durations);
+    }
+
+    /**
+     * Builds the normalised form of this timeline: image ids are first
+     * replaced by their canonical ids, so poses showing identical frames
+     * use the same id, and then each run of consecutive poses showing
+     * the same image becomes one longer pose. Every tick shows the same
+     * pixels as before, with fewer poses to step through. Runs are never
+     * merged across the loop point, so the loop still starts where it did.
+     *
+     * @param canonicalImageIds Maps image ids to the id of an identical
+     * frame; ids not in the map are left as they are.
+     *
+     * @return The normalised timeline, or this one if it's already normal.
+     */
+    public PoseTimeline normalize(Map<Integer, Integer> canonicalImageIds)
+    {
+        int[] newIds = new int[imageIds.length];
+        int[] newDurations = new int[durations.length];
+        int count = 0;
+        boolean changed = false;
+        for (int i = 0; i < imageIds.length; i++)
+        {
+            Integer canonical = canonicalImageIds.get(imageIds[i]);
+            int id = (canonical == null) ? imageIds[i] : canonical.intValue();
+            changed |= (id != imageIds[i]);
+
+            // SAME IMAGE AS THE POSE BEFORE? THEN JUST SHOW THAT ONE LONGER
+            if ((count > 0) && (newIds[count - 1] == id)
+                    && ((long)newDurations[count - 1] + durations[i] <= Integer.MAX_VALUE))
+            {
+                newDurations[count - 1] += durations[i];
+                continue;
+            }
+            newIds[count] = id;
+            newDurations[count] = durations[i];
+            count++;
+        }
+        if (!changed && (count == imageIds.length))
+        {
+            return this;
+        }
+        int[] mergedIds = new int[count];
+        int[] mergedDurations = new int[count];
+        System.arraycopy(newIds, 0, mergedIds, 0, count);
+        System.arraycopy(newDurations, 0, mergedDurations, 0, count);
+        return new PoseTimeline(mergedIds, mergedDurations);
+    }
+
+    // ACCESSOR METHODS
+
+    public int getPoseCount() { return imageIds.length; }
+    public int getImageId(int poseIndex) { return imageIds[poseIndex]; }
+    public int getDuration(int poseIndex) { return durations[poseIndex]; }
+    public long getTotalDuration() { return totalDuration; }
+
+    /**
+     * Accessor method for the first tick (within one loop) at which
+     * the poseIndex pose is shown.
+     *
+     * @param poseIndex The pose of interest.
+     *
+     * @return The tick at which that pose starts.
+     */
+    public long getPoseStart(int poseIndex)
+    {
+        return poseEnds[poseIndex] - durations[poseIndex];
+    }
+
+    /**
+     * Finds which pose is showing at the given tick. Short loops are
+     * answered with one table read, longer ones with a binary search
+     * over the cumulative durations.
+     *
+     * @param tick Ticks since the animation started; may be any value.
+     *
+     * @return The index of the pose showing at that tick, or -1 if the
+     * timeline has no poses.
+     */
+    public int poseIndexAt(long tick)
+    {
+        if (totalDuration == 0)
+        {
+            return -1;
+        }
+
+        // WRAP INTO A SINGLE LOOP, KEEPING NEGATIVE TICKS POSITIVE
+        long t = tick % totalDuration;
+        if (t < 0)
+        {
+            t += totalDuration;
+        }
+        if (tickToPose != null)
+        {
+            return tickToPose[(int)t];
+        }
+
+        // FIND THE FIRST POSE THAT ENDS AFTER t
+        int low = 0;
+        int high = poseEnds.length - 1;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (poseEnds[mid] <= t)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the image id of the pose showing at the given tick.
+     *
+     * @param tick Ticks since the animation started; may be any value.
+     *
+     * @return The image id showing at that tick, or -1 if the timeline
+     * has no poses.
+     */
+    public int imageIdAt(long tick)
+    {
+        int pose = poseIndexAt(tick);
+        return (pose < 0) ? -1 : imageIds[pose];
+    }
+
+    /**
+     * Finds how many ticks remain of the pose showing at the given tick,
+     * which tells a caller how long it can skip checking for a change.
+     *
+     * @param tick Ticks since the animation started; may be any value.
+     *
+     * @return Ticks until the next pose starts, or 0 if there are no poses.
+     */
+    public long ticksRemainingAt(long tick)
+    {
+        int pose = poseIndexAt(tick);
+        if (pose < 0)
+        {
+            return 0;
+        }
+        long t = tick % totalDuration;
+        if (t < 0)
+        {
+            t += totalDuration;
+        }
+        return poseEnds[pose] - t;
+    }
+}
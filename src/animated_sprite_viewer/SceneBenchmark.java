@@ -0,0 +1,219 @@
+package animated_sprite_viewer;
+
+import animated_sprite_viewer.assets.AssetSource;
+import animated_sprite_viewer.assets.AssetSources;
+import animated_sprite_viewer.renderer.Sprite;
+import animated_sprite_viewer.renderer.SpriteArrayEngine;
+import animated_sprite_viewer.renderer.SpriteType;
+import animated_sprite_viewer.renderer.Viewport;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The SceneBenchmark measures how many sprite updates per second a big
+ * scene manages: as a list of Sprite objects, the way SceneRenderer
+ * animates them one by one, and as a SpriteArrayEngine, both on one
+ * thread and split across cores. It also times painting one frame of
+ * each off screen. Run it with the sprite library, how many sprites and
+ * how many ticks to run, as in
+ *
+ *   java -cp dist/AnimatedSpriteViewer.jar animated_sprite_viewer.SceneBenchmark ./data/sprite_types/ 100000 200
+ *
+ * @author  Kevin Hock
+ */
+public class SceneBenchmark
+{
+    // DEFAULTS FOR WHAT WE'RE NOT TOLD
+    public static final int DEFAULT_SPRITE_COUNT = 100000;
+    public static final int DEFAULT_TICKS = 200;
+
+    // HOW BIG THE SCENE AND THE PAINTED FRAME ARE, IN PIXELS
+    public static final int SCENE_SIZE = 2000;
+    public static final int CANVAS_SIZE = 800;
+
+    // SO EVERY RUN BUILDS THE SAME SCENE
+    public static final long SEED = 42;
+
+    /**
+     * Runs the benchmark and prints the results.
+     *
+     * @param args The sprite library, the sprite count and the tick count,
+     * all optional.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        String library = (args.length > 0) ? args[0] : AnimatedSpriteViewer.SPRITES_DATA_PATH;
+        int spriteCount = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_SPRITE_COUNT;
+        int ticks = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_TICKS;
+
+        // LOAD EVERY TYPE IN THE LIBRARY
+        ArrayList<SpriteType> spriteTypes = new ArrayList<SpriteType>();
+        AssetSource source = AssetSources.open(library);
+        try
+        {
+            SpriteTypeLoader loader = new SpriteTypeLoader(source);
+            final ArrayList<String> names = new ArrayList<String>();
+            AnimatedSpriteXMLLoader.streamSpriteTypeNames(source, AnimatedSpriteViewer.SPRITE_TYPE_LIST_FILE,
+                    new AnimatedSpriteXMLLoader.SpriteTypeNameListener()
+            {
+                @Override
+                public void spriteTypeNamesFound(List<String> batch)
+                {
+                    names.addAll(batch);
+                }
+            });
+            for (int i = 0; i < names.size(); i++)
+            {
+                SpriteType spriteType = loader.loadSpriteType(names.get(i));
+                if (spriteType.getStates().size() > 0)
+                {
+                    spriteTypes.add(spriteType);
+                }
+            }
+        }
+        finally
+        {
+            source.close();
+        }
+        if (spriteTypes.isEmpty())
+        {
+            System.err.println("No animated sprite types in " + library);
+            System.exit(1);
+        }
+
+        // THE SAME SCENE BOTH WAYS
+        ArrayList<Sprite> sprites = new ArrayList<Sprite>(spriteCount);
+        SpriteArrayEngine engine = new SpriteArrayEngine();
+        for (int t = 0; t < spriteTypes.size(); t++)
+        {
+            engine.addType(spriteTypes.get(t));
+        }
+        Random random = new Random(SEED);
+        for (int i = 0; i < spriteCount; i++)
+        {
+            int typeHandle = random.nextInt(spriteTypes.size());
+            SpriteType spriteType = spriteTypes.get(typeHandle);
+            int stateHandle = random.nextInt(spriteType.getStates().size());
+            float x = random.nextFloat() * SCENE_SIZE;
+            float y = random.nextFloat() * SCENE_SIZE;
+            float vx = random.nextFloat() * 2 - 1;
+            float vy = random.nextFloat() * 2 - 1;
+            Sprite sprite = new Sprite(spriteType, stateHandle);
+            sprite.setPositionX(x);
+            sprite.setPositionY(y);
+            sprite.setVelocityX(vx);
+            sprite.setVelocityY(vy);
+            sprites.add(sprite);
+            engine.addSprite(typeHandle, stateHandle, x, y, vx, vy);
+        }
+
+        System.out.println(spriteCount + " sprites of " + spriteTypes.size() + " types, " + ticks + " ticks, "
+                + Runtime.getRuntime().availableProcessors() + " cores");
+        System.out.println(String.format("%-26s %16s %12s", "", "updates/s", "paint ms"));
+
+        // WARM EACH UP, THEN TIME IT
+        timeSprites(sprites, ticks / 4);
+        printRow("Sprite objects", spriteCount, ticks, timeSprites(sprites, ticks), paintSprites(sprites));
+        engine.setParallel(false);
+        timeEngine(engine, ticks / 4);
+        printRow("Arrays, one thread", spriteCount, ticks, timeEngine(engine, ticks), paintEngine(engine));
+        engine.setParallel(true);
+        timeEngine(engine, ticks / 4);
+        printRow("Arrays, fork-join", spriteCount, ticks, timeEngine(engine, ticks), paintEngine(engine));
+    }
+
+    /**
+     * Times updating a list of sprites, as SceneRenderer does.
+     *
+     * @return Nanoseconds taken.
+     */
+    private static long timeSprites(ArrayList<Sprite> sprites, int ticks)
+    {
+        long start = System.nanoTime();
+        for (long tick = 1; tick <= ticks; tick++)
+        {
+            for (int i = 0; i < sprites.size(); i++)
+            {
+                sprites.get(i).update(tick, true);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Times stepping an engine.
+     *
+     * @return Nanoseconds taken.
+     */
+    private static long timeEngine(SpriteArrayEngine engine, int ticks)
+    {
+        long start = System.nanoTime();
+        for (int tick = 0; tick < ticks; tick++)
+        {
+            engine.step();
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Times painting a list of sprites into an off screen frame.
+     *
+     * @return Milliseconds taken.
+     */
+    private static long paintSprites(ArrayList<Sprite> sprites)
+    {
+        Viewport viewport = new Viewport();
+        BufferedImage canvas = new BufferedImage(CANVAS_SIZE, CANVAS_SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = canvas.createGraphics();
+        try
+        {
+            long start = System.nanoTime();
+            for (int i = 0; i < sprites.size(); i++)
+            {
+                Sprite sprite = sprites.get(i);
+                if (canvas.getRaster().getBounds().intersects(sprite.getBounds()))
+                {
+                    sprite.paint(g2, viewport);
+                }
+            }
+            return (System.nanoTime() - start) / 1000000;
+        }
+        finally
+        {
+            g2.dispose();
+        }
+    }
+
+    /**
+     * Times painting an engine's sprites into an off screen frame.
+     *
+     * @return Milliseconds taken.
+     */
+    private static long paintEngine(SpriteArrayEngine engine)
+    {
+        BufferedImage canvas = new BufferedImage(CANVAS_SIZE, CANVAS_SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = canvas.createGraphics();
+        try
+        {
+            long start = System.nanoTime();
+            engine.paint(g2, new Viewport(), canvas.getRaster().getBounds());
+            return (System.nanoTime() - start) / 1000000;
+        }
+        finally
+        {
+            g2.dispose();
+        }
+    }
+
+    /**
+     * Prints one row of the results.
+     */
+    private static void printRow(String label, int spriteCount, int ticks, long nanos, long paintMillis)
+    {
+        double updatesPerSecond = (double)spriteCount * ticks * 1000000000.0 / Math.max(1, nanos);
+        System.out.println(String.format("%-26s %16.0f %12d", label, updatesPerSecond, paintMillis));
+    }
+}
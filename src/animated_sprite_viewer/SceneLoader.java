@@ -0,0 +1,238 @@
+package animated_sprite_viewer;
+
+import animated_sprite_viewer.assets.AssetSource;
+import animated_sprite_viewer.renderer.SceneRenderer;
+import animated_sprite_viewer.renderer.SpriteArrayEngine;
+import animated_sprite_viewer.renderer.SpriteType;
+import animated_sprite_viewer.renderer.StateSymbolTable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import javax.swing.SwingUtilities;
+
+/**
+ * The SceneLoader fills the scene from a scene file. The file is read
+ * a batch of sprites at a time on a background thread, and each batch
+ * goes into a SpriteArrayEngine the SceneRenderer is already animating,
+ * so a big scene appears progressively rather than after a long wait,
+ * and never needs more memory than its arrays and one batch.
+ *
+ * Each sprite type a scene uses is looked up once per scene and loaded
+ * through the SpriteSelectionController, sharing its cache with the
+ * viewer. Opening another scene, or picking a sprite type in the
+ * viewer, replaces the crowd, and any load still filling the old crowd
+ * stops at its next batch.
+ *
+ * @author  Kevin Hock
+ */
+public class SceneLoader
+{
+    // THE VIEW TO REPORT ERRORS TO, AND WHERE THE SPRITES GO
+    private AnimatedSpriteViewer view;
+    private SceneRenderer sceneRenderer;
+
+    // RESOLVES SPRITE TYPES FOR US
+    private SpriteSelectionController selectionController;
+
+    // THE SCENE SCHEMA COMES WITH THE SPRITE LIBRARY
+    private AssetSource assetSource;
+    private String sceneSchemaFile;
+
+    // ONE SCENE LOADS AT A TIME
+    private ExecutorService sceneExecutor;
+
+    // WHETHER TO PRINT HOW LONG EACH SCENE TOOK TO LOAD
+    private volatile boolean reportingLoads;
+
+    /**
+     * Constructor for the scene loader.
+     *
+     * @param initView The viewer, which is told of bad scene files.
+     *
+     * @param initSceneRenderer The renderer whose crowd scenes fill.
+     *
+     * @param initSelectionController Loads and caches the sprite types.
+     *
+     * @param initAssetSource The sprite library the scenes use.
+     *
+     * @param initSceneSchemaFile The library's schema for scene files.
+     */
+    public SceneLoader(AnimatedSpriteViewer initView, SceneRenderer initSceneRenderer,
+                       SpriteSelectionController initSelectionController,
+                       AssetSource initAssetSource, String initSceneSchemaFile)
+    {
+        view = initView;
+        sceneRenderer = initSceneRenderer;
+        selectionController = initSelectionController;
+        assetSource = initAssetSource;
+        sceneSchemaFile = initSceneSchemaFile;
+        sceneExecutor = Executors.newSingleThreadExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "SceneLoader");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    // ACCESSOR METHODS
+
+    public boolean isReportingLoads() { return reportingLoads; }
+
+    // MUTATOR METHODS
+
+    /**
+     * Turns printing a summary of each finished scene load on or off.
+     *
+     * @param initReportingLoads true to print what each load placed.
+     */
+    public void setReportingLoads(boolean initReportingLoads)
+    {
+        reportingLoads = initReportingLoads;
+    }
+
+    /**
+     * Replaces whatever's in the scene with an empty crowd, then fills
+     * it from a scene file in the background.
+     *
+     * @param sceneFile The scene file to load.
+     */
+    public void loadScene(final Path sceneFile)
+    {
+        final SpriteArrayEngine crowd = new SpriteArrayEngine();
+        sceneRenderer.removeAllSprites();
+        sceneRenderer.setSpriteArrayEngine(crowd);
+        sceneExecutor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                fill(crowd, sceneFile);
+            }
+        });
+    }
+
+    /**
+     * Streams a scene file into a crowd. Runs on the scene loading thread.
+     *
+     * @param crowd The crowd to fill.
+     *
+     * @param sceneFile The scene file.
+     */
+    private void fill(final SpriteArrayEngine crowd, final Path sceneFile)
+    {
+        final long startTime = System.nanoTime();
+        final HashMap<String, Integer> typeHandles = new HashMap<String, Integer>();
+        final InvalidXMLFileFormatException[] error = new InvalidXMLFileFormatException[1];
+        final int[] placed = new int[1];
+        try
+        {
+            AnimatedSpriteXMLLoader.streamSceneSprites(sceneFile, assetSource.resolve(sceneSchemaFile),
+                    new AnimatedSpriteXMLLoader.SceneSpriteListener()
+            {
+                @Override
+                public boolean sceneSpritesFound(final List<SceneSpriteDescription> sprites)
+                {
+                    // LOAD ANY TYPES THIS BATCH IS THE FIRST TO USE. THIS IS THE
+                    // SLOW PART, SO IT'S DONE WITHOUT HOLDING UP THE ANIMATION
+                    final SpriteType[] newTypes = new SpriteType[sprites.size()];
+                    int newTypeCount = 0;
+                    HashMap<String, SpriteType> batchTypes = new HashMap<String, SpriteType>();
+                    for (int i = 0; i < sprites.size(); i++)
+                    {
+                        String name = sprites.get(i).getSpriteTypeName();
+                        if (typeHandles.containsKey(name) || batchTypes.containsKey(name))
+                        {
+                            continue;
+                        }
+                        try
+                        {
+                            SpriteType spriteType = selectionController.resolveSpriteType(name);
+                            batchTypes.put(name, spriteType);
+                            newTypes[newTypeCount++] = spriteType;
+                        }
+                        catch(InvalidXMLFileFormatException ixffe)
+                        {
+                            error[0] = ixffe;
+                            return false;
+                        }
+                    }
+
+                    // THEN PUT THE BATCH IN THE CROWD
+                    final int typesToAdd = newTypeCount;
+                    boolean current = sceneRenderer.changeCrowd(crowd, new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            for (int i = 0; i < typesToAdd; i++)
+                            {
+                                typeHandles.put(newTypes[i].getName(), crowd.addType(newTypes[i]));
+                            }
+                            for (int i = 0; i < sprites.size(); i++)
+                            {
+                                SceneSpriteDescription sprite = sprites.get(i);
+                                int typeHandle = typeHandles.get(sprite.getSpriteTypeName());
+                                int stateHandle = crowd.getType(typeHandle).getStateHandle(sprite.getState());
+                                if (stateHandle == StateSymbolTable.NO_STATE)
+                                {
+                                    error[0] = new InvalidXMLFileFormatException(sceneFile.toString(),
+                                            sprite.getSpriteTypeName() + " has no state " + sprite.getState());
+                                    return;
+                                }
+                                crowd.addSprite(typeHandle, stateHandle, sprite.getX(), sprite.getY(),
+                                                sprite.getVx(), sprite.getVy(), sprite.getStartOffset());
+                                placed[0]++;
+                            }
+                        }
+                    });
+                    return current && (error[0] == null);
+                }
+            });
+        }
+        catch(InvalidXMLFileFormatException ixffe)
+        {
+            error[0] = ixffe;
+        }
+        catch(IOException ioe)
+        {
+            // NO SCHEMA IN THE LIBRARY
+            ioe.printStackTrace();
+            error[0] = new InvalidXMLFileFormatException(sceneFile.toString(), sceneSchemaFile);
+        }
+        catch(RuntimeException re)
+        {
+            // A SPRITE TYPE THAT BROKE WHILE LOADING, SAY. THE USER STILL
+            // NEEDS TO HEAR ABOUT IT, OR THE SCENE JUST STOPS FILLING
+            re.printStackTrace();
+            error[0] = new InvalidXMLFileFormatException(sceneFile.toString(), re.toString());
+        }
+        if (error[0] != null)
+        {
+            final InvalidXMLFileFormatException reported = error[0];
+            SwingUtilities.invokeLater(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    view.showLoadError(reported);
+                }
+            });
+            return;
+        }
+        if (!reportingLoads || (sceneRenderer.getSpriteArrayEngine() != crowd))
+        {
+            // NOT REPORTING, OR REPLACED BEFORE IT WAS DONE
+            return;
+        }
+        System.out.println("Scene " + sceneFile.getFileName() + ": " + placed[0] + " sprites of "
+                + typeHandles.size() + " types in " + ((System.nanoTime() - startTime) / 1000000) + " ms");
+    }
+}
@@ -0,0 +1,65 @@
+package animated_sprite_viewer;
+
+/**
+ * A SceneSpriteDescription is one sprite placed in a scene file: which
+ * sprite type (or type#variant) it is, which animation state it's in,
+ * where it starts, how fast it moves, and how many ticks into its
+ * animation it starts, so a crowd of one type doesn't all step in time.
+ *
+ * @author  Kevin Hock
+ */
+public class SceneSpriteDescription
+{
+    // WHAT IT IS
+    private String spriteTypeName;
+    private String state;
+
+    // WHERE IT STARTS AND WHERE IT'S GOING, IN PIXELS AND PIXELS PER TICK
+    private float x;
+    private float y;
+    private float vx;
+    private float vy;
+
+    // HOW FAR INTO ITS ANIMATION IT STARTS, IN TICKS
+    private long startOffset;
+
+    /**
+     * Constructor for a placed sprite.
+     *
+     * @param initSpriteTypeName Name of its sprite type, or type#variant.
+     *
+     * @param initState Name of its animation state.
+     *
+     * @param initX Where it starts across.
+     *
+     * @param initY Where it starts down.
+     *
+     * @param initVx How far it moves across each tick.
+     *
+     * @param initVy How far it moves down each tick.
+     *
+     * @param initStartOffset How many ticks into its animation it starts.
+     */
+    public SceneSpriteDescription(String initSpriteTypeName, String initState,
+                                  float initX, float initY, float initVx, float initVy,
+                                  long initStartOffset)
+    {
+        spriteTypeName = initSpriteTypeName;
+        state = initState;
+        x = initX;
+        y = initY;
+        vx = initVx;
+        vy = initVy;
+        startOffset = initStartOffset;
+    }
+
+    // ACCESSOR METHODS
+
+    public String getSpriteTypeName() { return spriteTypeName; }
+    public String getState() { return state; }
+    public float getX() { return x; }
+    public float getY() { return y; }
+    public float getVx() { return vx; }
+    public float getVy() { return vy; }
+    public long getStartOffset() { return startOffset; }
+}
@@ -0,0 +1,42 @@
+package animated_sprite_viewer;
+
+import java.awt.Rectangle;
+
+/**
+ * A SpriteImageDescription says where one image of a sprite type comes
+ * from, as listed in the images_list of its xml file. An image is
+ * either a whole file of its own, or a region of a shared sprite sheet,
+ * given either directly (x, y, w, h) or as a row and column of the
+ * sheet's grid. Grid cells are turned into regions when the xml file is
+ * read, so a description only ever holds a file name and an optional
+ * region.
+ *
+ * @author  Kevin Hock
+ */
+public class SpriteImageDescription
+{
+    // THE FILE TO DECODE, RELATIVE TO THE SPRITE TYPE'S DIRECTORY
+    private String fileName;
+
+    // THE PART OF THAT FILE TO USE, OR null FOR ALL OF IT
+    private Rectangle region;
+
+    /**
+     * Constructor for an image description.
+     *
+     * @param initFileName Name of the image file or sprite sheet.
+     *
+     * @param initRegion Region of a sprite sheet, or null for a whole file.
+     */
+    public SpriteImageDescription(String initFileName, Rectangle initRegion)
+    {
+        fileName = initFileName;
+        region = initRegion;
+    }
+
+    // ACCESSOR METHODS
+
+    public String getFileName() { return fileName; }
+    public Rectangle getRegion() { return region; }
+    public boolean isSheetRegion() { return region != null; }
+}
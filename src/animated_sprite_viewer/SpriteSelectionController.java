@@ -0,0 +1,487 @@
+package animated_sprite_viewer;
+
+import animated_sprite_viewer.renderer.SpriteType;
+import animated_sprite_viewer.renderer.SpriteVariant;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import javax.swing.SwingUtilities;
+
+/**
+ * The SpriteSelectionController is the one place sprite type and
+ * animation state selections go through. Requests that repeat what is
+ * already showing (or already on its way) are dropped, and sprite type
+ * loads run on a single background thread that always works on the
+ * newest request: if the user clicks through five types while one is
+ * loading, only the last of them is loaded next, and any load that has
+ * been overtaken is never shown.
+ *
+ * When it has nothing else to do, the same thread preloads the sprite
+ * types next to the current one, so stepping through the list with the
+ * keyboard usually finds the next type already decoded. Everything it
+ * loads is kept in a MemoryBudgetCache, so preloading never grows past
+ * the shared memory budget; the least recently used types go first.
+ *
+ * A colour variant of a type goes through the same pipeline under the
+ * name type#variant. It's built from the base type's frames (loading
+ * the base first if it was evicted) and cached alongside the types, so
+ * flipping back and forth between variants costs nothing after the
+ * first time. Picking a variant keeps the animation state showing.
+ *
+ * Scene loading resolves the types it needs through the same thread and
+ * cache, with resolveSpriteType, so a type shown in the viewer and used
+ * in a scene is only ever loaded once.
+ *
+ * All public methods but resolveSpriteType are meant to be called on the
+ * event dispatch thread.
+ *
+ * @author  Kevin Hock
+ */
+public class SpriteSelectionController
+{
+    // THE VIEW WE UPDATE ONCE A SELECTION IS READY
+    private AnimatedSpriteViewer view;
+
+    // DOES THE ACTUAL LOADING
+    private SpriteTypeLoader spriteTypeLoader;
+
+    // ONE THREAD, SO LOADS NEVER PILE UP ON EACH OTHER
+    private ExecutorService loadExecutor;
+
+    // SPRITE TYPES WE'VE ALREADY LOADED, KEPT UNDER THE MEMORY BUDGET
+    private MemoryBudgetCache<String, SpriteType> loadedSpriteTypes;
+
+    // WHAT'S SHOWING NOW. WE HOLD ON TO THE TYPE ITSELF SINCE
+    // PRELOADING MAY PUSH IT OUT OF THE CACHE
+    private String currentSpriteTypeName;
+    private SpriteType currentSpriteType;
+    private String currentState;
+
+    // THE NEWEST TYPE REQUEST AND ITS NUMBER. OLDER NUMBERS ARE STALE.
+    // THESE ARE ALL GUARDED BY this SINCE THE LOADER THREAD READS THEM.
+    private String requestedSpriteTypeName;
+    private String requestedKeepState;
+    private long requestNumber;
+    private boolean loadScheduled;
+
+    // NEIGHBOURS OF THE CURRENT TYPE, NEAREST FIRST, STILL TO BE PRELOADED
+    private LinkedList<String> preloadQueue;
+
+    /**
+     * Constructor for the controller.
+     *
+     * @param initView The viewer whose selections we control.
+     *
+     * @param initSpriteTypeLoader Used to load sprite types in the background.
+     *
+     * @param initSpriteTypeCache Where loaded sprite types are kept.
+     */
+    public SpriteSelectionController(AnimatedSpriteViewer initView,
+                                     SpriteTypeLoader initSpriteTypeLoader,
+                                     MemoryBudgetCache<String, SpriteType> initSpriteTypeCache)
+    {
+        view = initView;
+        spriteTypeLoader = initSpriteTypeLoader;
+        loadedSpriteTypes = initSpriteTypeCache;
+        preloadQueue = new LinkedList<String>();
+        loadExecutor = Executors.newSingleThreadExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "SpriteTypeLoader");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Asks for a sprite type to be shown. The type loads in the background
+     * and is handed to the view only if no newer request arrived meanwhile.
+     * Once it's showing, its neighbours are preloaded.
+     *
+     * @param spriteTypeName Name of the sprite type the user picked.
+     *
+     * @param neighbours Names of the types the user is likely to pick
+     * next, nearest first.
+     */
+    public synchronized void requestSpriteType(String spriteTypeName, List<String> neighbours)
+    {
+        // ALREADY SHOWING OR ALREADY ON ITS WAY?
+        String latest = (requestedSpriteTypeName != null) ? requestedSpriteTypeName : currentSpriteTypeName;
+        if ((spriteTypeName == null) || spriteTypeName.equals(latest))
+        {
+            return;
+        }
+        requestedSpriteTypeName = spriteTypeName;
+        requestedKeepState = null;
+        requestNumber++;
+
+        // THE OLD NEIGHBOURHOOD IS NO LONGER INTERESTING
+        preloadQueue.clear();
+        preloadQueue.addAll(neighbours);
+        scheduleLoad();
+    }
+
+    /**
+     * Asks for a colour variant of the current sprite type to be shown,
+     * in the animation state that's showing now.
+     *
+     * @param variantName Name of the variant, or null for the type's
+     * own colours.
+     */
+    public synchronized void requestVariant(String variantName)
+    {
+        String latest = (requestedSpriteTypeName != null) ? requestedSpriteTypeName : currentSpriteTypeName;
+        if (latest == null)
+        {
+            return;
+        }
+        String name = baseNameOf(latest);
+        if (variantName != null)
+        {
+            name = name + SpriteVariant.NAME_SEPARATOR + variantName;
+        }
+        if (name.equals(latest))
+        {
+            return;
+        }
+
+        // A TYPE STILL ON ITS WAY HAS NO STATE SHOWING YET
+        if (requestedSpriteTypeName == null)
+        {
+            requestedKeepState = currentState;
+        }
+        requestedSpriteTypeName = name;
+        requestNumber++;
+        scheduleLoad();
+    }
+
+    /**
+     * Asks for an animation state of the current sprite type to be shown.
+     * Its sprite type is already loaded, so this is quick.
+     *
+     * @param state Name of the animation state the user picked.
+     */
+    public void requestState(String state)
+    {
+        SpriteType spriteType;
+        synchronized (this)
+        {
+            // A STATE OF A TYPE THAT'S ABOUT TO BE REPLACED IS NO USE
+            if ((state == null) || (requestedSpriteTypeName != null) || state.equals(currentState))
+            {
+                return;
+            }
+            spriteType = currentSpriteType;
+            if ((spriteType == null) || (spriteType.getPoseTimeline(state) == null))
+            {
+                return;
+            }
+            currentState = state;
+        }
+        view.loadSprite(spriteType, state);
+    }
+
+    /**
+     * Finds a sprite type, or a colour variant of one, loading it on the
+     * loader thread if it isn't cached. Blocks until it's ready, so call
+     * it from a background thread, never the event dispatch thread.
+     *
+     * @param name Name of the type, or type#variant.
+     *
+     * @return The loaded type.
+     *
+     * @throws InvalidXMLFileFormatException Thrown if the type can't be
+     * loaded or has no such variant.
+     */
+    public SpriteType resolveSpriteType(final String name) throws InvalidXMLFileFormatException
+    {
+        SpriteType spriteType = loadedSpriteTypes.get(name);
+        if (spriteType != null)
+        {
+            return spriteType;
+        }
+        try
+        {
+            return loadExecutor.submit(new Callable<SpriteType>()
+            {
+                @Override
+                public SpriteType call() throws InvalidXMLFileFormatException
+                {
+                    SpriteType cached = loadedSpriteTypes.get(name);
+                    return (cached != null) ? cached : load(name);
+                }
+            }).get();
+        }
+        catch(ExecutionException ee)
+        {
+            if (ee.getCause() instanceof InvalidXMLFileFormatException)
+            {
+                throw (InvalidXMLFileFormatException)ee.getCause();
+            }
+            throw new RuntimeException(ee.getCause());
+        }
+        catch(InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+            throw new InvalidXMLFileFormatException(name, "interrupted while loading");
+        }
+    }
+
+    /**
+     * Makes sure the loader thread has a task queued. It always picks up
+     * the newest request, so one queued task is enough no matter how
+     * many requests come in. Must be called while holding this lock.
+     */
+    private void scheduleLoad()
+    {
+        if (!loadScheduled)
+        {
+            loadScheduled = true;
+            loadExecutor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    loadLatestSpriteType();
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs on the loader thread. Keeps loading until the type it has
+     * loaded is still the newest one requested, hands it to the view,
+     * then preloads neighbours until a new request comes in. However it
+     * ends, the next request schedules a fresh task.
+     */
+    private void loadLatestSpriteType()
+    {
+        boolean finished = false;
+        try
+        {
+            finished = loadUntilIdle();
+        }
+        finally
+        {
+            if (!finished)
+            {
+                synchronized (this)
+                {
+                    loadScheduled = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * The body of loadLatestSpriteType.
+     *
+     * @return true once nothing is left to load, having cleared the
+     * scheduled flag under the lock.
+     */
+    private boolean loadUntilIdle()
+    {
+        while (true)
+        {
+            String name;
+            String keepState;
+            long number;
+            boolean preloading;
+            synchronized (this)
+            {
+                preloading = (requestedSpriteTypeName == null);
+                if (preloading)
+                {
+                    // NOTHING REQUESTED, SO WORK ON THE NEIGHBOURS
+                    name = nextTypeToPreload();
+                    if (name == null)
+                    {
+                        loadScheduled = false;
+                        return true;
+                    }
+                }
+                else
+                {
+                    name = requestedSpriteTypeName;
+                }
+                keepState = preloading ? null : requestedKeepState;
+                number = requestNumber;
+            }
+
+            SpriteType spriteType = loadedSpriteTypes.get(name);
+            InvalidXMLFileFormatException error = null;
+            if (spriteType == null)
+            {
+                try
+                {
+                    spriteType = load(name);
+                }
+                catch(InvalidXMLFileFormatException ixffe)
+                {
+                    error = ixffe;
+                }
+                catch(RuntimeException re)
+                {
+                    // A NUMBER TOO BIG FOR AN int, A BROKEN IMAGE AND THE LIKE
+                    // ARE AS MUCH THE FILE'S FAULT AS A SCHEMA VIOLATION
+                    re.printStackTrace();
+                    error = new InvalidXMLFileFormatException(name, re.toString());
+                    error.initCause(re);
+                }
+            }
+            if (preloading)
+            {
+                // A BAD NEIGHBOUR WILL BE REPORTED IF THE USER EVER PICKS IT
+                continue;
+            }
+
+            synchronized (this)
+            {
+                // OVERTAKEN BY A NEWER CLICK? THEN GO LOAD THAT ONE INSTEAD
+                if (number != requestNumber)
+                {
+                    continue;
+                }
+                requestedSpriteTypeName = null;
+                requestedKeepState = null;
+                if (error == null)
+                {
+                    currentSpriteTypeName = name;
+                    currentSpriteType = spriteType;
+                    currentState = ((keepState != null) && (spriteType.getPoseTimeline(keepState) != null)) ? keepState : null;
+                    keepState = currentState;
+                }
+                else
+                {
+                    preloadQueue.clear();
+                }
+            }
+            publish(spriteType, keepState, error);
+        }
+    }
+
+    /**
+     * Loads a sprite type or a colour variant of one and caches it.
+     * Runs on the loader thread.
+     *
+     * @param name Name of the type, or type#variant.
+     *
+     * @return The loaded type.
+     *
+     * @throws InvalidXMLFileFormatException Thrown if the type can't be
+     * loaded or has no such variant.
+     */
+    private SpriteType load(String name) throws InvalidXMLFileFormatException
+    {
+        SpriteType spriteType;
+        String baseName = baseNameOf(name);
+        if (baseName.equals(name))
+        {
+            spriteType = spriteTypeLoader.loadSpriteType(name);
+        }
+        else
+        {
+            SpriteType base = loadedSpriteTypes.get(baseName);
+            if (base == null)
+            {
+                base = load(baseName);
+            }
+            spriteType = spriteTypeLoader.loadVariant(base,
+                    name.substring(baseName.length() + SpriteVariant.NAME_SEPARATOR.length()));
+        }
+        loadedSpriteTypes.put(name, spriteType, spriteType.getByteSize());
+        return spriteType;
+    }
+
+    /**
+     * Strips the variant, if any, off a name in the type#variant form.
+     *
+     * @param name Name of a type or of a variant of one.
+     *
+     * @return Name of the type.
+     */
+    private static String baseNameOf(String name)
+    {
+        int separator = name.indexOf(SpriteVariant.NAME_SEPARATOR);
+        return (separator < 0) ? name : name.substring(0, separator);
+    }
+
+    /**
+     * Picks the nearest neighbour that isn't loaded yet. Must be called
+     * while holding this lock.
+     *
+     * @return The name of the type to preload, or null if there's none.
+     */
+    private String nextTypeToPreload()
+    {
+        while (!preloadQueue.isEmpty())
+        {
+            String name = preloadQueue.removeFirst();
+            if (!loadedSpriteTypes.containsKey(name))
+            {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Hands a finished load to the view on the event dispatch thread.
+     */
+    private void publish(final SpriteType spriteType, final String state,
+                         final InvalidXMLFileFormatException error)
+    {
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (error != null)
+                {
+                    view.showLoadError(error);
+                }
+                else
+                {
+                    view.fillComboBox(spriteType, state);
+                }
+            }
+        });
+    }
+
+    /**
+     * Lists the names within radius places of index in names, nearest
+     * first and, at equal distance, the one ahead of the cursor first.
+     *
+     * @param names The sprite type names, in the order they're browsed.
+     *
+     * @param index Where the cursor is.
+     *
+     * @param radius How far ahead and behind to look.
+     *
+     * @return The neighbouring names.
+     */
+    public static ArrayList<String> neighboursOf(List<String> names, int index, int radius)
+    {
+        ArrayList<String> neighbours = new ArrayList<String>();
+        for (int distance = 1; distance <= radius; distance++)
+        {
+            if (index + distance < names.size())
+            {
+                neighbours.add(names.get(index + distance));
+            }
+            if (index - distance >= 0)
+            {
+                neighbours.add(names.get(index - distance));
+            }
+        }
+        return neighbours;
+    }
+}
@@ -0,0 +1,312 @@
+package animated_sprite_viewer;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import javax.swing.AbstractListModel;
+
+/**
+ * The SpriteTypeListModel holds the sprite type names shown in the
+ * viewer's list, sorted, along with a lower case copy of each used as
+ * its search key. Because the names are sorted by key, the names
+ * starting with any prefix form one run of the array, found with two
+ * binary searches. Filtering is therefore a pair of searches and
+ * updating two indices, whatever the number of types, and the list is
+ * told only about the names that left or joined the run at its ends.
+ *
+ * Names may be added in batches as the catalog is read; each batch is
+ * merged into place and only the names that landed inside the filtered
+ * run are reported.
+ *
+ * Meant to be used on the event dispatch thread only, like any
+ * ListModel.
+ *
+ * @author  Kevin Hock
+ */
+public class SpriteTypeListModel extends AbstractListModel<String>
+{
+    private static final long serialVersionUID = 1L;
+
+    // ORDERS NAMES BY THEIR SEARCH KEYS, THEN EXACTLY
+    private static final Comparator<String> KEY_ORDER = new Comparator<String>()
+    {
+        @Override
+        public int compare(String a, String b)
+        {
+            int c = keyOf(a).compareTo(keyOf(b));
+            return (c != 0) ? c : a.compareTo(b);
+        }
+    };
+
+    // EVERY NAME, SORTED, AND ITS SEARCH KEY AT THE SAME INDEX
+    private String[] names;
+    private String[] keys;
+
+    // THE NAMES MATCHING THE FILTER ARE names[start] TO names[end - 1]
+    private String filter;
+    private int start;
+    private int end;
+
+    /**
+     * Constructs an empty model with no filter.
+     */
+    public SpriteTypeListModel()
+    {
+        names = new String[0];
+        keys = new String[0];
+        filter = "";
+    }
+
+    // ACCESSOR METHODS
+
+    public String getFilter() { return filter; }
+    public int getTotalSize() { return names.length; }
+
+    @Override
+    public int getSize()
+    {
+        return end - start;
+    }
+
+    @Override
+    public String getElementAt(int index)
+    {
+        return getNameAt(index);
+    }
+
+    /**
+     * Accessor method for a name as the list shows it.
+     *
+     * @param index Position in the filtered list.
+     *
+     * @return The sprite type name there.
+     */
+    public String getNameAt(int index)
+    {
+        if ((index < 0) || (index >= getSize()))
+        {
+            throw new IndexOutOfBoundsException("No sprite type at " + index);
+        }
+        return names[start + index];
+    }
+
+    /**
+     * Accessor method for the names the list shows, in its order. The
+     * list is a view of this model, so it's only good until the model
+     * changes.
+     *
+     * @return The filtered names.
+     */
+    public List<String> getVisibleNames()
+    {
+        return Arrays.asList(names).subList(start, end);
+    }
+
+    /**
+     * Finds where a name is in the filtered list.
+     *
+     * @param name A sprite type name.
+     *
+     * @return Its position, or -1 if it isn't showing.
+     */
+    public int indexOf(String name)
+    {
+        int i = Arrays.binarySearch(names, start, end, name, KEY_ORDER);
+        return (i < 0) ? -1 : i - start;
+    }
+
+    // MUTATOR METHODS
+
+    /**
+     * Shows only the names starting with a prefix, ignoring case. The
+     * list hears about the names that dropped off or joined at either
+     * end of what it showed, and nothing else.
+     *
+     * @param initFilter The prefix, or an empty string for every name.
+     */
+    public void setFilter(String initFilter)
+    {
+        filter = (initFilter == null) ? "" : initFilter;
+        int[] range = rangeOf(keyOf(filter));
+        moveRange(range[0], range[1]);
+    }
+
+    /**
+     * Merges a batch of names into the model, as when the catalog is
+     * read in pieces. Names that land inside the filtered run are
+     * reported to the list as added, one event per run of new names.
+     *
+     * @param newNames The names to add.
+     */
+    public void addNames(Collection<String> newNames)
+    {
+        if (newNames.isEmpty())
+        {
+            return;
+        }
+        String[] batch = newNames.toArray(new String[newNames.size()]);
+        Arrays.sort(batch, KEY_ORDER);
+
+        // MERGE THE TWO SORTED ARRAYS, NOTING WHERE THE NEW NAMES WENT
+        String[] merged = new String[names.length + batch.length];
+        String[] mergedKeys = new String[merged.length];
+        boolean[] added = new boolean[merged.length];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < merged.length; k++)
+        {
+            if ((j < batch.length) && ((i >= names.length) || (KEY_ORDER.compare(batch[j], names[i]) < 0)))
+            {
+                merged[k] = batch[j];
+                mergedKeys[k] = keyOf(batch[j++]);
+                added[k] = true;
+            }
+            else
+            {
+                merged[k] = names[i];
+                mergedKeys[k] = keys[i++];
+            }
+        }
+        names = merged;
+        keys = mergedKeys;
+
+        // THE RUN MOVES, BUT ONLY THE NEW NAMES INSIDE IT ARE NEWS TO THE LIST
+        int[] range = rangeOf(keyOf(filter));
+        start = range[0];
+        end = range[1];
+        int runStart = -1;
+        for (int k = start; k <= end; k++)
+        {
+            boolean isNew = (k < end) && added[k];
+            if (isNew && (runStart < 0))
+            {
+                runStart = k;
+            }
+            else if (!isNew && (runStart >= 0))
+            {
+                fireIntervalAdded(this, runStart - start, k - 1 - start);
+                runStart = -1;
+            }
+        }
+    }
+
+    /**
+     * Moves the filtered run to [newStart, newEnd), firing removals and
+     * additions for the names that left or joined it at either end.
+     */
+    private void moveRange(int newStart, int newEnd)
+    {
+        int oldSize = getSize();
+        if ((newStart >= end) || (newEnd <= start) || (oldSize == 0))
+        {
+            // NOTHING IN COMMON, SO IT'S ALL GOING AND ALL COMING
+            start = newStart;
+            end = newStart;
+            if (oldSize > 0)
+            {
+                fireIntervalRemoved(this, 0, oldSize - 1);
+            }
+            end = newEnd;
+            if (newEnd > newStart)
+            {
+                fireIntervalAdded(this, 0, newEnd - newStart - 1);
+            }
+            return;
+        }
+
+        // THE FRONT
+        if (newStart > start)
+        {
+            int removed = newStart - start;
+            start = newStart;
+            fireIntervalRemoved(this, 0, removed - 1);
+        }
+        else if (newStart < start)
+        {
+            int addedCount = start - newStart;
+            start = newStart;
+            fireIntervalAdded(this, 0, addedCount - 1);
+        }
+
+        // AND THE BACK
+        if (newEnd < end)
+        {
+            int oldEnd = end;
+            end = newEnd;
+            fireIntervalRemoved(this, newEnd - start, oldEnd - 1 - start);
+        }
+        else if (newEnd > end)
+        {
+            int oldEnd = end;
+            end = newEnd;
+            fireIntervalAdded(this, oldEnd - start, newEnd - 1 - start);
+        }
+    }
+
+    /**
+     * Finds the run of names whose keys start with a prefix.
+     *
+     * @param prefixKey The prefix, in lower case.
+     *
+     * @return The run's first index and the index just after its last.
+     */
+    private int[] rangeOf(String prefixKey)
+    {
+        int from = lowerBound(prefixKey);
+        int to = from;
+        if (prefixKey.isEmpty())
+        {
+            to = keys.length;
+        }
+        else
+        {
+            // THE FIRST KEY PAST EVERYTHING STARTING WITH THE PREFIX
+            char last = prefixKey.charAt(prefixKey.length() - 1);
+            if (last == Character.MAX_VALUE)
+            {
+                to = keys.length;
+                while ((to > from) && !keys[to - 1].startsWith(prefixKey))
+                {
+                    to--;
+                }
+            }
+            else
+            {
+                to = lowerBound(prefixKey.substring(0, prefixKey.length() - 1) + (char)(last + 1));
+            }
+        }
+        return new int[] { from, to };
+    }
+
+    /**
+     * Binary searches for the first key not less than a given key.
+     */
+    private int lowerBound(String key)
+    {
+        int lo = 0;
+        int hi = keys.length;
+        while (lo < hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid].compareTo(key) < 0)
+            {
+                lo = mid + 1;
+            }
+            else
+            {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Makes a name's search key.
+     */
+    private static String keyOf(String name)
+    {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,150 @@
+package animated_sprite_viewer;
+
+/**
+ * A SpriteTypeLoadReport sums up what the SpriteTypeLoader did while
+ * loading one sprite type: how many frames it made, how many of them
+ * had to be converted for the screen, how many pixels trimming away
+ * their transparent borders saved, how many poses and frames the
+ * normalisation pass saved, what storing frames as indexed colour
+ * saved, how long the load took and, when
+ * it was asked to measure it, how long drawing one trimmed frame takes
+ * before and after conversion.
+ *
+ * @author  Kevin Hock
+ */
+public class SpriteTypeLoadReport
+{
+    // THE TYPE THIS REPORT IS ABOUT
+    private String spriteTypeName;
+
+    // THE FRAMES WE MADE
+    private int frameCount;
+    private int convertedFrameCount;
+    private long frameBytes;
+
+    // PIXELS PER DRAW OF EVERY DISTINCT FRAME, BEFORE AND AFTER TRIMMING
+    private long untrimmedPixels;
+    private long trimmedPixels;
+
+    // WHAT INDEXED COLOUR STORAGE SAVED, PALETTES INCLUDED
+    private int indexedFrameCount;
+    private int paletteCount;
+    private long bytesBeforeIndexing;
+    private long bytesAfterIndexing;
+
+    // WHAT NORMALISATION SAVED
+    private int posesBefore;
+    private int posesAfter;
+    private int duplicateFrameCount;
+    private long duplicateFrameBytes;
+    private int aliasedFrameCount;
+
+    // HOW LONG THINGS TOOK, -1 IF NOT MEASURED
+    private long loadNanos;
+    private long blitNanosBefore;
+    private long blitNanosAfter;
+    private int blitFrameCount;
+
+    /**
+     * Constructs an empty report.
+     *
+     * @param initSpriteTypeName Name of the sprite type being loaded.
+     */
+    public SpriteTypeLoadReport(String initSpriteTypeName)
+    {
+        spriteTypeName = initSpriteTypeName;
+        loadNanos = -1;
+        blitNanosBefore = -1;
+        blitNanosAfter = -1;
+    }
+
+    // ACCESSOR METHODS
+
+    public String getSpriteTypeName() { return spriteTypeName; }
+    public int getFrameCount() { return frameCount; }
+    public int getConvertedFrameCount() { return convertedFrameCount; }
+    public long getFrameBytes() { return frameBytes; }
+    public long getUntrimmedPixels() { return untrimmedPixels; }
+    public long getTrimmedPixels() { return trimmedPixels; }
+    public int getIndexedFrameCount() { return indexedFrameCount; }
+    public int getPaletteCount() { return paletteCount; }
+    public long getBytesBeforeIndexing() { return bytesBeforeIndexing; }
+    public long getBytesAfterIndexing() { return bytesAfterIndexing; }
+    public int getPosesBefore() { return posesBefore; }
+    public int getPosesAfter() { return posesAfter; }
+    public int getDuplicateFrameCount() { return duplicateFrameCount; }
+    public long getDuplicateFrameBytes() { return duplicateFrameBytes; }
+    public int getAliasedFrameCount() { return aliasedFrameCount; }
+    public long getLoadNanos() { return loadNanos; }
+    public long getBlitNanosBefore() { return blitNanosBefore; }
+    public long getBlitNanosAfter() { return blitNanosAfter; }
+    public int getBlitFrameCount() { return blitFrameCount; }
+
+    // MUTATOR METHODS
+
+    public void addFrame(long bytes) { frameCount++; frameBytes += bytes; }
+    public void addConvertedFrame() { convertedFrameCount++; }
+    public void addDuplicateFrame(long bytes) { duplicateFrameCount++; duplicateFrameBytes += bytes; }
+    public void addAliasedFrame() { aliasedFrameCount++; }
+    public void addTrim(long before, long after) { untrimmedPixels += before; trimmedPixels += after; }
+    public void addIndexedFrame(long before, long after) { indexedFrameCount++; bytesBeforeIndexing += before; bytesAfterIndexing += after; }
+    public void addPalette(int colours) { paletteCount++; bytesAfterIndexing += 4L * colours; }
+    public void addPoses(int before, int after) { posesBefore += before; posesAfter += after; }
+    public void setLoadNanos(long initLoadNanos) { loadNanos = initLoadNanos; }
+
+    /**
+     * Records how long drawing one frame took on average, timing the
+     * same trimmed frames before and after conversion.
+     *
+     * @param initBlitNanosBefore Nanoseconds per frame as decoded.
+     *
+     * @param initBlitNanosAfter Nanoseconds per frame once converted.
+     *
+     * @param initBlitFrameCount How many frames were timed.
+     */
+    public void setBlitNanos(long initBlitNanosBefore, long initBlitNanosAfter, int initBlitFrameCount)
+    {
+        blitNanosBefore = initBlitNanosBefore;
+        blitNanosAfter = initBlitNanosAfter;
+        blitFrameCount = initBlitFrameCount;
+    }
+
+    /**
+     * Summarizes the load.
+     *
+     * @return A one line description, for logging.
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder(spriteTypeName);
+        sb.append(": ").append(frameCount).append(" frames (").append(frameBytes / 1024).append(" KB), ");
+        sb.append(convertedFrameCount).append(" converted for the screen, ");
+        sb.append("trimmed from ").append(untrimmedPixels).append(" to ").append(trimmedPixels).append(" pixels");
+        if (untrimmedPixels > 0)
+        {
+            sb.append(" (").append(100 - (100 * trimmedPixels / untrimmedPixels)).append("% fewer drawn, ");
+            sb.append((4 * untrimmedPixels) / 1024).append(" KB -> ").append((4 * trimmedPixels) / 1024).append(" KB)");
+        }
+        sb.append(", ");
+        if (indexedFrameCount > 0)
+        {
+            sb.append(indexedFrameCount).append(" indexed with ").append(paletteCount).append(" palette(s) (");
+            sb.append(bytesBeforeIndexing / 1024).append(" KB -> ").append(bytesAfterIndexing / 1024).append(" KB), ");
+        }
+        sb.append(posesBefore).append(" poses merged into ").append(posesAfter).append(", ");
+        sb.append(duplicateFrameCount).append(" duplicate frames shared (");
+        sb.append(duplicateFrameBytes / 1024).append(" KB saved), ");
+        sb.append(aliasedFrameCount).append(" ids naming an image already used");
+        if (blitNanosBefore >= 0)
+        {
+            sb.append(", conversion took blits from ").append(blitNanosBefore).append(" ns to ").append(blitNanosAfter);
+            sb.append(" ns per frame (").append(blitFrameCount).append(" trimmed frames timed)");
+        }
+        if (loadNanos >= 0)
+        {
+            sb.append(", loaded in ").append(loadNanos / 1000000).append(" ms");
+        }
+        return sb.toString();
+    }
+}
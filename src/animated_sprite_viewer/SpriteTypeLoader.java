@@ -0,0 +1,695 @@
+package animated_sprite_viewer;
+
+import animated_sprite_viewer.assets.AssetSource;
+import animated_sprite_viewer.assets.DecodedFrameCache;
+import animated_sprite_viewer.renderer.FrameConverter;
+import animated_sprite_viewer.renderer.IndexedSpriteFrame;
+import animated_sprite_viewer.renderer.OpaqueMask;
+import animated_sprite_viewer.renderer.SpriteFrame;
+import animated_sprite_viewer.renderer.SpriteType;
+import animated_sprite_viewer.renderer.SpriteVariant;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import javax.imageio.ImageIO;
+
+/**
+ * The SpriteTypeLoader builds a complete SpriteType, art and all,
+ * from the sprite type's xml file. The xml file is validated and
+ * parsed exactly once per load and each image file it uses is loaded
+ * exactly once, no matter how many states, poses or image ids refer
+ * to it.
+ * Images cut from a shared sprite sheet cost even less: the sheet is
+ * opened and decoded once, and each image is a getSubimage view that
+ * shares the sheet's pixels rather than a copy of them.
+ *
+ * Everything is read through an AssetSource, so the library may be a
+ * directory, a zip or jar archive, on the classpath, or on an asset
+ * server; for a server, all of a type's image files are requested at
+ * once before the first one is decoded.
+ *
+ * Given a DecodedFrameCache, image files decoded on an earlier run are
+ * read back from their cached pixels instead of being decoded again.
+ *
+ * Once decoded, every image is trimmed down to the box around its
+ * pixels that aren't fully transparent, remembering where that box sat,
+ * and then handed to a FrameConverter, which turns
+ * it into a SpriteFrame laid out the way the screen wants it, so no
+ * colour conversion is left for draw time. What each load did is
+ * summed up in a SpriteTypeLoadReport.
+ *
+ * Before that, a normalisation pass collapses image ids whose pixels are
+ * identical onto one shared frame, and merges consecutive poses that
+ * show the same frame into one longer pose.
+ *
+ * Optionally, frames can be stored as indexed colour: any frame with
+ * at most 256 colours keeps one byte per pixel and an IndexColorModel
+ * palette, shared by the whole sprite type when all its frames fit in
+ * one, and is only expanded when it's first drawn.
+ *
+ * Loading may take a while, so it's safe to call from a background
+ * thread; nothing here touches the GUI.
+ *
+ * @author  Kevin Hock
+ */
+public class SpriteTypeLoader
+{
+    // WHERE ALL THE SPRITE TYPE DIRECTORIES LIVE
+    private AssetSource assetSource;
+
+    // DECODED PIXELS FROM EARLIER RUNS, OR null TO ALWAYS DECODE
+    private DecodedFrameCache frameCache;
+
+    // PREPARES DECODED IMAGES FOR THE SCREEN
+    private FrameConverter frameConverter;
+
+    // THE MOST COLOURS AN INDEXED FRAME OR SHARED PALETTE MAY HOLD
+    public static final int MAX_PALETTE_SIZE = 256;
+
+    // WHETHER FRAMES ARE KEPT AS INDEXED COLOUR WHERE THEY CAN BE
+    private volatile boolean indexedStorage;
+
+    // WHAT THE LAST LOAD DID, AND WHETHER TO PRINT IT
+    private volatile SpriteTypeLoadReport lastReport;
+    private volatile boolean reportingLoads;
+
+    /**
+     * Constructor for this loader.
+     *
+     * @param initAssetSource The sprite library, holding one directory per sprite type.
+     */
+    public SpriteTypeLoader(AssetSource initAssetSource)
+    {
+        this(initAssetSource, null, new FrameConverter(null, FrameConverter.MODE_NONE));
+    }
+
+    /**
+     * Constructor for this loader, skipping decoding for images whose
+     * pixels are already cached and preparing frames for the screen.
+     *
+     * @param initAssetSource The sprite library, holding one directory per sprite type.
+     *
+     * @param initFrameCache Cache of decoded pixels, or null for none.
+     *
+     * @param initFrameConverter Turns decoded images into frames.
+     */
+    public SpriteTypeLoader(AssetSource initAssetSource, DecodedFrameCache initFrameCache,
+                            FrameConverter initFrameConverter)
+    {
+        assetSource = initAssetSource;
+        frameCache = initFrameCache;
+        frameConverter = initFrameConverter;
+    }
+
+    // ACCESSOR METHODS
+
+    public DecodedFrameCache getFrameCache() { return frameCache; }
+    public FrameConverter getFrameConverter() { return frameConverter; }
+    public SpriteTypeLoadReport getLastReport() { return lastReport; }
+    public boolean isReportingLoads() { return reportingLoads; }
+    public boolean isIndexedStorage() { return indexedStorage; }
+
+    // MUTATOR METHODS
+
+    /**
+     * Turns printing a report after every load on or off. Reporting also
+     * times drawing each type's frames before and after conversion, so
+     * it makes loading a little slower.
+     *
+     * @param initReportingLoads true to print a report after each load.
+     */
+    public void setReportingLoads(boolean initReportingLoads)
+    {
+        reportingLoads = initReportingLoads;
+    }
+
+    /**
+     * Turns indexed colour storage on or off for sprite types loaded
+     * from now on.
+     *
+     * @param initIndexedStorage true to store frames with at most 256
+     * colours as indexed colour.
+     */
+    public void setIndexedStorage(boolean initIndexedStorage)
+    {
+        indexedStorage = initIndexedStorage;
+    }
+
+    /**
+     * Loads the named sprite type, including all of its images and the
+     * timeline of each of its animation states.
+     *
+     * @param spriteTypeName Name of the sprite type, as listed in the
+     * sprite type list file. Its xml file is expected to be
+     * spriteTypeName/spriteTypeName.xml inside the sprite library.
+     *
+     * @return The fully loaded sprite type.
+     *
+     * @throws InvalidXMLFileFormatException Thrown if the sprite type's xml
+     * file does not validate, or refers to an image it doesn't list.
+     */
+    public SpriteType loadSpriteType(String spriteTypeName) throws InvalidXMLFileFormatException
+    {
+        long startTime = System.nanoTime();
+        String pathToSprite = spriteTypeName + "/";
+        String xmlOfSpriteType = spriteTypeName + ".xml";
+
+        // ONE PARSE GETS US EVERYTHING
+        ArrayList<String> animationStates = new ArrayList<String>();
+        ArrayList<String[][]> animationAttributes = new ArrayList<String[][]>();
+        HashMap<Integer, SpriteImageDescription> imageDescriptions = new HashMap<Integer, SpriteImageDescription>();
+        ArrayList<SpriteVariant> variants = new ArrayList<SpriteVariant>();
+        AnimatedSpriteXMLLoader.loadSpriteTypeDescription(assetSource, spriteTypeName,
+                animationStates, animationAttributes, imageDescriptions, variants);
+
+        // BUILD THE TIMELINES, NOTING EVERY IMAGE THEY USE
+        SpriteType spriteType = new SpriteType(spriteTypeName);
+        for (int i = 0; i < variants.size(); i++)
+        {
+            spriteType.addVariant(variants.get(i));
+        }
+        TreeSet<Integer> usedImageIds = new TreeSet<Integer>();
+        ArrayList<PoseTimeline> timelines = new ArrayList<PoseTimeline>();
+        for (int i = 0; i < animationStates.size(); i++)
+        {
+            PoseTimeline timeline = PoseTimeline.fromAttributes(animationAttributes.get(i));
+            timelines.add(timeline);
+            for (int pose = 0; pose < timeline.getPoseCount(); pose++)
+            {
+                usedImageIds.add(timeline.getImageId(pose));
+            }
+        }
+
+        // LET THE SOURCE START ON ALL THE FILES WE'RE ABOUT TO READ
+        LinkedHashSet<String> usedFiles = new LinkedHashSet<String>();
+        Iterator<Integer> filesIt = usedImageIds.iterator();
+        while (filesIt.hasNext())
+        {
+            SpriteImageDescription description = imageDescriptions.get(filesIt.next());
+            if (description != null)
+            {
+                usedFiles.add(pathToSprite + description.getFileName());
+            }
+        }
+        assetSource.prefetch(usedFiles);
+
+        // NOW LOAD EACH USED IMAGE ONCE, AND EACH FILE OR SHEET ONCE
+        TreeMap<Integer, BufferedImage> decodedImages = new TreeMap<Integer, BufferedImage>();
+        HashMap<String, BufferedImage> decodedFiles = new HashMap<String, BufferedImage>();
+        HashMap<String, BufferedImage> decodedRegions = new HashMap<String, BufferedImage>();
+        Iterator<Integer> idsIt = usedImageIds.iterator();
+        while (idsIt.hasNext())
+        {
+            int id = idsIt.next();
+            SpriteImageDescription description = imageDescriptions.get(id);
+            if (description == null)
+            {
+                throw new InvalidXMLFileFormatException(assetSource.getDescription() + "/" + pathToSprite + xmlOfSpriteType,
+                        "image id " + id + " is used by a pose but not listed");
+            }
+            BufferedImage sheet = decodedFiles.get(description.getFileName());
+            if (sheet == null)
+            {
+                sheet = loadImage(pathToSprite, xmlOfSpriteType, description.getFileName());
+                decodedFiles.put(description.getFileName(), sheet);
+            }
+            if (!description.isSheetRegion())
+            {
+                decodedImages.put(id, sheet);
+                continue;
+            }
+            
+            // A REGION OF A SHEET
+            Rectangle region = description.getRegion();
+            if (!new Rectangle(sheet.getWidth(), sheet.getHeight()).contains(region))
+            {
+                throw new InvalidXMLFileFormatException(assetSource.getDescription() + "/" + pathToSprite + xmlOfSpriteType,
+                        "image id " + id + " lies outside sheet " + description.getFileName());
+            }
+            // IDS NAMING THE SAME REGION GET THE SAME IMAGE, SO THEY'RE KNOWN AS ALIASES
+            String regionKey = description.getFileName() + "@" + region.x + "," + region.y + ","
+                    + region.width + "x" + region.height;
+            BufferedImage regionImage = decodedRegions.get(regionKey);
+            if (regionImage == null)
+            {
+                regionImage = sheet.getSubimage(region.x, region.y, region.width, region.height);
+                decodedRegions.put(regionKey, regionImage);
+            }
+            decodedImages.put(id, regionImage);
+        }
+
+        // SHARE IDENTICAL FRAMES AND MERGE THE POSES THAT NOW REPEAT
+        SpriteTypeLoadReport report = new SpriteTypeLoadReport(spriteTypeName);
+        HashMap<Integer, Integer> canonicalIds = findDuplicateImages(decodedImages, report);
+        for (int i = 0; i < timelines.size(); i++)
+        {
+            PoseTimeline timeline = timelines.get(i);
+            PoseTimeline normalized = timeline.normalize(canonicalIds);
+            report.addPoses(timeline.getPoseCount(), normalized.getPoseCount());
+            spriteType.addPoseTimeline(animationStates.get(i), normalized);
+        }
+
+        // AND GET THEM READY FOR THE SCREEN
+        prepareFrames(spriteType, decodedImages, canonicalIds, report);
+        report.setLoadNanos(System.nanoTime() - startTime);
+        lastReport = report;
+        if (reportingLoads)
+        {
+            System.out.println(report);
+        }
+        return spriteType;
+    }
+
+    /**
+     * Builds a colour variant of a loaded sprite type from its frames.
+     * Nothing is read from the library, so this is much quicker than a
+     * load, and indexed frames only get new palettes.
+     *
+     * @param base The loaded sprite type.
+     *
+     * @param variantName Name of one of its variants.
+     *
+     * @return The variant type, named base#variant.
+     *
+     * @throws InvalidXMLFileFormatException Thrown if the sprite type's
+     * xml file lists no such variant.
+     */
+    public SpriteType loadVariant(SpriteType base, String variantName) throws InvalidXMLFileFormatException
+    {
+        SpriteVariant variant = base.getVariant(variantName);
+        if (variant == null)
+        {
+            throw new InvalidXMLFileFormatException(assetSource.getDescription() + "/" + base.getName() + "/" + base.getName() + ".xml",
+                    "no variant named " + variantName);
+        }
+        return variant.applyTo(base, frameConverter);
+    }
+
+    /**
+     * Finds image ids whose pixels are identical to those of a lower id.
+     * Ids that name the same file or sheet region share one image, and
+     * are matched up by that alone; they never cost a copy of their own,
+     * so they aren't counted as saving anything. The rest are grouped by
+     * a hash of their size and pixels, and a hash match is only trusted
+     * after comparing every pixel.
+     *
+     * @param decodedImages The decoded images, by image id.
+     *
+     * @param report Where to record how many duplicates were found.
+     *
+     * @return Maps each duplicate id to the id of the frame it repeats.
+     */
+    private HashMap<Integer, Integer> findDuplicateImages(TreeMap<Integer, BufferedImage> decodedImages,
+                                                          SpriteTypeLoadReport report)
+    {
+        HashMap<Integer, Integer> canonicalIds = new HashMap<Integer, Integer>();
+        HashMap<Integer, ArrayList<Integer>> idsByHash = new HashMap<Integer, ArrayList<Integer>>();
+        HashMap<Integer, int[]> pixelsById = new HashMap<Integer, int[]>();
+        IdentityHashMap<BufferedImage, Integer> idsByImage = new IdentityHashMap<BufferedImage, Integer>();
+        Iterator<Map.Entry<Integer, BufferedImage>> it = decodedImages.entrySet().iterator();
+        while (it.hasNext())
+        {
+            Map.Entry<Integer, BufferedImage> entry = it.next();
+            BufferedImage img = entry.getValue();
+            Integer aliasOf = idsByImage.get(img);
+            if (aliasOf != null)
+            {
+                canonicalIds.put(entry.getKey(), aliasOf);
+                report.addAliasedFrame();
+                continue;
+            }
+            idsByImage.put(img, entry.getKey());
+            int w = img.getWidth();
+            int h = img.getHeight();
+            int[] pixels = img.getRGB(0, 0, w, h, null, 0, w);
+            int hash = (31 * (31 * w + h)) + Arrays.hashCode(pixels);
+
+            ArrayList<Integer> candidates = idsByHash.get(hash);
+            if (candidates == null)
+            {
+                candidates = new ArrayList<Integer>();
+                idsByHash.put(hash, candidates);
+            }
+            Integer duplicateOf = null;
+            for (int i = 0; (i < candidates.size()) && (duplicateOf == null); i++)
+            {
+                BufferedImage candidate = decodedImages.get(candidates.get(i));
+                if ((candidate.getWidth() == w) && (candidate.getHeight() == h)
+                        && Arrays.equals(pixelsById.get(candidates.get(i)), pixels))
+                {
+                    duplicateOf = candidates.get(i);
+                }
+            }
+            if (duplicateOf != null)
+            {
+                canonicalIds.put(entry.getKey(), duplicateOf);
+                report.addDuplicateFrame(4L * w * h);
+            }
+            else
+            {
+                candidates.add(entry.getKey());
+                pixelsById.put(entry.getKey(), pixels);
+            }
+        }
+        return canonicalIds;
+    }
+
+    /**
+     * Turns each distinct decoded image into a trimmed frame of the
+     * sprite type, noting in the report how much trimming saved, how
+     * many frames had to be converted and, when reporting, how long
+     * drawing the converted ones takes. Each is timed trimmed but as
+     * decoded, then as converted, so the difference is conversion's alone.
+     * Duplicate ids get the frame of the image they repeat.
+     *
+     * @param spriteType The sprite type to add the frames to.
+     *
+     * @param decodedImages The decoded images, by image id.
+     *
+     * @param canonicalIds Maps each duplicate id to the id it repeats.
+     *
+     * @param report Where to record what was done.
+     */
+    private void prepareFrames(SpriteType spriteType, TreeMap<Integer, BufferedImage> decodedImages,
+                               HashMap<Integer, Integer> canonicalIds, SpriteTypeLoadReport report)
+    {
+        ArrayList<SpriteFrame> unconverted = new ArrayList<SpriteFrame>();
+        ArrayList<SpriteFrame> converted = new ArrayList<SpriteFrame>();
+        LinkedHashMap<Integer, SpriteFrame> trimmedFrames = new LinkedHashMap<Integer, SpriteFrame>();
+        Iterator<Map.Entry<Integer, BufferedImage>> it = decodedImages.entrySet().iterator();
+        while (it.hasNext())
+        {
+            Map.Entry<Integer, BufferedImage> entry = it.next();
+            BufferedImage img = entry.getValue();
+            if (canonicalIds.containsKey(entry.getKey()))
+            {
+                continue;
+            }
+            SpriteFrame trimmed = trimToOpaqueBounds(img);
+            report.addTrim((long)img.getWidth() * img.getHeight(), (long)trimmed.getWidth() * trimmed.getHeight());
+            trimmedFrames.put(entry.getKey(), trimmed);
+        }
+
+        // INDEXED FRAMES STAY COMPACT, THE REST ARE CONVERTED FOR THE SCREEN
+        HashMap<Integer, SpriteFrame> indexedFrames = indexedStorage
+                ? indexFrames(trimmedFrames, report)
+                : new HashMap<Integer, SpriteFrame>();
+        Iterator<Map.Entry<Integer, SpriteFrame>> trimmedIt = trimmedFrames.entrySet().iterator();
+        while (trimmedIt.hasNext())
+        {
+            Map.Entry<Integer, SpriteFrame> entry = trimmedIt.next();
+            SpriteFrame frame = indexedFrames.get(entry.getKey());
+            if (frame == null)
+            {
+                SpriteFrame trimmed = entry.getValue();
+                if (frameConverter.needsConversion((BufferedImage)trimmed.getImage()))
+                {
+                    report.addConvertedFrame();
+                }
+                frame = frameConverter.convert(trimmed);
+                unconverted.add(trimmed);
+                converted.add(frame);
+            }
+            // HIT TESTS READ THIS RATHER THAN THE PIXELS
+            frame.setOpaqueMask(OpaqueMask.of((BufferedImage)entry.getValue().getImage()));
+            spriteType.addFrame(entry.getKey(), frame);
+            report.addFrame(frame.getByteSize());
+        }
+
+        // LOWER IDS COME FIRST, SO EVERY SHARED FRAME EXISTS BY NOW
+        Iterator<Map.Entry<Integer, Integer>> dupIt = canonicalIds.entrySet().iterator();
+        while (dupIt.hasNext())
+        {
+            Map.Entry<Integer, Integer> duplicate = dupIt.next();
+            spriteType.addFrame(duplicate.getKey(), spriteType.getFrame(duplicate.getValue()));
+        }
+        if (reportingLoads)
+        {
+            SpriteFrame[] before = unconverted.toArray(new SpriteFrame[unconverted.size()]);
+            SpriteFrame[] after = converted.toArray(new SpriteFrame[converted.size()]);
+            report.setBlitNanos(frameConverter.timeBlits(before), frameConverter.timeBlits(after), after.length);
+        }
+    }
+
+    /**
+     * Stores every frame with at most MAX_PALETTE_SIZE colours as indexed
+     * colour. If all of those frames' colours together fit in one
+     * palette, they all share it; otherwise each gets its own.
+     *
+     * @param trimmedFrames The frames, by image id, holding ARGB images.
+     *
+     * @param report Where to record the frames indexed and bytes saved.
+     *
+     * @return The indexed frames, by image id. Frames with too many
+     * colours are left out.
+     */
+    private HashMap<Integer, SpriteFrame> indexFrames(LinkedHashMap<Integer, SpriteFrame> trimmedFrames,
+                                                      SpriteTypeLoadReport report)
+    {
+        // WHICH FRAMES HAVE FEW ENOUGH COLOURS, AND WHAT ARE THEY ALL?
+        LinkedHashMap<Integer, int[]> pixelsById = new LinkedHashMap<Integer, int[]>();
+        LinkedHashMap<Integer, LinkedHashMap<Integer, Integer>> paletteById = new LinkedHashMap<Integer, LinkedHashMap<Integer, Integer>>();
+        LinkedHashMap<Integer, Integer> sharedPalette = new LinkedHashMap<Integer, Integer>();
+        Iterator<Map.Entry<Integer, SpriteFrame>> it = trimmedFrames.entrySet().iterator();
+        while (it.hasNext())
+        {
+            Map.Entry<Integer, SpriteFrame> entry = it.next();
+            BufferedImage img = (BufferedImage)entry.getValue().getImage();
+            int w = img.getWidth();
+            int h = img.getHeight();
+            int[] pixels = img.getRGB(0, 0, w, h, null, 0, w);
+            LinkedHashMap<Integer, Integer> palette = paletteOf(pixels);
+            if (palette == null)
+            {
+                continue;
+            }
+            pixelsById.put(entry.getKey(), pixels);
+            paletteById.put(entry.getKey(), palette);
+            Iterator<Integer> colourIt = palette.keySet().iterator();
+            while ((sharedPalette != null) && colourIt.hasNext())
+            {
+                Integer colour = colourIt.next();
+                if (!sharedPalette.containsKey(colour))
+                {
+                    if (sharedPalette.size() == MAX_PALETTE_SIZE)
+                    {
+                        sharedPalette = null;
+                        break;
+                    }
+                    sharedPalette.put(colour, sharedPalette.size());
+                }
+            }
+        }
+
+        // NOW BUILD THE INDEXED FRAMES
+        HashMap<Integer, SpriteFrame> indexedFrames = new HashMap<Integer, SpriteFrame>();
+        IndexColorModel sharedModel = null;
+        if ((sharedPalette != null) && !sharedPalette.isEmpty())
+        {
+            sharedModel = toColorModel(sharedPalette);
+            report.addPalette(sharedPalette.size());
+        }
+        Iterator<Map.Entry<Integer, int[]>> pixelsIt = pixelsById.entrySet().iterator();
+        while (pixelsIt.hasNext())
+        {
+            Map.Entry<Integer, int[]> entry = pixelsIt.next();
+            SpriteFrame trimmed = trimmedFrames.get(entry.getKey());
+            LinkedHashMap<Integer, Integer> palette = (sharedModel != null) ? sharedPalette : paletteById.get(entry.getKey());
+            IndexColorModel model = sharedModel;
+            if (model == null)
+            {
+                model = toColorModel(palette);
+                report.addPalette(palette.size());
+            }
+            int[] pixels = entry.getValue();
+            BufferedImage indexed = new BufferedImage(trimmed.getWidth(), trimmed.getHeight(),
+                                                      BufferedImage.TYPE_BYTE_INDEXED, model);
+            byte[] indices = ((DataBufferByte)indexed.getRaster().getDataBuffer()).getData();
+            for (int p = 0; p < pixels.length; p++)
+            {
+                indices[p] = (byte)palette.get(pixels[p]).intValue();
+            }
+            SpriteFrame frame = new IndexedSpriteFrame(indexed, trimmed, frameConverter);
+            indexedFrames.put(entry.getKey(), frame);
+            report.addIndexedFrame(4L * pixels.length, frame.getByteSize());
+        }
+        return indexedFrames;
+    }
+
+    /**
+     * Lists the distinct colours of a frame, giving each an index.
+     *
+     * @param pixels The frame's ARGB pixels.
+     *
+     * @return Each colour and its index, in order of first appearance,
+     * or null if there are more than MAX_PALETTE_SIZE of them.
+     */
+    private static LinkedHashMap<Integer, Integer> paletteOf(int[] pixels)
+    {
+        LinkedHashMap<Integer, Integer> palette = new LinkedHashMap<Integer, Integer>();
+        for (int i = 0; i < pixels.length; i++)
+        {
+            if (!palette.containsKey(pixels[i]))
+            {
+                if (palette.size() == MAX_PALETTE_SIZE)
+                {
+                    return null;
+                }
+                palette.put(pixels[i], palette.size());
+            }
+        }
+        return palette;
+    }
+
+    /**
+     * Turns a palette into a colour model. Each entry keeps its full
+     * ARGB value, so indexed pixels read back exactly as they went in.
+     *
+     * @param palette Each colour and its index.
+     *
+     * @return The 8 bit colour model for the palette.
+     */
+    private static IndexColorModel toColorModel(LinkedHashMap<Integer, Integer> palette)
+    {
+        int[] colours = new int[palette.size()];
+        Iterator<Map.Entry<Integer, Integer>> it = palette.entrySet().iterator();
+        while (it.hasNext())
+        {
+            Map.Entry<Integer, Integer> entry = it.next();
+            colours[entry.getValue()] = entry.getKey();
+        }
+        return new IndexColorModel(8, colours.length, colours, 0, true, -1, DataBuffer.TYPE_BYTE);
+    }
+
+    /**
+     * Trims an image down to the smallest box holding all its pixels that
+     * aren't fully transparent. The box is copied into an image of its
+     * own, so the untrimmed pixels can be let go of.
+     *
+     * @param img The decoded image.
+     *
+     * @return A frame holding the trimmed image and where it sat.
+     */
+    private static SpriteFrame trimToOpaqueBounds(BufferedImage img)
+    {
+        int w = img.getWidth();
+        int h = img.getHeight();
+        ColorModel cm = img.getColorModel();
+        if (cm.getTransparency() == Transparency.OPAQUE)
+        {
+            return new SpriteFrame(img);
+        }
+
+        // FIND THE BOX AROUND EVERYTHING VISIBLE
+        int minX = w;
+        int minY = h;
+        int maxX = -1;
+        int maxY = -1;
+        int[] row = new int[w];
+        for (int y = 0; y < h; y++)
+        {
+            img.getRGB(0, y, w, 1, row, 0, w);
+            for (int x = 0; x < w; x++)
+            {
+                if ((row[x] >>> 24) != 0)
+                {
+                    minX = Math.min(minX, x);
+                    maxX = Math.max(maxX, x);
+                    minY = Math.min(minY, y);
+                    maxY = y;
+                }
+            }
+        }
+
+        // NOTHING VISIBLE AT ALL? ONE TRANSPARENT PIXEL DRAWS THE SAME
+        if (maxX < 0)
+        {
+            minX = 0;
+            minY = 0;
+            maxX = 0;
+            maxY = 0;
+        }
+        if ((minX == 0) && (minY == 0) && (maxX == w - 1) && (maxY == h - 1))
+        {
+            return new SpriteFrame(img);
+        }
+        int trimmedWidth = maxX - minX + 1;
+        int trimmedHeight = maxY - minY + 1;
+        WritableRaster raster = cm.createCompatibleWritableRaster(trimmedWidth, trimmedHeight);
+        img.getSubimage(minX, minY, trimmedWidth, trimmedHeight).copyData(raster);
+        BufferedImage trimmed = new BufferedImage(cm, raster, cm.isAlphaPremultiplied(), null);
+        return new SpriteFrame(trimmed, minX, minY, w, h);
+    }
+
+    /**
+     * Reads and decodes one image file, or a whole sprite sheet, of a
+     * sprite type. The image is fully decoded when this returns.
+     *
+     * @param path Path of the sprite type's directory within the library.
+     *
+     * @param xmlOfSpriteType The xml file naming the image, for error reporting.
+     *
+     * @param fileName File name of the image.
+     *
+     * @return The decoded image.
+     *
+     * @throws InvalidXMLFileFormatException Thrown if the image can't be read.
+     */
+    private BufferedImage loadImage(String path, String xmlOfSpriteType, String fileName)
+            throws InvalidXMLFileFormatException
+    {
+        try
+        {
+            Path imageFile = assetSource.resolve(path + fileName);
+            if (frameCache != null)
+            {
+                BufferedImage img = frameCache.read(imageFile);
+                if (img != null)
+                {
+                    return img;
+                }
+            }
+            else
+            {
+                InputStream in = Files.newInputStream(imageFile);
+                try
+                {
+                    BufferedImage img = ImageIO.read(in);
+                    if (img != null)
+                    {
+                        return img;
+                    }
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+        }
+        catch(IOException ioe)
+        {
+            ioe.printStackTrace();
+        }
+        throw new InvalidXMLFileFormatException(assetSource.getDescription() + "/" + path + xmlOfSpriteType,
+                "image " + fileName + " could not be read");
+    }
+}
@@ -0,0 +1,80 @@
+package animated_sprite_viewer;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * The StartupLog notes how long the viewer takes to get going, counted
+ * from when the JVM started: how long until the window first painted,
+ * which is when the user first sees something, and how long until
+ * everything loaded in the background (the sprite type list and the
+ * button icons) had arrived, which is when it's fully usable. When
+ * asked to, it prints each milestone once, as it's reached.
+ *
+ * @author  Kevin Hock
+ */
+public class StartupLog
+{
+    // WHEN THE JVM STARTED, IN MILLISECONDS SINCE THE EPOCH
+    private long jvmStartMillis;
+
+    // MILLISECONDS FROM JVM START TO EACH MILESTONE, OR -1 IF NOT YET
+    private long firstPaintMillis;
+    private long interactiveMillis;
+
+    // WHETHER TO PRINT MILESTONES AS THEY'RE REACHED
+    private boolean reporting;
+
+    /**
+     * Constructs a log with no milestones reached yet.
+     */
+    public StartupLog()
+    {
+        jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+        firstPaintMillis = -1;
+        interactiveMillis = -1;
+    }
+
+    // ACCESSOR METHODS
+
+    public synchronized long getFirstPaintMillis() { return firstPaintMillis; }
+    public synchronized long getInteractiveMillis() { return interactiveMillis; }
+    public synchronized boolean isReporting() { return reporting; }
+
+    // MUTATOR METHODS
+
+    public synchronized void setReporting(boolean initReporting) { reporting = initReporting; }
+
+    /**
+     * Notes that the window painted, if it's the first time.
+     */
+    public synchronized void markFirstPaint()
+    {
+        if (firstPaintMillis < 0)
+        {
+            firstPaintMillis = System.currentTimeMillis() - jvmStartMillis;
+            if (reporting)
+            {
+                System.out.println("Startup: first paint after " + firstPaintMillis + " ms");
+            }
+        }
+    }
+
+    /**
+     * Notes that everything loaded in the background has arrived.
+     *
+     * @param spriteTypeCount How many sprite types were listed.
+     */
+    public synchronized void markInteractive(int spriteTypeCount)
+    {
+        if (interactiveMillis < 0)
+        {
+            interactiveMillis = System.currentTimeMillis() - jvmStartMillis;
+            if (reporting)
+            {
+                System.out.println("Startup: interactive after " + interactiveMillis + " ms, "
+                        + spriteTypeCount + " sprite types, "
+                        + ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount() + " classes loaded");
+            }
+        }
+    }
+}
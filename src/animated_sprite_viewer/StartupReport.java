@@ -0,0 +1,306 @@
+package animated_sprite_viewer;
+
+import animated_sprite_viewer.assets.AssetSource;
+import animated_sprite_viewer.assets.AssetSources;
+import animated_sprite_viewer.renderer.SceneRenderer;
+import animated_sprite_viewer.renderer.Sprite;
+import animated_sprite_viewer.renderer.SpriteType;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.swing.JList;
+
+/**
+ * The StartupReport drives the viewer's startup work for the AppCDS
+ * archive the build can make, and reports what the archive buys.
+ *
+ * Most of a cold start goes on loading and linking classes: Swing,
+ * JAXP schema validation and AWT imaging. An AppCDS archive holds those
+ * classes already parsed and verified, to be mapped straight into
+ * memory. The cds-archive target in build.xml runs this class once with
+ * "train" to record every class startup touches, dumps the archive
+ * next to the jar, and the launchers in dist use it when it's there.
+ *
+ * Run with "report" (the startup-report target) to launch the same
+ * startup work in fresh JVMs with and without the archive, and compare
+ * wall time and how many classes were loaded, and from where.
+ *
+ * @author  Kevin Hock
+ */
+public class StartupReport
+{
+    // WHAT TO DO, GIVEN AS THE FIRST ARGUMENT
+    public static final String TRAIN_COMMAND = "train";
+    public static final String MEASURE_COMMAND = "measure";
+    public static final String REPORT_COMMAND = "report";
+
+    // HOW MANY TIMES EACH CONFIGURATION IS LAUNCHED; WE REPORT THE MEDIAN
+    public static final int REPORT_RUNS = 5;
+
+    // HOW A CLASS LOADED FROM A CDS ARCHIVE SHOWS UP IN -Xlog:class+load
+    public static final String SHARED_CLASS_SOURCE = "shared objects file";
+
+    // WHAT A MEASURING RUN PRINTS, FOR THE REPORT TO PICK UP
+    public static final String MEASUREMENT_PREFIX = "startup-measurement ";
+
+    /**
+     * Runs one of the commands.
+     *
+     * @param args The command, then the sprite library to start up
+     * against, then for "report" the archive to compare.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        String command = (args.length > 0) ? args[0] : REPORT_COMMAND;
+        String library = (args.length > 1) ? args[1] : AnimatedSpriteViewer.SPRITES_DATA_PATH;
+        if (TRAIN_COMMAND.equals(command))
+        {
+            train(library);
+        }
+        else if (MEASURE_COMMAND.equals(command))
+        {
+            long start = System.nanoTime();
+            int spriteTypes = runStartupWork(library);
+            System.out.println(MEASUREMENT_PREFIX + ((System.nanoTime() - start) / 1000000) + " "
+                    + ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount() + " " + spriteTypes);
+        }
+        else if (REPORT_COMMAND.equals(command))
+        {
+            String archive = (args.length > 2) ? args[2] : "dist/AnimatedSpriteViewer.jsa";
+            report(library, archive);
+        }
+        else
+        {
+            System.err.println("Usage: StartupReport train|measure|report [library] [archive]");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * The training launch. Does everything startup does, plus loading
+     * every sprite type, so all of their classes get archived. With a
+     * screen it then starts the viewer itself, which exits as soon as
+     * it's interactive, so the window's classes are archived too.
+     *
+     * @param library The sprite library to train against.
+     */
+    private static void train(String library) throws Exception
+    {
+        runStartupWork(library);
+        if (GraphicsEnvironment.isHeadless())
+        {
+            System.exit(0);
+        }
+        System.setProperty(AnimatedSpriteViewer.EXIT_WHEN_INTERACTIVE_PROPERTY, "true");
+        AnimatedSpriteViewer.main(new String[] { library });
+    }
+
+    /**
+     * The startup work, minus the window, which can't be opened without
+     * a screen: read the sprite type list, load each sprite type and its
+     * variants, and paint the scene, filmstrip and list off screen.
+     *
+     * @param library The sprite library to start up against.
+     *
+     * @return How many sprite types were loaded.
+     */
+    private static int runStartupWork(String library) throws Exception
+    {
+        AssetSource source = AssetSources.open(library);
+        try
+        {
+            final ArrayList<String> names = new ArrayList<String>();
+            AnimatedSpriteXMLLoader.streamSpriteTypeNames(source, AnimatedSpriteViewer.SPRITE_TYPE_LIST_FILE,
+                    new AnimatedSpriteXMLLoader.SpriteTypeNameListener()
+            {
+                @Override
+                public void spriteTypeNamesFound(List<String> batch)
+                {
+                    names.addAll(batch);
+                }
+            });
+            SpriteTypeListModel listModel = new SpriteTypeListModel();
+            listModel.addNames(names);
+
+            SpriteTypeLoader loader = new SpriteTypeLoader(source);
+            ArrayList<Sprite> sprites = new ArrayList<Sprite>();
+            SceneRenderer scene = new SceneRenderer(sprites);
+            scene.setSize(400, 400);
+            PoseFilmstrip filmstrip = new PoseFilmstrip(new ThumbnailCache(ThumbnailCache.DEFAULT_THUMBNAIL_SIZE,
+                                                                           ThumbnailCache.DEFAULT_MAX_BYTES));
+            filmstrip.setSize(400, 100);
+            for (int i = 0; i < names.size(); i++)
+            {
+                SpriteType spriteType = loader.loadSpriteType(names.get(i));
+                for (int v = 0; v < spriteType.getVariantNames().size(); v++)
+                {
+                    loader.loadVariant(spriteType, spriteType.getVariantNames().get(v));
+                }
+                if (!spriteType.getStateNames().isEmpty())
+                {
+                    String state = spriteType.getStateNames().get(0);
+                    scene.addSprite(new Sprite(spriteType, state));
+                    filmstrip.showTimeline(spriteType, state);
+                }
+            }
+
+            // PAINT IT ALL ONCE, OFF SCREEN
+            JList<String> list = new JList<String>(listModel);
+            list.setSize(200, 200);
+            BufferedImage canvas = new BufferedImage(400, 400, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2 = canvas.createGraphics();
+            try
+            {
+                scene.paint(g2);
+                filmstrip.paint(g2);
+                list.paint(g2);
+            }
+            finally
+            {
+                g2.dispose();
+            }
+            return names.size();
+        }
+        finally
+        {
+            source.close();
+        }
+    }
+
+    /**
+     * Launches the startup work in fresh JVMs, with the JDK's own class
+     * archive only and then with ours as well, and prints the medians.
+     *
+     * @param library The sprite library to start up against.
+     *
+     * @param archive Our AppCDS archive.
+     */
+    private static void report(String library, String archive) throws Exception
+    {
+        if (!new File(archive).isFile())
+        {
+            System.err.println("No archive at " + archive + "; run the cds-archive target first");
+            System.exit(1);
+        }
+        System.out.println("Startup with " + library + ", median of " + REPORT_RUNS + " launches");
+        System.out.println(String.format("%-22s %10s %12s %10s %14s",
+                "", "wall ms", "startup ms", "classes", "from archive"));
+        printRow("JDK archive only", measure(library, null));
+        printRow("JDK + app archive", measure(library, archive));
+    }
+
+    /**
+     * Launches the startup work REPORT_RUNS times.
+     *
+     * @param library The sprite library to start up against.
+     *
+     * @param archive Our archive, or null to go without.
+     *
+     * @return Medians of wall time, startup work time, classes loaded
+     * and classes loaded from an archive.
+     */
+    private static long[] measure(String library, String archive) throws Exception
+    {
+        long[][] runs = new long[4][REPORT_RUNS];
+        for (int run = 0; run < REPORT_RUNS; run++)
+        {
+            Path classLog = Files.createTempFile("class-load", ".log");
+            try
+            {
+                ArrayList<String> command = new ArrayList<String>();
+                command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+                command.add("-Djava.awt.headless=true");
+                command.add("-Xlog:class+load=info:file=" + classLog);
+                if (archive != null)
+                {
+                    command.add("-XX:SharedArchiveFile=" + archive);
+                }
+                command.add("-cp");
+                command.add(System.getProperty("java.class.path"));
+                command.add(StartupReport.class.getName());
+                command.add(MEASURE_COMMAND);
+                command.add(library);
+
+                long start = System.nanoTime();
+                Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+                String measurement = null;
+                BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream()));
+                try
+                {
+                    String line;
+                    while ((line = out.readLine()) != null)
+                    {
+                        if (line.startsWith(MEASUREMENT_PREFIX))
+                        {
+                            measurement = line.substring(MEASUREMENT_PREFIX.length());
+                        }
+                    }
+                }
+                finally
+                {
+                    out.close();
+                }
+                if ((process.waitFor() != 0) || (measurement == null))
+                {
+                    throw new IOException("Measuring launch failed: " + command);
+                }
+                runs[0][run] = (System.nanoTime() - start) / 1000000;
+                String[] fields = measurement.split(" ");
+                runs[1][run] = Long.parseLong(fields[0]);
+                runs[2][run] = Long.parseLong(fields[1]);
+                runs[3][run] = countSharedClasses(classLog);
+            }
+            finally
+            {
+                Files.deleteIfExists(classLog);
+            }
+        }
+        long[] medians = new long[runs.length];
+        for (int i = 0; i < runs.length; i++)
+        {
+            Arrays.sort(runs[i]);
+            medians[i] = runs[i][REPORT_RUNS / 2];
+        }
+        return medians;
+    }
+
+    /**
+     * Counts the classes a -Xlog:class+load log says came from an archive.
+     *
+     * @param classLog The log.
+     *
+     * @return How many classes were mapped in from an archive.
+     */
+    private static long countSharedClasses(Path classLog) throws IOException
+    {
+        long shared = 0;
+        List<String> lines = Files.readAllLines(classLog);
+        for (int i = 0; i < lines.size(); i++)
+        {
+            if (lines.get(i).contains(SHARED_CLASS_SOURCE))
+            {
+                shared++;
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Prints one row of the report.
+     */
+    private static void printRow(String label, long[] medians)
+    {
+        System.out.println(String.format("%-22s %10d %12d %10d %14d",
+                label, medians[0], medians[1], medians[2], medians[3]));
+    }
+}
@@ -0,0 +1,151 @@
+package animated_sprite_viewer;
+
+import animated_sprite_viewer.renderer.SpriteFrame;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+
+/**
+ * The ThumbnailCache makes small previews of sprite frames for the
+ * filmstrip. Thumbnails are only made when a cell showing them is
+ * painted, on a background thread, so a state with thousands of poses
+ * costs nothing until the user scrolls to them. They're kept in a
+ * MemoryBudgetCache of their own, so the least recently shown go first
+ * once the budget is spent, and a frame shared by several poses only
+ * gets one thumbnail.
+ *
+ * Each thumbnail fits the frame's untrimmed art into a square, so
+ * poses line up the way they do when animated.
+ *
+ * @author  Kevin Hock
+ */
+public class ThumbnailCache
+{
+    // HOW BIG THUMBNAILS ARE, AND HOW MUCH MEMORY THEY MAY TAKE
+    public static final int DEFAULT_THUMBNAIL_SIZE = 64;
+    public static final long DEFAULT_MAX_BYTES = 8L * 1024 * 1024;
+
+    // THE SIDE OF THE SQUARE EACH THUMBNAIL FITS IN
+    private int thumbnailSize;
+
+    // FINISHED THUMBNAILS
+    private MemoryBudgetCache<SpriteFrame, BufferedImage> thumbnails;
+
+    // FRAMES QUEUED FOR A THUMBNAIL, SO EACH IS ONLY QUEUED ONCE
+    private Set<SpriteFrame> pending;
+
+    // MAKES THE THUMBNAILS, ONE AT A TIME
+    private ThreadPoolExecutor thumbnailExecutor;
+
+    /**
+     * Constructor for a cache of thumbnails of the given size.
+     *
+     * @param initThumbnailSize The side of the square thumbnails fit in.
+     *
+     * @param maxBytes How much memory the thumbnails may take.
+     */
+    public ThumbnailCache(int initThumbnailSize, long maxBytes)
+    {
+        thumbnailSize = initThumbnailSize;
+        thumbnails = new MemoryBudgetCache<SpriteFrame, BufferedImage>(maxBytes);
+        pending = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<SpriteFrame, Boolean>()));
+        thumbnailExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "ThumbnailMaker");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            }
+        });
+    }
+
+    // ACCESSOR METHODS
+
+    public int getThumbnailSize() { return thumbnailSize; }
+
+    /**
+     * Gets a frame's thumbnail if it's ready, and otherwise queues it
+     * to be made.
+     *
+     * @param frame The frame to preview.
+     *
+     * @param whenReady Run on the event dispatch thread once the
+     * thumbnail has been made, to repaint whatever asked for it.
+     *
+     * @return The thumbnail, or null if it isn't ready yet.
+     */
+    public BufferedImage getThumbnail(final SpriteFrame frame, final Runnable whenReady)
+    {
+        BufferedImage thumbnail = thumbnails.get(frame);
+        if ((thumbnail != null) || !pending.add(frame))
+        {
+            return thumbnail;
+        }
+        thumbnailExecutor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                BufferedImage made = makeThumbnail(frame);
+                thumbnails.put(frame, made, 4L * made.getWidth() * made.getHeight());
+                pending.remove(frame);
+                SwingUtilities.invokeLater(whenReady);
+            }
+        });
+        return null;
+    }
+
+    // MUTATOR METHODS
+
+    /**
+     * Forgets the thumbnails still waiting to be made, as when the
+     * filmstrip moves on to another state and they'd no longer be seen.
+     * Thumbnails already made stay cached.
+     */
+    public void cancelPending()
+    {
+        thumbnailExecutor.getQueue().clear();
+        pending.clear();
+    }
+
+    /**
+     * Draws a frame's untrimmed art scaled down (or up) to fit the
+     * thumbnail square, centered, keeping its proportions.
+     *
+     * @param frame The frame to preview.
+     *
+     * @return The thumbnail.
+     */
+    private BufferedImage makeThumbnail(SpriteFrame frame)
+    {
+        BufferedImage thumbnail = new BufferedImage(thumbnailSize, thumbnailSize, BufferedImage.TYPE_INT_ARGB);
+        int sourceWidth = Math.max(1, frame.getSourceWidth());
+        int sourceHeight = Math.max(1, frame.getSourceHeight());
+        double scale = Math.min((double)thumbnailSize / sourceWidth, (double)thumbnailSize / sourceHeight);
+        Graphics2D g2 = thumbnail.createGraphics();
+        try
+        {
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2.translate((thumbnailSize - sourceWidth * scale) / 2, (thumbnailSize - sourceHeight * scale) / 2);
+            g2.scale(scale, scale);
+            g2.drawImage(frame.getImage(), frame.getOffsetX(), frame.getOffsetY(), null);
+        }
+        finally
+        {
+            g2.dispose();
+        }
+        return thumbnail;
+    }
+}
@@ -0,0 +1,49 @@
+package animated_sprite_viewer.assets;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+
+/**
+ * An AssetSource is where a sprite library comes from. The library is
+ * laid out the same way wherever it lives: sprite_type_list.xml and the
+ * schemas at its root, and one directory per sprite type holding that
+ * type's xml file and art. Assets are named by their path relative to
+ * that root, using '/' as the separator, and resolved to Paths that can
+ * be read with java.nio.file.Files, whatever file system they're on.
+ *
+ * @author  Kevin Hock
+ */
+public interface AssetSource extends Closeable
+{
+    /**
+     * Finds an asset in the library.
+     *
+     * @param relativePath The asset's path from the library root,
+     * for example "box_manE/box_manE.xml".
+     *
+     * @return A readable path to the asset.
+     *
+     * @throws IOException Thrown if the asset can't be made available.
+     */
+    public Path resolve(String relativePath) throws IOException;
+
+    /**
+     * Lets the source know these assets will be resolved soon, so a
+     * source that has to fetch them can start on all of them at once.
+     * Sources that can read assets directly have nothing to do.
+     *
+     * @param relativePaths The assets' paths from the library root.
+     */
+    public default void prefetch(Collection<String> relativePaths)
+    {
+    }
+
+    /**
+     * Describes where this library lives, for messages to the user.
+     *
+     * @return A short description, such as the directory or archive name.
+     */
+    public String getDescription();
+}
@@ -0,0 +1,97 @@
+package animated_sprite_viewer.assets;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * AssetSources turns a library location, as given on the command line,
+ * into the right kind of AssetSource:
+ *
+ * http://host/some/dir    a library on an asset server, cached locally
+ * classpath:/some/dir     a directory on the classpath, even inside a jar
+ * library.zip, library.jar a zip or jar archive, library root at its top
+ * library.zip!/some/dir   a directory inside a zip or jar archive
+ * ./data/sprite_types/    anything else is a plain directory
+ *
+ * @author  Kevin Hock
+ */
+public class AssetSources
+{
+    public static final String CLASSPATH_PREFIX = "classpath:";
+    public static final String ARCHIVE_SEPARATOR = "!";
+
+    // WHERE LIBRARIES FROM ASSET SERVERS ARE CACHED, ONE DIRECTORY PER SERVER
+    public static final String HTTP_CACHE_PROPERTY = "asv.http.cache";
+    public static final String DEFAULT_HTTP_CACHE = ".animated_sprite_viewer/http_cache";
+
+    /**
+     * Opens the library at the given location.
+     *
+     * @param location Where the library lives, in one of the forms above.
+     *
+     * @return The asset source for it.
+     *
+     * @throws IOException Thrown if the library can't be opened.
+     */
+    public static AssetSource open(String location) throws IOException
+    {
+        String scheme = location.toLowerCase();
+        if (scheme.startsWith("http://") || scheme.startsWith("https://"))
+        {
+            return openServer(URI.create(location));
+        }
+        if (location.startsWith(CLASSPATH_PREFIX))
+        {
+            return PathAssetSource.fromClasspath(location.substring(CLASSPATH_PREFIX.length()));
+        }
+
+        // AN ARCHIVE, POSSIBLY WITH A DIRECTORY INSIDE IT?
+        String archive = location;
+        String rootInArchive = "/";
+        int separator = location.indexOf(ARCHIVE_SEPARATOR);
+        if (separator >= 0)
+        {
+            archive = location.substring(0, separator);
+            rootInArchive = location.substring(separator + ARCHIVE_SEPARATOR.length());
+        }
+        String lowerCase = archive.toLowerCase();
+        if (lowerCase.endsWith(".zip") || lowerCase.endsWith(".jar"))
+        {
+            return PathAssetSource.fromArchive(Paths.get(archive), rootInArchive);
+        }
+
+        Path directory = Paths.get(location);
+        if (!Files.isDirectory(directory))
+        {
+            throw new IOException(location + " is not a sprite library directory or archive");
+        }
+        return PathAssetSource.fromDirectory(directory);
+    }
+
+    /**
+     * Opens a library on an asset server, caching it under the directory
+     * named by the asv.http.cache system property, or under the user's
+     * home directory if that isn't set.
+     *
+     * @param baseUri URL of the library root on the server.
+     *
+     * @return The asset source for it.
+     *
+     * @throws IOException Thrown if the cache directory can't be created.
+     */
+    private static AssetSource openServer(URI baseUri) throws IOException
+    {
+        String cacheRoot = System.getProperty(HTTP_CACHE_PROPERTY);
+        Path cacheDirectory = (cacheRoot != null)
+                ? Paths.get(cacheRoot)
+                : Paths.get(System.getProperty("user.home"), DEFAULT_HTTP_CACHE);
+
+        // KEEP EACH SERVER'S FILES APART
+        String server = baseUri.getHost() + "_" + ((baseUri.getPort() < 0) ? baseUri.getScheme() : "" + baseUri.getPort());
+        return new HttpAssetSource(baseUri, cacheDirectory.resolve(server).resolve(baseUri.getPath().replaceAll("^/+", "")),
+                HttpAssetSource.DEFAULT_MAX_CONCURRENT_FETCHES);
+    }
+}
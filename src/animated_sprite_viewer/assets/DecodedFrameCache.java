@@ -0,0 +1,381 @@
+package animated_sprite_viewer.assets;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+
+/**
+ * The DecodedFrameCache keeps the decoded pixels of every image file
+ * we've read on disk, so the next run can skip decoding altogether.
+ * Entries are keyed by the SHA-256 of the image file's bytes, so an
+ * edited image simply gets a new entry, and the same image in two
+ * libraries (or two runs against an asset server) shares one.
+ *
+ * Each entry is a small header followed by the raw ARGB ints, in the
+ * platform's byte order, so reading it back is a memory map and one
+ * bulk copy straight into a BufferedImage's raster.
+ *
+ * The cache is kept under a size limit; when it goes over, the entries
+ * least recently used (by last modified time, which a hit refreshes)
+ * are deleted first. The directory is only scanned when the cache is
+ * opened and when it goes over; in between, a running total of what's
+ * been written says whether it has.
+ *
+ * @author  Kevin Hock
+ */
+public class DecodedFrameCache
+{
+    // WHAT EVERY ENTRY STARTS WITH: MAGIC, VERSION, WIDTH, HEIGHT
+    public static final int MAGIC = 0x41535646;
+    public static final int VERSION = 1;
+    public static final int HEADER_INTS = 4;
+    public static final String ENTRY_SUFFIX = ".argb";
+
+    // ENTRIES ARE WRITTEN TO THESE FIRST; ONES THIS OLD WERE ABANDONED
+    public static final String TEMP_SUFFIX = ".part";
+    public static final long STALE_TEMP_MILLIS = 60L * 1000;
+
+    // EVICTION CLEARS THIS MUCH BELOW THE LIMIT, SO IT ISN'T NEEDED AGAIN AT ONCE
+    public static final int EVICTION_HEADROOM_PERCENT = 10;
+
+    // WHERE THE ENTRIES LIVE AND HOW MUCH ROOM THEY MAY TAKE
+    private Path directory;
+    private long maxBytes;
+
+    // HOW MUCH ROOM THE ENTRIES TAKE, AS OF THE LAST SCAN PLUS WHAT WE'VE WRITTEN SINCE
+    private AtomicLong totalBytes;
+
+    // HOW WELL WE'RE DOING
+    private AtomicLong hits;
+    private AtomicLong misses;
+    private AtomicLong evictions;
+
+    /**
+     * Constructor for a cache in the given directory. What's already
+     * there is added up, and temporary files left by a run that died
+     * part way through writing an entry are deleted.
+     *
+     * @param initDirectory Directory to keep the entries in.
+     *
+     * @param initMaxBytes How much disk the entries may take, in bytes.
+     *
+     * @throws IOException Thrown if the directory can't be created.
+     */
+    public DecodedFrameCache(Path initDirectory, long initMaxBytes) throws IOException
+    {
+        directory = initDirectory;
+        maxBytes = initMaxBytes;
+        Files.createDirectories(directory);
+        hits = new AtomicLong();
+        misses = new AtomicLong();
+        evictions = new AtomicLong();
+        totalBytes = new AtomicLong(scan(false));
+    }
+
+    // ACCESSOR METHODS
+
+    public Path getDirectory() { return directory; }
+    public long getMaxBytes() { return maxBytes; }
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getEvictions() { return evictions.get(); }
+    public long getTotalBytes() { return totalBytes.get(); }
+
+    /**
+     * Reads an image file, from its cached pixels if we have them and
+     * by decoding it (and caching the result) if we don't.
+     *
+     * @param imageFile The image file to read.
+     *
+     * @return The image, as TYPE_INT_ARGB, or null if the file isn't
+     * an image we can decode.
+     *
+     * @throws IOException Thrown if the image file can't be read.
+     */
+    public BufferedImage read(Path imageFile) throws IOException
+    {
+        byte[] encoded = Files.readAllBytes(imageFile);
+        Path entry = directory.resolve(hashOf(encoded) + ENTRY_SUFFIX);
+
+        // A HIT SKIPS DECODING ENTIRELY
+        BufferedImage img = readEntry(entry);
+        if (img != null)
+        {
+            hits.incrementAndGet();
+            return img;
+        }
+
+        misses.incrementAndGet();
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(encoded));
+        if (decoded == null)
+        {
+            return null;
+        }
+        img = toIntArgb(decoded);
+        try
+        {
+            totalBytes.addAndGet(writeEntry(entry, img));
+            if (totalBytes.get() > maxBytes)
+            {
+                evictOverflow();
+            }
+        }
+        catch(IOException ioe)
+        {
+            // THE CACHE IS ONLY A SHORTCUT, SO WE CAN DO WITHOUT IT
+            ioe.printStackTrace();
+        }
+        return img;
+    }
+
+    /**
+     * Summarizes how the cache is doing.
+     *
+     * @return A one line description, for logging.
+     */
+    @Override
+    public String toString()
+    {
+        return directory + ": " + hits.get() + " hits, " + misses.get() + " misses, "
+                + evictions.get() + " evictions";
+    }
+
+    /**
+     * Maps an entry and copies its pixels into a new image.
+     *
+     * @param entry The entry's file.
+     *
+     * @return The image, or null if there's no usable entry.
+     */
+    private BufferedImage readEntry(Path entry)
+    {
+        if (!Files.isRegularFile(entry))
+        {
+            return null;
+        }
+        try
+        {
+            FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ);
+            try
+            {
+                long size = channel.size();
+                if (size < HEADER_INTS * 4)
+                {
+                    return null;
+                }
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                IntBuffer ints = mapped.order(ByteOrder.nativeOrder()).asIntBuffer();
+
+                // WRITTEN BY SOMEONE ELSE, OR ON A MACHINE OF THE OTHER ENDIANNESS?
+                int width = 0;
+                int height = 0;
+                if ((ints.get() == MAGIC) && (ints.get() == VERSION))
+                {
+                    width = ints.get();
+                    height = ints.get();
+                }
+                if ((width <= 0) || (height <= 0) || (ints.remaining() != (long)width * height))
+                {
+                    return null;
+                }
+                BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+                ints.get(((DataBufferInt)img.getRaster().getDataBuffer()).getData());
+
+                // A HIT COUNTS AS A USE WHEN IT COMES TO EVICTION
+                Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+                return img;
+            }
+            finally
+            {
+                channel.close();
+            }
+        }
+        catch(IOException ioe)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Writes an image's pixels to an entry. The entry is written to a
+     * temporary file first, so a half-written entry is never read.
+     *
+     * @param entry The entry's file.
+     *
+     * @param img The image, as TYPE_INT_ARGB.
+     *
+     * @return How many bytes the cache grew by.
+     *
+     * @throws IOException Thrown if the entry can't be written.
+     */
+    private long writeEntry(Path entry, BufferedImage img) throws IOException
+    {
+        int[] pixels = ((DataBufferInt)img.getRaster().getDataBuffer()).getData();
+        long size = (HEADER_INTS + (long)pixels.length) * 4;
+        Path temp = Files.createTempFile(directory, "entry", TEMP_SUFFIX);
+        try
+        {
+            RandomAccessFile file = new RandomAccessFile(temp.toFile(), "rw");
+            try
+            {
+                MappedByteBuffer mapped = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+                IntBuffer ints = mapped.order(ByteOrder.nativeOrder()).asIntBuffer();
+                ints.put(MAGIC).put(VERSION).put(img.getWidth()).put(img.getHeight());
+                ints.put(pixels);
+                mapped.force();
+            }
+            finally
+            {
+                file.close();
+            }
+            // AN UNUSABLE ENTRY WE'RE REPLACING WAS ALREADY COUNTED
+            long replaced = Files.isRegularFile(entry) ? Files.size(entry) : 0;
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return size - replaced;
+        }
+        finally
+        {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache is back
+     * under its size limit, with some headroom, along with any abandoned temporary files.
+     * Since this lists the directory anyway, the running total is
+     * brought back in line with what's really there, which also picks
+     * up anything another run wrote.
+     */
+    private synchronized void evictOverflow()
+    {
+        totalBytes.set(scan(true));
+    }
+
+    /**
+     * Adds up the entries in the directory, deleting temporary files
+     * abandoned part way through being written.
+     *
+     * @param evicting Whether to also delete the least recently used
+     * entries if the total is over the size limit, until it's back
+     * under with some headroom.
+     *
+     * @return The bytes the entries take after any deleting.
+     */
+    private long scan(boolean evicting)
+    {
+        File[] files = directory.toFile().listFiles();
+        if (files == null)
+        {
+            return 0;
+        }
+        long staleBefore = System.currentTimeMillis() - STALE_TEMP_MILLIS;
+        File[] entries = new File[files.length];
+        int entryCount = 0;
+        long bytes = 0;
+        for (int i = 0; i < files.length; i++)
+        {
+            String name = files[i].getName();
+            if (name.endsWith(ENTRY_SUFFIX))
+            {
+                entries[entryCount++] = files[i];
+                bytes += files[i].length();
+            }
+            else if (name.endsWith(TEMP_SUFFIX) && (files[i].lastModified() < staleBefore))
+            {
+                // ANOTHER RUN MIGHT STILL BE WRITING A NEWER ONE, SO LEAVE THOSE BE
+                files[i].delete();
+            }
+        }
+        if (!evicting || (bytes <= maxBytes))
+        {
+            return bytes;
+        }
+
+        // OLDEST FIRST
+        Arrays.sort(entries, 0, entryCount, new Comparator<File>()
+        {
+            @Override
+            public int compare(File a, File b)
+            {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        long target = maxBytes - (maxBytes / 100 * EVICTION_HEADROOM_PERCENT);
+        for (int i = 0; (i < entryCount) && (bytes > target); i++)
+        {
+            long entryBytes = entries[i].length();
+            if (entries[i].delete())
+            {
+                bytes -= entryBytes;
+                evictions.incrementAndGet();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Makes a TYPE_INT_ARGB copy of an image, unless it already is one.
+     * The pixels are copied exactly rather than drawn, so even fully
+     * transparent pixels keep their colour.
+     *
+     * @param img The decoded image.
+     *
+     * @return An image whose raster is a plain int array of ARGB pixels.
+     */
+    private static BufferedImage toIntArgb(BufferedImage img)
+    {
+        if (img.getType() == BufferedImage.TYPE_INT_ARGB)
+        {
+            return img;
+        }
+        BufferedImage argb = new BufferedImage(img.getWidth(), img.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        int w = img.getWidth();
+        int h = img.getHeight();
+        argb.setRGB(0, 0, w, h, img.getRGB(0, 0, w, h, null, 0, w), 0, w);
+        return argb;
+    }
+
+    /**
+     * Hashes an image file's bytes.
+     *
+     * @param encoded The bytes of the image file.
+     *
+     * @return The SHA-256 of the bytes, in hex.
+     */
+    private static String hashOf(byte[] encoded)
+    {
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(encoded);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (int i = 0; i < digest.length; i++)
+            {
+                hex.append(String.format("%02x", digest[i] & 0xff));
+            }
+            return hex.toString();
+        }
+        catch(NoSuchAlgorithmException nsae)
+        {
+            // EVERY JAVA PLATFORM IS REQUIRED TO HAVE SHA-256
+            throw new IllegalStateException(nsae);
+        }
+    }
+}
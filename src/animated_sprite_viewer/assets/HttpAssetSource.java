@@ -0,0 +1,362 @@
+package animated_sprite_viewer.assets;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An HttpAssetSource pulls a sprite library from an asset server, laid
+ * out under a base URL exactly as it would be in a directory. Every
+ * asset is kept in a local disk cache along with the ETag and
+ * Last-Modified the server sent for it. The next time it's needed, in
+ * this run or a later one, the server is asked with If-None-Match and
+ * If-Modified-Since, and unchanged assets come back as a bodiless 304,
+ * so a warm start sends next to nothing over the wire. Within one run
+ * each asset is checked at most once.
+ *
+ * Fetches run on a small fixed pool of threads, which bounds how many
+ * requests are in flight at once; prefetch starts all of a sprite
+ * type's images together rather than one after another.
+ *
+ * If the server can't be reached, assets already in the cache are used
+ * as they are. A fetch that fails outright is forgotten, so the next
+ * request for that asset tries the server again.
+ *
+ * @author  Kevin Hock
+ */
+public class HttpAssetSource implements AssetSource
+{
+    // HOW MANY REQUESTS WE'LL HAVE IN FLIGHT AT ONCE
+    public static final int DEFAULT_MAX_CONCURRENT_FETCHES = 8;
+
+    // HOW LONG WE WAIT ON THE SERVER
+    public static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    public static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    // WHAT WE STORE ALONGSIDE EACH CACHED ASSET
+    public static final String META_FILE_SUFFIX = ".http-meta";
+    public static final String ETAG_KEY = "ETag";
+    public static final String LAST_MODIFIED_KEY = "Last-Modified";
+
+    // WHERE THE LIBRARY IS AND WHERE WE KEEP OUR COPY
+    private URI baseUri;
+    private Path cacheDirectory;
+
+    // FOR TALKING TO THE SERVER
+    private HttpClient client;
+    private ExecutorService fetchExecutor;
+
+    // ONE FETCH PER ASSET PER RUN, SHARED BY EVERYONE WHO ASKS
+    private ConcurrentHashMap<String, Future<Path>> fetches;
+
+    // WHAT WENT OVER THE WIRE
+    private AtomicLong requestsSent;
+    private AtomicLong notModifiedResponses;
+    private AtomicLong bytesDownloaded;
+
+    /**
+     * Constructor for a source reading from the given server.
+     *
+     * @param initBaseUri URL of the library root on the server.
+     *
+     * @param initCacheDirectory Local directory to cache assets in.
+     *
+     * @param maxConcurrentFetches How many requests may be in flight at once.
+     *
+     * @throws IOException Thrown if the cache directory can't be created.
+     */
+    public HttpAssetSource(URI initBaseUri, Path initCacheDirectory, int maxConcurrentFetches)
+            throws IOException
+    {
+        // RELATIVE PATHS RESOLVE AGAINST THE ROOT ONLY IF IT ENDS IN A SLASH
+        String base = initBaseUri.toString();
+        baseUri = base.endsWith("/") ? initBaseUri : URI.create(base + "/");
+        cacheDirectory = initCacheDirectory;
+        Files.createDirectories(cacheDirectory);
+
+        fetchExecutor = Executors.newFixedThreadPool(maxConcurrentFetches, new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "HttpAssetFetch");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        client = HttpClient.newBuilder()
+                .connectTimeout(CONNECT_TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        fetches = new ConcurrentHashMap<String, Future<Path>>();
+        requestsSent = new AtomicLong();
+        notModifiedResponses = new AtomicLong();
+        bytesDownloaded = new AtomicLong();
+    }
+
+    // ACCESSOR METHODS
+
+    public long getRequestsSent() { return requestsSent.get(); }
+    public long getNotModifiedResponses() { return notModifiedResponses.get(); }
+    public long getBytesDownloaded() { return bytesDownloaded.get(); }
+
+    @Override
+    public Path resolve(String relativePath) throws IOException
+    {
+        try
+        {
+            return startFetch(relativePath).get();
+        }
+        catch(InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fetching " + relativePath, ie);
+        }
+        catch(ExecutionException ee)
+        {
+            Throwable cause = ee.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException)cause;
+            }
+            throw new IOException("Could not fetch " + relativePath, cause);
+        }
+    }
+
+    @Override
+    public void prefetch(Collection<String> relativePaths)
+    {
+        Iterator<String> it = relativePaths.iterator();
+        while (it.hasNext())
+        {
+            startFetch(it.next());
+        }
+    }
+
+    @Override
+    public String getDescription()
+    {
+        return baseUri.toString();
+    }
+
+    @Override
+    public void close()
+    {
+        fetchExecutor.shutdownNow();
+    }
+
+    /**
+     * Summarizes what went over the wire, for logging.
+     *
+     * @return A one line description.
+     */
+    @Override
+    public String toString()
+    {
+        return baseUri + ": " + requestsSent.get() + " requests, " + notModifiedResponses.get()
+                + " not modified, " + (bytesDownloaded.get() / 1024) + " KB downloaded";
+    }
+
+    /**
+     * Starts fetching an asset, unless it's already been fetched or is
+     * being fetched this run. A fetch that fails takes itself back out,
+     * so one network hiccup doesn't leave the asset unloadable.
+     *
+     * @param relativePath The asset's path from the library root.
+     *
+     * @return The fetch, which yields the path of the cached copy.
+     */
+    private Future<Path> startFetch(final String relativePath)
+    {
+        Future<Path> fetch = fetches.get(relativePath);
+        if (fetch != null)
+        {
+            return fetch;
+        }
+        FutureTask<Path> task = new FutureTask<Path>(new Callable<Path>()
+        {
+            @Override
+            public Path call() throws IOException
+            {
+                // ONLY THE TASK IN THE MAP EVER RUNS, SO IT'S OURS TO REMOVE.
+                // IT GOES BEFORE ANYONE WAITING IS TOLD, SO THEIR NEXT TRY
+                // STARTS A NEW FETCH
+                try
+                {
+                    return fetch(relativePath);
+                }
+                catch(IOException ioe)
+                {
+                    fetches.remove(relativePath);
+                    throw ioe;
+                }
+                catch(RuntimeException re)
+                {
+                    fetches.remove(relativePath);
+                    throw re;
+                }
+            }
+        });
+        fetch = fetches.putIfAbsent(relativePath, task);
+        if (fetch != null)
+        {
+            return fetch;
+        }
+        fetchExecutor.execute(task);
+        return task;
+    }
+
+    /**
+     * Brings the cached copy of an asset up to date with the server,
+     * sending a conditional request if we already have a copy.
+     *
+     * @param relativePath The asset's path from the library root.
+     *
+     * @return The path of the cached copy.
+     *
+     * @throws IOException Thrown if there's no cached copy and the
+     * server can't provide one.
+     */
+    private Path fetch(String relativePath) throws IOException
+    {
+        Path cached = cachePathFor(relativePath);
+        Path metaFile = cached.resolveSibling(cached.getFileName() + META_FILE_SUFFIX);
+        boolean haveCopy = Files.isRegularFile(cached);
+        Properties meta = new Properties();
+        if (haveCopy && Files.isRegularFile(metaFile))
+        {
+            InputStream in = Files.newInputStream(metaFile);
+            try
+            {
+                meta.load(in);
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+
+        // ASK ONLY FOR WHAT'S CHANGED SINCE OUR COPY
+        HttpRequest.Builder request = HttpRequest.newBuilder(baseUri.resolve(relativePath))
+                .timeout(REQUEST_TIMEOUT)
+                .GET();
+        String etag = meta.getProperty(ETAG_KEY);
+        String lastModified = meta.getProperty(LAST_MODIFIED_KEY);
+        if (etag != null)
+        {
+            request.header("If-None-Match", etag);
+        }
+        if (lastModified != null)
+        {
+            request.header("If-Modified-Since", lastModified);
+        }
+
+        // THE BODY GOES TO A TEMPORARY FILE SO A FAILED DOWNLOAD
+        // NEVER LEAVES A HALF-WRITTEN ASSET IN THE CACHE
+        Files.createDirectories(cached.getParent());
+        Path download = Files.createTempFile(cached.getParent(), "download", ".part");
+        try
+        {
+            requestsSent.incrementAndGet();
+            HttpResponse<Path> response = client.send(request.build(),
+                    HttpResponse.BodyHandlers.ofFile(download));
+            int status = response.statusCode();
+            if ((status == 304) && haveCopy)
+            {
+                notModifiedResponses.incrementAndGet();
+                return cached;
+            }
+            if (status != 200)
+            {
+                if (haveCopy)
+                {
+                    return cached;
+                }
+                throw new IOException("HTTP " + status + " for " + baseUri.resolve(relativePath));
+            }
+            bytesDownloaded.addAndGet(Files.size(download));
+            Files.move(download, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            // REMEMBER HOW TO ASK ABOUT IT NEXT TIME
+            Properties newMeta = new Properties();
+            String newEtag = response.headers().firstValue("ETag").orElse(null);
+            String newLastModified = response.headers().firstValue("Last-Modified").orElse(null);
+            if (newEtag != null)
+            {
+                newMeta.setProperty(ETAG_KEY, newEtag);
+            }
+            if (newLastModified != null)
+            {
+                newMeta.setProperty(LAST_MODIFIED_KEY, newLastModified);
+            }
+            OutputStream out = Files.newOutputStream(metaFile);
+            try
+            {
+                newMeta.store(out, relativePath);
+            }
+            finally
+            {
+                out.close();
+            }
+            return cached;
+        }
+        catch(IOException ioe)
+        {
+            // OFFLINE? THEN OUR COPY WILL HAVE TO DO
+            if (haveCopy)
+            {
+                return cached;
+            }
+            throw ioe;
+        }
+        catch(InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fetching " + relativePath, ie);
+        }
+        finally
+        {
+            Files.deleteIfExists(download);
+        }
+    }
+
+    /**
+     * Works out where an asset's cached copy lives, refusing paths that
+     * would climb out of the cache directory.
+     *
+     * @param relativePath The asset's path from the library root.
+     *
+     * @return The path of the cached copy.
+     *
+     * @throws IOException Thrown if the path leaves the cache directory.
+     */
+    private Path cachePathFor(String relativePath) throws IOException
+    {
+        Path cached = cacheDirectory.resolve(relativePath).normalize();
+        if (!cached.startsWith(cacheDirectory.normalize()))
+        {
+            throw new IOException(relativePath + " is outside the sprite library");
+        }
+        return cached;
+    }
+}
@@ -0,0 +1,156 @@
+package animated_sprite_viewer.assets;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+
+/**
+ * A PathAssetSource reads a sprite library from a directory of any
+ * java.nio.file FileSystem. That's a plain directory on disk, the inside
+ * of a zip or jar archive opened through the zip FileSystem, or a
+ * directory on the classpath. An archive is opened once, which reads its
+ * central directory; after that every asset is a lookup in memory rather
+ * than a separate stat and open on the disk, which is what makes a
+ * library of thousands of tiny PNGs quick to start from.
+ *
+ * @author  Kevin Hock
+ */
+public class PathAssetSource implements AssetSource
+{
+    // THE LIBRARY ROOT
+    private Path root;
+
+    // THE ARCHIVE WE OPENED, IF ANY, WHICH WE MUST CLOSE
+    private FileSystem ownedFileSystem;
+
+    // FOR MESSAGES
+    private String description;
+
+    /**
+     * Constructor for a source rooted at the given path.
+     *
+     * @param initRoot The library root.
+     *
+     * @param initOwnedFileSystem A file system to close along with
+     * this source, or null.
+     *
+     * @param initDescription Where the library lives, for messages.
+     */
+    public PathAssetSource(Path initRoot, FileSystem initOwnedFileSystem, String initDescription)
+    {
+        root = initRoot;
+        ownedFileSystem = initOwnedFileSystem;
+        description = initDescription;
+    }
+
+    /**
+     * Makes a source for a library that's a plain directory.
+     *
+     * @param directory The library root directory.
+     *
+     * @return The asset source.
+     */
+    public static PathAssetSource fromDirectory(Path directory)
+    {
+        return new PathAssetSource(directory, null, directory.toString());
+    }
+
+    /**
+     * Makes a source for a library packed into a zip or jar archive.
+     *
+     * @param archive The archive file.
+     *
+     * @param rootInArchive Where the library root is inside the
+     * archive, such as "/" or "/sprite_types".
+     *
+     * @return The asset source.
+     *
+     * @throws IOException Thrown if the archive can't be opened.
+     */
+    public static PathAssetSource fromArchive(Path archive, String rootInArchive) throws IOException
+    {
+        FileSystem zipFileSystem = FileSystems.newFileSystem(archive, (ClassLoader)null);
+        return new PathAssetSource(zipFileSystem.getPath(rootInArchive), zipFileSystem,
+                archive + "!" + rootInArchive);
+    }
+
+    /**
+     * Makes a source for a library found on the classpath, either as a
+     * directory or inside a jar.
+     *
+     * @param resourceDirectory The library root as a resource name,
+     * such as "/data/sprite_types".
+     *
+     * @return The asset source.
+     *
+     * @throws IOException Thrown if the resource isn't on the classpath
+     * or its jar can't be opened.
+     */
+    public static PathAssetSource fromClasspath(String resourceDirectory) throws IOException
+    {
+        URL url = PathAssetSource.class.getResource(resourceDirectory);
+        if (url == null)
+        {
+            throw new IOException(resourceDirectory + " is not on the classpath");
+        }
+        try
+        {
+            URI uri = url.toURI();
+            if (!"jar".equals(uri.getScheme()))
+            {
+                return new PathAssetSource(Paths.get(uri), null, "classpath:" + resourceDirectory);
+            }
+
+            // THE JAR MAY ALREADY BE OPEN AS A FILE SYSTEM, IN WHICH CASE
+            // IT BELONGS TO SOMEBODY ELSE AND WE MUSTN'T CLOSE IT
+            FileSystem jarFileSystem = null;
+            try
+            {
+                jarFileSystem = FileSystems.newFileSystem(uri, Collections.<String, Object>emptyMap());
+            }
+            catch(FileSystemAlreadyExistsException fsaee)
+            {
+                // FINE, WE'LL SHARE IT
+            }
+            return new PathAssetSource(Paths.get(uri), jarFileSystem, "classpath:" + resourceDirectory);
+        }
+        catch(URISyntaxException use)
+        {
+            throw new IOException(use);
+        }
+    }
+
+    @Override
+    public Path resolve(String relativePath) throws IOException
+    {
+        Path path = root.resolve(relativePath);
+        if (!Files.exists(path))
+        {
+            throw new IOException(relativePath + " not found in " + description);
+        }
+        return path;
+    }
+
+    @Override
+    public String getDescription()
+    {
+        return description;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (ownedFileSystem != null)
+        {
+            ownedFileSystem.close();
+        }
+    }
+}
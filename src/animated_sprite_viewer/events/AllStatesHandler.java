@@ -0,0 +1,39 @@
+package animated_sprite_viewer.events;
+
+import animated_sprite_viewer.AnimatedSpriteViewer;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import javax.swing.AbstractButton;
+
+/**
+ * The AllStatesHandler class responds to the user ticking or unticking
+ * All States in the View menu.
+ *
+ * @author  Kevin Hock
+ */
+public class AllStatesHandler implements ActionListener
+{
+    private AnimatedSpriteViewer asv;
+
+    /**
+     * Constructor will need the AnimatedSpriteViewer for when the event happens.
+     *
+     * @param asv AnimatedSpriteViewer to give access to all of it's methods non-statically.
+     */
+    public AllStatesHandler(AnimatedSpriteViewer asv)
+    {
+        this.asv = asv;
+    }
+
+    /**
+     * Switches the viewer between showing one animation state and
+     * showing them all, as the menu item now says.
+     *
+     * @param ae Contains information about the event.
+     */
+    @Override
+    public void actionPerformed(ActionEvent ae)
+    {
+        asv.showAllStates(((AbstractButton)ae.getSource()).isSelected());
+    }
+}
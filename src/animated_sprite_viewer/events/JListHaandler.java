@@ -30,9 +30,9 @@ public class JListHaandler implements MouseListener{
     @Override
     public void mouseClicked(MouseEvent me) {
         if (me.getClickCount() == 1) {
-            //Sees where the user clicked and gives that index to the fillComboBox method/
+            //Sees where the user clicked and gives that index to the viewer, which ignores repeat clicks.
                     int index = asv.spriteTypesList.locationToIndex(me.getPoint());
-                    asv.fillComboBox(index);
+                    asv.selectSpriteType(index);
         }
     }
 
@@ -0,0 +1,49 @@
+package animated_sprite_viewer.events;
+
+import animated_sprite_viewer.AnimatedSpriteViewer;
+import java.awt.event.ActionEvent;
+import javax.swing.AbstractAction;
+
+/**
+ * The KeyboardBrowseHandler class responds to the arrow keys, letting
+ * the user step through sprite types (up and down) and animation
+ * states (left and right) without reaching for the mouse.
+ *
+ * @author  Kevin Hock
+ */
+public class KeyboardBrowseHandler extends AbstractAction
+{
+    private static final long serialVersionUID = 1L;
+
+    private AnimatedSpriteViewer asv;
+    private boolean browsingStates;
+    private int step;
+
+    /**
+     * Constructor will need the AnimatedSpriteViewer and which way to step.
+     *
+     * @param asv AnimatedSpriteViewer to give access to all of it's methods non-statically.
+     * @param browsingStates true to step through animation states, false for sprite types.
+     * @param step -1 to step back, 1 to step forward.
+     */
+    public KeyboardBrowseHandler(AnimatedSpriteViewer asv, boolean browsingStates, int step)
+    {
+        this.asv = asv;
+        this.browsingStates = browsingStates;
+        this.step = step;
+    }
+
+    /**
+     * Here's the actual method called when the user presses the arrow key.
+     *
+     * @param ae Contains information about the event.
+     */
+    @Override
+    public void actionPerformed(ActionEvent ae)
+    {
+        if (browsingStates)
+            asv.browseAnimationStates(step);
+        else
+            asv.browseSpriteTypes(step);
+    }
+}
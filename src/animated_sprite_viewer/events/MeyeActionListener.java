@@ -5,7 +5,7 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import javax.swing.JComboBox;
 
-//ActionListener for the combobox
+//ActionListener for the combobox. Only one is ever registered, in initHandlers.
 public class MeyeActionListener implements ActionListener {
     private AnimatedSpriteViewer asv;
     public MeyeActionListener(AnimatedSpriteViewer asv){
@@ -14,11 +14,9 @@ public class MeyeActionListener implements ActionListener {
     public void actionPerformed(ActionEvent evt) {
         JComboBox cb = (JComboBox)evt.getSource();
         Object item = cb.getSelectedItem();
-        //If the event clicked on isn't null go through every animation state and see which one the user clicked on.
-        //Then load the sprite with that animation state.
-        if(item!=null && !item.equals("Select Animation State"))
-            //for(int eachAnimationState=0;eachAnimationState<asv.spriteAnimationStates.size();eachAnimationState++)
-                //if(item.equals(asv.spriteAnimationStates.get(eachAnimationState)))
-                    asv.loadSprite((String)item,asv.spriteType,asv.directoryOfSprite);
+        //If the event clicked on isn't null hand the animation state to the viewer,
+        //which drops it if it's already showing.
+        if(item!=null)
+            asv.selectAnimationState((String)item);
     }
 }
\ No newline at end of file
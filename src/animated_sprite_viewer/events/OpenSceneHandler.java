@@ -0,0 +1,37 @@
+package animated_sprite_viewer.events;
+
+import animated_sprite_viewer.AnimatedSpriteViewer;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+/**
+ * The OpenSceneHandler class responds to the user picking Open Scene...
+ * from the File menu.
+ *
+ * @author  Kevin Hock
+ */
+public class OpenSceneHandler implements ActionListener
+{
+    private AnimatedSpriteViewer asv;
+
+    /**
+     * Constructor will need the AnimatedSpriteViewer for when the event happens.
+     *
+     * @param asv AnimatedSpriteViewer to give access to all of it's methods non-statically.
+     */
+    public OpenSceneHandler(AnimatedSpriteViewer asv)
+    {
+        this.asv = asv;
+    }
+
+    /**
+     * Asks the viewer to let the user pick a scene file and load it.
+     *
+     * @param ae Contains information about the event.
+     */
+    @Override
+    public void actionPerformed(ActionEvent ae)
+    {
+        asv.openScene();
+    }
+}
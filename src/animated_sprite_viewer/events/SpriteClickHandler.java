@@ -0,0 +1,42 @@
+package animated_sprite_viewer.events;
+
+import animated_sprite_viewer.AnimatedSpriteViewer;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import javax.swing.SwingUtilities;
+
+/**
+ * The SpriteClickHandler class responds to the user clicking in the
+ * scene, which selects the sprite clicked on.
+ *
+ * @author  Kevin Hock
+ */
+public class SpriteClickHandler extends MouseAdapter
+{
+    private AnimatedSpriteViewer asv;
+
+    /**
+     * Constructor will need the AnimatedSpriteViewer for when the event happens.
+     *
+     * @param asv AnimatedSpriteViewer to give access to all of it's methods non-statically.
+     */
+    public SpriteClickHandler(AnimatedSpriteViewer asv)
+    {
+        this.asv = asv;
+    }
+
+    /**
+     * Selects whatever's under a single left click. Double clicks belong
+     * to the ViewportMouseHandler.
+     *
+     * @param me Contains information about the event.
+     */
+    @Override
+    public void mouseClicked(MouseEvent me)
+    {
+        if (SwingUtilities.isLeftMouseButton(me) && (me.getClickCount() == 1))
+        {
+            asv.selectSpriteAt(me.getPoint());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package animated_sprite_viewer.events;
+
+import animated_sprite_viewer.AnimatedSpriteViewer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+/**
+ * The SpriteTypeFilterHandler class responds to each keystroke in the
+ * sprite type filter field, narrowing or widening the list as the user
+ * types.
+ *
+ * @author  Kevin Hock
+ */
+public class SpriteTypeFilterHandler implements DocumentListener
+{
+    private AnimatedSpriteViewer asv;
+
+    /**
+     * Constructor will need the AnimatedSpriteViewer for when the event happens.
+     *
+     * @param asv AnimatedSpriteViewer to give access to all of it's methods non-statically.
+     */
+    public SpriteTypeFilterHandler(AnimatedSpriteViewer asv)
+    {
+        this.asv = asv;
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent de)
+    {
+        filter(de.getDocument());
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent de)
+    {
+        filter(de.getDocument());
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent de) {}
+
+    /**
+     * Hands the field's text to the viewer as the new filter.
+     *
+     * @param doc The filter field's document.
+     */
+    private void filter(Document doc)
+    {
+        try
+        {
+            asv.filterSpriteTypes(doc.getText(0, doc.getLength()));
+        }
+        catch(BadLocationException ble)
+        {
+            // THE WHOLE DOCUMENT IS ALWAYS THERE
+            ble.printStackTrace();
+        }
+    }
+}
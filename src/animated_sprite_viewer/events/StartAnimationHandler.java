@@ -2,7 +2,7 @@ package animated_sprite_viewer.events;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import sprite_renderer.SceneRenderer;
+import animated_sprite_viewer.renderer.SceneRenderer;
 
 /**
  * The StartAnimationHandler class responds to when the user
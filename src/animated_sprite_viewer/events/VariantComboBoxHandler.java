@@ -0,0 +1,43 @@
+package animated_sprite_viewer.events;
+
+import animated_sprite_viewer.AnimatedSpriteViewer;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import javax.swing.JComboBox;
+
+/**
+ * The VariantComboBoxHandler class responds to the user picking a
+ * colour variant of the sprite type being viewed.
+ *
+ * @author  Kevin Hock
+ */
+public class VariantComboBoxHandler implements ActionListener
+{
+    private AnimatedSpriteViewer asv;
+
+    /**
+     * Constructor will need the AnimatedSpriteViewer for when the event happens.
+     *
+     * @param asv AnimatedSpriteViewer to give access to all of it's methods non-statically.
+     */
+    public VariantComboBoxHandler(AnimatedSpriteViewer asv)
+    {
+        this.asv = asv;
+    }
+
+    /**
+     * Hands the picked variant to the viewer, which drops it if it's
+     * already showing.
+     *
+     * @param ae Contains information about the event.
+     */
+    @Override
+    public void actionPerformed(ActionEvent ae)
+    {
+        Object item = ((JComboBox)ae.getSource()).getSelectedItem();
+        if (item != null)
+        {
+            asv.selectVariant((String)item);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package animated_sprite_viewer.events;
+
+import animated_sprite_viewer.renderer.SceneRenderer;
+import java.awt.Point;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import javax.swing.SwingUtilities;
+
+/**
+ * The ViewportMouseHandler class lets the user zoom the scene with the
+ * mouse wheel, about the mouse pointer, and pan it by dragging.
+ * Double clicking puts the view back how it started.
+ *
+ * @author  Kevin Hock
+ */
+public class ViewportMouseHandler extends MouseAdapter
+{
+    private SceneRenderer renderer;
+
+    // WHERE THE LAST DRAG EVENT WAS, OR null WHEN NOT DRAGGING
+    private Point lastDragPoint;
+
+    /**
+     * Constructor will need the renderer whose view we move.
+     *
+     * @param initRenderer The renderer to zoom and pan.
+     */
+    public ViewportMouseHandler(SceneRenderer initRenderer)
+    {
+        renderer = initRenderer;
+    }
+
+    /**
+     * Zooms one level per wheel notch: away from the user zooms in.
+     *
+     * @param mwe Contains information about the event.
+     */
+    @Override
+    public void mouseWheelMoved(MouseWheelEvent mwe)
+    {
+        int notches = mwe.getWheelRotation();
+        if (notches != 0)
+        {
+            renderer.zoomAbout(-notches, mwe.getPoint());
+        }
+    }
+
+    @Override
+    public void mousePressed(MouseEvent me)
+    {
+        if (SwingUtilities.isLeftMouseButton(me))
+        {
+            lastDragPoint = me.getPoint();
+        }
+    }
+
+    @Override
+    public void mouseDragged(MouseEvent me)
+    {
+        if (lastDragPoint != null)
+        {
+            Point p = me.getPoint();
+            renderer.panBy(p.x - lastDragPoint.x, p.y - lastDragPoint.y);
+            lastDragPoint = p;
+        }
+    }
+
+    @Override
+    public void mouseReleased(MouseEvent me)
+    {
+        lastDragPoint = null;
+    }
+
+    @Override
+    public void mouseClicked(MouseEvent me)
+    {
+        if (SwingUtilities.isLeftMouseButton(me) && (me.getClickCount() == 2))
+        {
+            renderer.resetViewport();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package animated_sprite_viewer.renderer;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Toolkit;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+
+/**
+ * The FrameConverter turns decoded sprite art into frames that are
+ * cheap to draw on a particular screen. A decoded PNG comes in whatever
+ * layout the decoder liked (indexed, byte RGBA, a view into a sprite
+ * sheet), and drawing that on the screen means converting the colour
+ * model on every single blit. So each frame is copied once, at load
+ * time, into an image created by the screen's GraphicsConfiguration
+ * with the frame's own transparency, or optionally into a
+ * VolatileSpriteFrame that keeps it in video memory.
+ *
+ * Without a screen (a headless run) frames are used as they are.
+ *
+ * @author  Kevin Hock
+ */
+public class FrameConverter
+{
+    // WHAT KIND OF FRAMES WE MAKE
+    public static final String MODE_NONE = "none";
+    public static final String MODE_COMPATIBLE = "compatible";
+    public static final String MODE_VOLATILE = "volatile";
+
+    // HOW MANY TIMES EACH FRAME IS DRAWN WHEN TIMING BLITS
+    public static final int BLIT_TIMING_PASSES = 50;
+
+    // THE SCREEN WE CONVERT FOR, OR null FOR NONE
+    private GraphicsConfiguration graphicsConfiguration;
+    private String mode;
+
+    // A 1x1 COMPATIBLE IMAGE PER TRANSPARENCY, TO COMPARE FRAMES AGAINST
+    private BufferedImage[] probes;
+
+    /**
+     * Constructor for a converter targeting the given screen.
+     *
+     * @param initGraphicsConfiguration The screen frames will be drawn
+     * on, or null to leave frames as they are.
+     *
+     * @param initMode MODE_COMPATIBLE, MODE_VOLATILE or MODE_NONE.
+     */
+    public FrameConverter(GraphicsConfiguration initGraphicsConfiguration, String initMode)
+    {
+        graphicsConfiguration = initGraphicsConfiguration;
+        mode = (initGraphicsConfiguration == null) ? MODE_NONE : initMode;
+        probes = new BufferedImage[Transparency.TRANSLUCENT + 1];
+    }
+
+    // ACCESSOR METHODS
+
+    public GraphicsConfiguration getGraphicsConfiguration() { return graphicsConfiguration; }
+    public String getMode() { return mode; }
+
+    /**
+     * Checks whether a frame would have to be copied to be drawn
+     * without a colour model conversion.
+     *
+     * @param img The decoded frame.
+     *
+     * @return true if the frame's layout isn't what the screen wants.
+     */
+    public synchronized boolean needsConversion(BufferedImage img)
+    {
+        if (graphicsConfiguration == null)
+        {
+            return false;
+        }
+        int transparency = img.getColorModel().getTransparency();
+        if (probes[transparency] == null)
+        {
+            probes[transparency] = graphicsConfiguration.createCompatibleImage(1, 1, transparency);
+        }
+        BufferedImage probe = probes[transparency];
+        return (img.getType() == BufferedImage.TYPE_CUSTOM)
+                || (img.getType() != probe.getType())
+                || !img.getColorModel().equals(probe.getColorModel());
+    }
+
+    /**
+     * Makes a frame that draws as cheaply as this screen allows out of a
+     * frame as decoded (and perhaps trimmed).
+     *
+     * @param decoded The frame, holding the decoded image.
+     *
+     * @return The frame to render with, with the same offsets.
+     */
+    public SpriteFrame convert(SpriteFrame decoded)
+    {
+        BufferedImage img = (BufferedImage)decoded.getImage();
+        if (MODE_VOLATILE.equals(mode))
+        {
+            return new VolatileSpriteFrame(toCompatibleImage(img), decoded, graphicsConfiguration);
+        }
+        if (MODE_COMPATIBLE.equals(mode))
+        {
+            return new SpriteFrame(toCompatibleImage(img), decoded.getOffsetX(), decoded.getOffsetY(),
+                                   decoded.getSourceWidth(), decoded.getSourceHeight());
+        }
+        return decoded;
+    }
+
+    /**
+     * Copies an image into the screen's preferred layout with the same
+     * transparency, unless it's already in it. Sprite sheet regions are
+     * always copied, since a view into a big sheet is slow to draw.
+     *
+     * @param img The decoded image.
+     *
+     * @return The compatible image.
+     */
+    public BufferedImage toCompatibleImage(BufferedImage img)
+    {
+        if ((graphicsConfiguration == null) || (!needsConversion(img) && !isSubimage(img)))
+        {
+            return img;
+        }
+        BufferedImage compatible = graphicsConfiguration.createCompatibleImage(
+                img.getWidth(), img.getHeight(), img.getColorModel().getTransparency());
+        Graphics2D g2 = compatible.createGraphics();
+        try
+        {
+            g2.setComposite(AlphaComposite.Src);
+            g2.drawImage(img, 0, 0, null);
+        }
+        finally
+        {
+            g2.dispose();
+        }
+        return compatible;
+    }
+
+    /**
+     * Expands a frame stored in a compact form (indexed colour, say)
+     * into an image that's quick to draw: a compatible image for the
+     * screen, or plain ARGB without one.
+     *
+     * @param img The compact image.
+     *
+     * @return The expanded image.
+     */
+    public BufferedImage expand(BufferedImage img)
+    {
+        if (graphicsConfiguration != null)
+        {
+            return toCompatibleImage(img);
+        }
+        int w = img.getWidth();
+        int h = img.getHeight();
+        BufferedImage argb = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        argb.setRGB(0, 0, w, h, img.getRGB(0, 0, w, h, null, 0, w), 0, w);
+        return argb;
+    }
+
+    /**
+     * Times drawing a set of frames onto a screen-compatible back buffer,
+     * so load reports can show what conversion saved.
+     *
+     * @param frames The frames to draw.
+     *
+     * @return Average nanoseconds per frame drawn, or -1 without a screen.
+     */
+    public long timeBlits(SpriteFrame[] frames)
+    {
+        if ((graphicsConfiguration == null) || (frames.length == 0))
+        {
+            return -1;
+        }
+        int w = 1;
+        int h = 1;
+        for (int i = 0; i < frames.length; i++)
+        {
+            w = Math.max(w, frames[i].getWidth());
+            h = Math.max(h, frames[i].getHeight());
+        }
+        VolatileImage target = graphicsConfiguration.createCompatibleVolatileImage(w, h);
+        Graphics2D g2 = target.createGraphics();
+        try
+        {
+            // ONE PASS TO WARM UP ANY CACHING THE PIPELINE DOES
+            for (int i = 0; i < frames.length; i++)
+            {
+                frames[i].draw(g2, 0, 0);
+            }
+            Toolkit.getDefaultToolkit().sync();
+            long start = System.nanoTime();
+            for (int pass = 0; pass < BLIT_TIMING_PASSES; pass++)
+            {
+                for (int i = 0; i < frames.length; i++)
+                {
+                    frames[i].draw(g2, 0, 0);
+                }
+            }
+            Toolkit.getDefaultToolkit().sync();
+            return (System.nanoTime() - start) / ((long)BLIT_TIMING_PASSES * frames.length);
+        }
+        finally
+        {
+            g2.dispose();
+            target.flush();
+        }
+    }
+
+    /**
+     * Checks whether an image is a view into a bigger one, as sprite
+     * sheet regions are.
+     *
+     * @param img The image to check.
+     *
+     * @return true if the image shares a bigger image's pixels.
+     */
+    private static boolean isSubimage(BufferedImage img)
+    {
+        return img.getRaster().getParent() != null;
+    }
+}
@@ -0,0 +1,258 @@
+package animated_sprite_viewer.renderer;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The FrameScheduler paces the scene clock. Each tick has a deadline on
+ * the System.nanoTime clock, one scaled tick period after the last one,
+ * and the animation thread parks until the next deadline comes due.
+ * Deadlines are laid end to end rather than measured from when the
+ * thread happened to wake, so a late wakeup never pushes the rest of
+ * the timeline back.
+ *
+ * When the thread falls behind, because a step or the machine was slow,
+ * every tick that's come due is handed back at once. The scene runs them
+ * all and paints once, so it's render frames that get skipped under
+ * load, not simulation ticks. Catching up is bounded, though: past a
+ * quarter of a second's worth of ticks (after a long GC pause, a
+ * suspended machine or a debugger stop) the backlog is dropped and the
+ * clock picks up from now, rather than having the scene grind through
+ * it while it falls further behind.
+ *
+ * Each tick's lateness past its deadline is recorded, so a report can
+ * show how closely the timeline is being kept at the current speed.
+ *
+ * @author  Kevin Hock
+ */
+public class FrameScheduler
+{
+    // NANOSECONDS PER MILLISECOND
+    public static final long NANOS_PER_MILLI = 1000000L;
+
+    // THE MOST SCENE TIME, AND THE MOST TICKS, ONE WAKEUP WILL CATCH UP ON
+    public static final long MAX_CATCH_UP_NANOS = 250 * NANOS_PER_MILLI;
+    public static final int MAX_CATCH_UP_TICKS = 256;
+
+    // THE TICK PERIOD WHEN THE TIME SCALER IS 1, AND THE ONE IN USE NOW
+    private long baseTickNanos;
+    private long tickNanos;
+
+    // WHEN THE LAST TICK WAS DUE, AND THE NEXT ONE IS
+    private long lastDeadline;
+    private long nextDeadline;
+
+    // JITTER STATISTICS SINCE THEY WERE LAST RESET
+    private long statisticsStart;
+    private long ticks;
+    private long droppedTicks;
+    private long frames;
+    private long latenessTotal;
+    private double latenessSquares;
+    private long latenessMax;
+
+    /**
+     * Constructs a scheduler whose clock starts now.
+     *
+     * @param initBaseTickNanos Nanoseconds per tick at normal speed.
+     */
+    public FrameScheduler(long initBaseTickNanos)
+    {
+        baseTickNanos = initBaseTickNanos;
+        tickNanos = initBaseTickNanos;
+        restart();
+    }
+
+    // ACCESSOR METHODS
+
+    public synchronized long getTickNanos() { return tickNanos; }
+    public synchronized long getTickCount() { return ticks; }
+    public synchronized long getDroppedTickCount() { return droppedTicks; }
+    public synchronized long getFrameCount() { return frames; }
+    public synchronized long getMaxLatenessNanos() { return latenessMax; }
+
+    /**
+     * Accessor method for how many render frames were skipped because
+     * more than one tick was due when the thread woke.
+     *
+     * @return Ticks run minus frames painted since the last reset.
+     */
+    public synchronized long getSkippedFrameCount()
+    {
+        return ticks - frames;
+    }
+
+    /**
+     * Accessor method for the average time ticks ran past their deadline.
+     *
+     * @return Mean lateness in nanoseconds, 0 if nothing has run.
+     */
+    public synchronized double getMeanLatenessNanos()
+    {
+        return (ticks == 0) ? 0 : (double)latenessTotal / ticks;
+    }
+
+    /**
+     * Accessor method for how much tick lateness varied.
+     *
+     * @return The standard deviation of lateness in nanoseconds.
+     */
+    public synchronized double getLatenessDeviationNanos()
+    {
+        if (ticks == 0)
+        {
+            return 0;
+        }
+        double mean = (double)latenessTotal / ticks;
+        return Math.sqrt(Math.max(0, latenessSquares / ticks - mean * mean));
+    }
+
+    /**
+     * Accessor method for how many ticks should have come due since the
+     * statistics were reset, judging by the clock alone. Compared with
+     * the tick count this shows whether the timeline drifted.
+     *
+     * @return The number of whole tick periods elapsed.
+     */
+    public synchronized long getTicksDue()
+    {
+        return (System.nanoTime() - statisticsStart) / tickNanos;
+    }
+
+    /**
+     * Puts the statistics into words for a report.
+     *
+     * @return A one line summary of ticks, frames and lateness.
+     */
+    public synchronized String getStatistics()
+    {
+        return String.format("%.1f ms ticks: %d run of %d due (%d dropped), %d frames (%d skipped), "
+                + "late by %.2f ms on average (sd %.2f, max %.2f)",
+                tickNanos / (double)NANOS_PER_MILLI, ticks, getTicksDue(), droppedTicks, frames, getSkippedFrameCount(),
+                getMeanLatenessNanos() / NANOS_PER_MILLI, getLatenessDeviationNanos() / NANOS_PER_MILLI,
+                latenessMax / (double)NANOS_PER_MILLI);
+    }
+
+    // MUTATOR METHODS
+
+    /**
+     * Scales the tick period. The tick in progress keeps the time it has
+     * already had, and is due one new period after the last tick was,
+     * so changing speed doesn't lose or repeat any scene time.
+     *
+     * @param timeScaler Multiplier applied to the base tick period; values
+     * above 1 slow the clock down.
+     */
+    public synchronized void setTimeScaler(float timeScaler)
+    {
+        tickNanos = Math.max(1, (long)(baseTickNanos * (double)timeScaler));
+        nextDeadline = lastDeadline + tickNanos;
+    }
+
+    /**
+     * Starts the clock over from now, as when the scene is unpaused, so
+     * the time spent stopped isn't made up with a burst of ticks. The
+     * statistics start over too.
+     */
+    public synchronized void restart()
+    {
+        lastDeadline = System.nanoTime();
+        nextDeadline = lastDeadline + tickNanos;
+        resetStatistics();
+    }
+
+    /**
+     * Clears the jitter statistics.
+     */
+    public synchronized void resetStatistics()
+    {
+        statisticsStart = lastDeadline;
+        ticks = 0;
+        droppedTicks = 0;
+        frames = 0;
+        latenessTotal = 0;
+        latenessSquares = 0;
+        latenessMax = 0;
+    }
+
+    /**
+     * Parks the calling thread until the next tick is due, then claims
+     * every tick that has come due by then.
+     *
+     * @return The number of ticks to run, at least 1, or 0 if the thread
+     * was interrupted while waiting.
+     */
+    public int awaitTicks()
+    {
+        while (true)
+        {
+            long wait;
+            synchronized (this)
+            {
+                wait = nextDeadline - System.nanoTime();
+                if (wait <= 0)
+                {
+                    return claimDueTicks();
+                }
+            }
+            // A SPEED CHANGE WHILE WE'RE PARKED IS PICKED UP ON THE NEXT PASS
+            LockSupport.parkNanos(this, wait);
+            if (Thread.interrupted())
+            {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Counts the ticks due by now, recording how late they are, and
+     * moves the deadlines past them. If more are due than we'll catch up
+     * on, the oldest are dropped and the clock starts over from now.
+     * Must be called while synchronized.
+     */
+    private int claimDueTicks()
+    {
+        long now = System.nanoTime();
+        long due = (now - nextDeadline) / tickNanos + 1;
+        long limit = Math.max(1, Math.min(MAX_CATCH_UP_TICKS, MAX_CATCH_UP_NANOS / tickNanos));
+        if (due > limit)
+        {
+            // ONLY THE NEWEST limit TICKS RUN, AND THE CLOCK STARTS OVER FROM NOW
+            droppedTicks += due - limit;
+            recordLateness(now - (nextDeadline + (due - limit) * tickNanos), (int)limit);
+            lastDeadline = now;
+            nextDeadline = now + tickNanos;
+            due = limit;
+        }
+        else
+        {
+            recordLateness(now - nextDeadline, (int)due);
+            lastDeadline = nextDeadline + (due - 1) * tickNanos;
+            nextDeadline = lastDeadline + tickNanos;
+        }
+        ticks += due;
+        frames++;
+        return (int)due;
+    }
+
+    /**
+     * Adds a run of consecutive ticks to the lateness statistics. The
+     * first is the latest, and each one after it is one period less so.
+     * Must be called while synchronized.
+     *
+     * @param firstLateness How late the first tick is, in nanoseconds.
+     *
+     * @param count How many ticks there are.
+     */
+    private void recordLateness(long firstLateness, int count)
+    {
+        // SUMS OF k AND k SQUARED FOR k FROM 0 TO count - 1
+        double n = count;
+        double sumK = n * (n - 1) / 2;
+        double sumKSquared = (n - 1) * n * (2 * n - 1) / 6;
+        double t = tickNanos;
+        latenessTotal += (long)(n * firstLateness - t * sumK);
+        latenessSquares += n * (double)firstLateness * firstLateness
+                - 2 * (double)firstLateness * t * sumK + t * t * sumKSquared;
+        latenessMax = Math.max(latenessMax, firstLateness);
+    }
+}
@@ -0,0 +1,111 @@
+package animated_sprite_viewer.renderer;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.lang.ref.SoftReference;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An IndexedSpriteFrame stores its pixels as one byte each, indices
+ * into an IndexColorModel palette that may be shared by every frame of
+ * its sprite type. That's a quarter of the memory of ARGB pixels, which
+ * is what keeps more sprite types resident under the memory budget.
+ *
+ * Blitting indexed pixels is slow, so the first draw expands the frame
+ * into an image laid out for the screen. The expanded copy is only
+ * softly held: it's there for as long as memory allows, and quietly
+ * rebuilt if the collector took it.
+ *
+ * @author  Kevin Hock
+ */
+public class IndexedSpriteFrame extends SpriteFrame
+{
+    // HOW MANY TIMES ANY FRAME HAD TO BE EXPANDED FOR DRAWING
+    private static AtomicLong expansionCount = new AtomicLong();
+
+    // THE MEMORY THIS FRAME ADDS; LESS THAN ITS PIXELS IF IT SHARES THEM
+    private long byteSize;
+
+    // WHAT EXPANDS US, AND THE EXPANDED COPY IF WE STILL HAVE IT
+    private FrameConverter expander;
+    private volatile SoftReference<BufferedImage> expanded;
+
+    /**
+     * Constructs an indexed frame.
+     *
+     * @param initIndexedImage The frame's pixels, with an IndexColorModel.
+     *
+     * @param initTrimmedFrom The frame whose offsets and untrimmed size we take.
+     *
+     * @param initExpander Turns the indexed pixels into a drawable image.
+     */
+    public IndexedSpriteFrame(BufferedImage initIndexedImage, SpriteFrame initTrimmedFrom,
+                              FrameConverter initExpander)
+    {
+        this(initIndexedImage, initTrimmedFrom, initExpander,
+             (long)initIndexedImage.getWidth() * initIndexedImage.getHeight());
+    }
+
+    /**
+     * Constructs an indexed frame whose pixel bytes may be shared with
+     * another frame, as a recoloured variant's are.
+     *
+     * @param initIndexedImage The frame's pixels, with an IndexColorModel.
+     *
+     * @param initTrimmedFrom The frame whose offsets and untrimmed size we take.
+     *
+     * @param initExpander Turns the indexed pixels into a drawable image.
+     *
+     * @param initByteSize The memory this frame adds to what's already loaded.
+     */
+    public IndexedSpriteFrame(BufferedImage initIndexedImage, SpriteFrame initTrimmedFrom,
+                              FrameConverter initExpander, long initByteSize)
+    {
+        super(initIndexedImage, initTrimmedFrom.getOffsetX(), initTrimmedFrom.getOffsetY(),
+              initTrimmedFrom.getSourceWidth(), initTrimmedFrom.getSourceHeight());
+        expander = initExpander;
+        byteSize = initByteSize;
+    }
+
+    // ACCESSOR METHODS
+
+    public static long getExpansionCount() { return expansionCount.get(); }
+
+    /**
+     * Estimates how much memory this frame's pixels take up, at one
+     * byte per pixel, or nothing but its palette if it shares another
+     * frame's pixels. A shared palette is counted by whoever shares it,
+     * and the expanded copy isn't counted, since it can always be let go.
+     *
+     * @return The estimated size in bytes.
+     */
+    @Override
+    public long getByteSize()
+    {
+        return byteSize;
+    }
+
+    /**
+     * Draws this frame from its expanded copy, expanding it first if
+     * it hasn't been or the copy was collected.
+     *
+     * @param g The graphics context to draw with.
+     *
+     * @param x Where the untrimmed art's left edge goes.
+     *
+     * @param y Where the untrimmed art's top edge goes.
+     */
+    @Override
+    public void draw(Graphics g, int x, int y)
+    {
+        SoftReference<BufferedImage> ref = expanded;
+        BufferedImage img = (ref == null) ? null : ref.get();
+        if (img == null)
+        {
+            img = expander.expand((BufferedImage)image);
+            expanded = new SoftReference<BufferedImage>(img);
+            expansionCount.incrementAndGet();
+        }
+        g.drawImage(img, x + offsetX, y + offsetY, null);
+    }
+}
@@ -0,0 +1,99 @@
+package animated_sprite_viewer.renderer;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * An OpaqueMask records which pixels of a frame aren't fully
+ * transparent, one bit per pixel packed into longs, row by row. It's
+ * built once when the frame loads, so hit testing a point is a bounds
+ * check and a bit lookup rather than a read of the image's pixels,
+ * whatever form the frame keeps them in.
+ *
+ * @author  Kevin Hock
+ */
+public class OpaqueMask
+{
+    // HOW BIG THE FRAME IS, AND HOW MANY LONGS EACH ROW TAKES
+    private int width;
+    private int height;
+    private int wordsPerRow;
+
+    // BIT x & 63 OF bits[y * wordsPerRow + (x >> 6)] IS PIXEL (x, y)
+    private long[] bits;
+
+    /**
+     * Constructs an empty mask, with no pixels opaque.
+     *
+     * @param initWidth Width of the frame.
+     *
+     * @param initHeight Height of the frame.
+     */
+    public OpaqueMask(int initWidth, int initHeight)
+    {
+        width = initWidth;
+        height = initHeight;
+        wordsPerRow = (initWidth + 63) >>> 6;
+        bits = new long[wordsPerRow * initHeight];
+    }
+
+    /**
+     * Builds the mask of an image's pixels with any alpha at all.
+     *
+     * @param img The frame's image.
+     *
+     * @return Its mask.
+     */
+    public static OpaqueMask of(BufferedImage img)
+    {
+        int w = img.getWidth();
+        int h = img.getHeight();
+        OpaqueMask mask = new OpaqueMask(w, h);
+        int[] row = new int[w];
+        for (int y = 0; y < h; y++)
+        {
+            img.getRGB(0, y, w, 1, row, 0, w);
+            int rowStart = y * mask.wordsPerRow;
+            for (int x = 0; x < w; x++)
+            {
+                if ((row[x] >>> 24) != 0)
+                {
+                    mask.bits[rowStart + (x >>> 6)] |= 1L << (x & 63);
+                }
+            }
+        }
+        return mask;
+    }
+
+    // ACCESSOR METHODS
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+
+    /**
+     * Estimates how much memory this mask takes up.
+     *
+     * @return The size of its bits in bytes.
+     */
+    public long getByteSize()
+    {
+        return 8L * bits.length;
+    }
+
+    /**
+     * Checks a pixel.
+     *
+     * @param x The pixel across, from the frame's left edge.
+     *
+     * @param y The pixel down, from the frame's top edge.
+     *
+     * @return true if the pixel is in the frame and not fully transparent.
+     */
+    public boolean isOpaque(int x, int y)
+    {
+        if ((x < 0) || (y < 0) || (x >= width) || (y >= height))
+        {
+            return false;
+        }
+        return ((bits[y * wordsPerRow + (x >>> 6)] >>> (x & 63)) & 1L) != 0;
+    }
+}
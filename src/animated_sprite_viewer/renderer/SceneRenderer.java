@@ -0,0 +1,595 @@
+package animated_sprite_viewer.renderer;
+
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+/**
+ * The SceneRenderer is the panel our sprites are animated in. It runs
+ * its own animation thread that advances the scene clock one tick at
+ * a time, but rather than repainting the whole panel every tick it
+ * only repaints the regions where a sprite's image or position
+ * actually changed. Ticks where nothing changed cost no painting at
+ * all, so an idle viewer uses next to no CPU, and the painting that is
+ * done scales with how many sprites change, not with the panel's size.
+ *
+ * The scene is seen through a Viewport that zooms in powers of two and
+ * pans. Dirty regions are mapped to the screen as they're queued, and
+ * sprites draw from frames prescaled to the zoom level, so a zoomed
+ * scene costs about what an unzoomed one does.
+ *
+ * The clock is paced by a FrameScheduler. If painting or a big scene
+ * makes the thread late, it runs every tick that came due and paints
+ * once, so the animation keeps to time and only the frame rate drops.
+ *
+ * Large crowds can be handed to a SpriteArrayEngine instead of being
+ * added one Sprite at a time. The engine is stepped with the rest of
+ * the scene and painted over it. Since a crowd changes all over the
+ * panel, a tick that moves it repaints the whole panel.
+ *
+ * @author  Kevin Hock
+ */
+public class SceneRenderer extends JPanel implements Runnable
+{
+    private static final long serialVersionUID = 1L;
+
+    // MILLISECONDS PER TICK WHEN THE TIME SCALER IS 1
+    public static final long BASE_FRAME_DELAY = 33;
+
+    // HOW OFTEN FRAME TIMING IS PRINTED WHEN WE'RE REPORTING IT
+    public static final long FRAME_REPORT_MILLIS = 5000;
+
+    // PAST THIS MANY SEPARATE REGIONS WE JUST REPAINT THEIR UNION
+    public static final int MAX_DIRTY_REGIONS = 32;
+
+    // EVERYTHING WE'RE ANIMATING
+    private ArrayList<Sprite> sprites;
+
+    // THE SCENE CLOCK AND ITS CONTROLS
+    private Thread animationThread;
+    private volatile boolean paused;
+    private volatile float timeScaler;
+    private long sceneTick;
+    private FrameScheduler scheduler;
+
+    // WHETHER TO PRINT HOW CLOSELY TICKS KEEP TO TIME
+    private volatile boolean reportingFrames;
+
+    // REGIONS WAITING TO BE REPAINTED, GUARDED BY sprites
+    private ArrayList<Rectangle> dirtyRegions;
+    private boolean repaintPending;
+
+    // HOW THE SCENE MAPS ONTO THE PANEL, GUARDED BY sprites
+    private Viewport viewport;
+
+    // THE CROWD, IF ANY, GUARDED BY sprites
+    private SpriteArrayEngine arrayEngine;
+
+    /**
+     * Constructs the renderer for the given sprites. Note that the
+     * scene has to be started before anything will animate.
+     *
+     * @param initSprites The sprites to render. Add or remove sprites
+     * through this renderer from then on, not through the list.
+     */
+    public SceneRenderer(ArrayList<Sprite> initSprites)
+    {
+        sprites = initSprites;
+        dirtyRegions = new ArrayList<Rectangle>();
+        viewport = new Viewport();
+        paused = true;
+        timeScaler = 1.0f;
+        scheduler = new FrameScheduler(BASE_FRAME_DELAY * FrameScheduler.NANOS_PER_MILLI);
+    }
+
+    // ACCESSOR METHODS
+
+    public float getTimeScaler() { return timeScaler; }
+    public boolean isScenePaused() { return paused; }
+    public FrameScheduler getFrameScheduler() { return scheduler; }
+    public boolean isReportingFrames() { return reportingFrames; }
+
+    /**
+     * Accessor method for the crowd being animated.
+     *
+     * @return The crowd's engine, or null if there's none.
+     */
+    public SpriteArrayEngine getSpriteArrayEngine()
+    {
+        synchronized (sprites)
+        {
+            return arrayEngine;
+        }
+    }
+
+    /**
+     * Accessor method for the scene clock.
+     *
+     * @return The number of ticks the scene has been running.
+     */
+    public long getSceneTick()
+    {
+        synchronized (sprites)
+        {
+            return sceneTick;
+        }
+    }
+
+    /**
+     * Accessor method for the current zoom level.
+     *
+     * @return The viewport's zoom level, 0 for the scene's own size.
+     */
+    public int getZoomLevel()
+    {
+        synchronized (sprites)
+        {
+            return viewport.getZoomLevel();
+        }
+    }
+
+    /**
+     * Finds the crowd sprite on top at a point on the panel.
+     *
+     * @param screenPoint A point on the panel.
+     *
+     * @return The sprite's index in the crowd, or -1 if there's none
+     * there, or no crowd.
+     */
+    public int crowdSpriteAt(Point screenPoint)
+    {
+        synchronized (sprites)
+        {
+            if (arrayEngine == null)
+            {
+                return -1;
+            }
+            Point scenePoint = viewport.toScene(screenPoint);
+            return arrayEngine.spriteAt(scenePoint.x, scenePoint.y);
+        }
+    }
+
+    /**
+     * Describes the sprite on top at a point on the panel, as a click
+     * selects it: its type, state and the pose it's showing. Only its
+     * art counts, not the transparent pixels around it.
+     *
+     * @param screenPoint A point on the panel.
+     *
+     * @return The description, or null if no sprite is there.
+     */
+    public String describeSpriteAt(Point screenPoint)
+    {
+        synchronized (sprites)
+        {
+            Point scenePoint = viewport.toScene(screenPoint);
+
+            // THE CROWD IS PAINTED LAST, SO IT'S ON TOP
+            if (arrayEngine != null)
+            {
+                int sprite = arrayEngine.spriteAt(scenePoint.x, scenePoint.y);
+                if (sprite >= 0)
+                {
+                    SpriteType spriteType = arrayEngine.getType(arrayEngine.getTypeHandle(sprite));
+                    int stateHandle = arrayEngine.getStateHandle(sprite);
+                    return describe(spriteType, stateHandle, arrayEngine.getPoseIndex(sprite),
+                                    arrayEngine.getImageId(sprite));
+                }
+            }
+            for (int i = sprites.size() - 1; i >= 0; i--)
+            {
+                Sprite sprite = sprites.get(i);
+                if (sprite.hits(scenePoint.x, scenePoint.y))
+                {
+                    return describe(sprite.getSpriteType(), sprite.getStateHandle(), sprite.getPoseIndex(),
+                                    sprite.getImageId());
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Maps a point on the panel to the scene point under it.
+     *
+     * @param screenPoint A point on the panel.
+     *
+     * @return The scene point.
+     */
+    public Point toScene(Point screenPoint)
+    {
+        synchronized (sprites)
+        {
+            return viewport.toScene(screenPoint);
+        }
+    }
+
+    // MUTATOR METHODS
+
+    /**
+     * Scales how long each tick takes. Values above 1 slow the
+     * animation down, values below 1 speed it up.
+     *
+     * @param initTimeScaler Multiplier applied to the base tick delay.
+     */
+    public void setTimeScaler(float initTimeScaler)
+    {
+        if (reportingFrames)
+        {
+            reportFrames();
+        }
+        timeScaler = initTimeScaler;
+        scheduler.setTimeScaler(initTimeScaler);
+        scheduler.resetStatistics();
+    }
+
+    /**
+     * Turns printing frame timing on or off. While it's on, the tick
+     * lateness and skipped frames are printed every few seconds and
+     * whenever the speed changes.
+     *
+     * @param initReportingFrames true to print frame timing.
+     */
+    public void setReportingFrames(boolean initReportingFrames)
+    {
+        reportingFrames = initReportingFrames;
+    }
+
+    /**
+     * Zooms the view in or out by whole levels about a point on the
+     * panel, repainting it if the zoom changed.
+     *
+     * @param levels How many times to double the scale, negative to halve it.
+     *
+     * @param screenPoint The point to zoom about, which stays put.
+     */
+    public void zoomAbout(int levels, Point screenPoint)
+    {
+        boolean zoomed;
+        synchronized (sprites)
+        {
+            zoomed = viewport.zoomAbout(levels, screenPoint.x, screenPoint.y);
+        }
+        if (zoomed)
+        {
+            repaint();
+        }
+    }
+
+    /**
+     * Pans the view and repaints it.
+     *
+     * @param screenDx How far to move the scene right, in panel pixels.
+     *
+     * @param screenDy How far to move the scene down, in panel pixels.
+     */
+    public void panBy(int screenDx, int screenDy)
+    {
+        if ((screenDx == 0) && (screenDy == 0))
+        {
+            return;
+        }
+        synchronized (sprites)
+        {
+            viewport.panBy(screenDx, screenDy);
+        }
+        repaint();
+    }
+
+    /**
+     * Goes back to viewing the scene at its own size, unpanned.
+     */
+    public void resetViewport()
+    {
+        synchronized (sprites)
+        {
+            viewport.reset();
+        }
+        repaint();
+    }
+
+    /**
+     * Hands a crowd of sprites to this renderer, or takes it away.
+     *
+     * @param initArrayEngine The engine to step and paint along with
+     * the scene's sprites, or null for none.
+     */
+    public void setSpriteArrayEngine(SpriteArrayEngine initArrayEngine)
+    {
+        synchronized (sprites)
+        {
+            arrayEngine = initArrayEngine;
+        }
+        repaint();
+    }
+
+    /**
+     * Changes the crowd, say by adding sprites to it, while it isn't
+     * being stepped or painted, then repaints. Nothing is done if the
+     * crowd has since been replaced.
+     *
+     * @param crowd The crowd the change is meant for.
+     *
+     * @param change Makes the change.
+     *
+     * @return false if the crowd is no longer this renderer's.
+     */
+    public boolean changeCrowd(SpriteArrayEngine crowd, Runnable change)
+    {
+        synchronized (sprites)
+        {
+            if ((crowd == null) || (crowd != arrayEngine))
+            {
+                return false;
+            }
+            change.run();
+        }
+        repaint();
+        return true;
+    }
+
+    public void pauseScene() { paused = true; }
+    public void unpauseScene() { paused = false; }
+
+    /**
+     * Starts the animation thread. The scene stays paused until
+     * unpauseScene is called.
+     */
+    public void startScene()
+    {
+        if (animationThread == null)
+        {
+            animationThread = new Thread(this, "SceneRenderer");
+            animationThread.setDaemon(true);
+            animationThread.start();
+        }
+    }
+
+    /**
+     * Adds a sprite to the scene, starting its animation at the current
+     * tick, and repaints only the area it covers.
+     *
+     * @param sprite The sprite to add.
+     */
+    public void addSprite(Sprite sprite)
+    {
+        synchronized (sprites)
+        {
+            sprite.setStartTick(sceneTick);
+            sprites.add(sprite);
+            addDirtyRegion(sprite.update(sceneTick, false));
+        }
+    }
+
+    /**
+     * Adds a group of sprites to the scene all at once, so they all
+     * start their animations on the same tick and stay in step.
+     *
+     * @param group The sprites to add.
+     */
+    public void addSprites(List<Sprite> group)
+    {
+        synchronized (sprites)
+        {
+            for (int i = 0; i < group.size(); i++)
+            {
+                Sprite sprite = group.get(i);
+                sprite.setStartTick(sceneTick);
+                sprites.add(sprite);
+                addDirtyRegion(sprite.update(sceneTick, false));
+            }
+        }
+    }
+
+    /**
+     * Removes every sprite from the scene, repainting only the areas
+     * they covered.
+     */
+    public void removeAllSprites()
+    {
+        synchronized (sprites)
+        {
+            for (int i = 0; i < sprites.size(); i++)
+            {
+                addDirtyRegion(sprites.get(i).getBounds());
+            }
+            sprites.clear();
+        }
+    }
+
+    /**
+     * The animation loop. Each pass waits for the scheduler to say ticks
+     * are due, then advances the scene by all of them unless it is
+     * paused. While paused the loop just idles, and the clock starts
+     * over when the scene is unpaused.
+     */
+    @Override
+    public void run()
+    {
+        boolean wasPaused = true;
+        long lastReport = System.nanoTime();
+        while (true)
+        {
+            if (paused)
+            {
+                wasPaused = true;
+                LockSupport.parkNanos(BASE_FRAME_DELAY * FrameScheduler.NANOS_PER_MILLI);
+                if (Thread.interrupted())
+                {
+                    return;
+                }
+                continue;
+            }
+            if (wasPaused)
+            {
+                wasPaused = false;
+                scheduler.restart();
+                lastReport = System.nanoTime();
+            }
+            int ticks = scheduler.awaitTicks();
+            if (ticks == 0)
+            {
+                return;
+            }
+            step(ticks);
+            if (reportingFrames
+                    && (System.nanoTime() - lastReport >= FRAME_REPORT_MILLIS * FrameScheduler.NANOS_PER_MILLI))
+            {
+                reportFrames();
+                scheduler.resetStatistics();
+                lastReport = System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * Prints the scheduler's timing since its statistics were last reset.
+     */
+    private void reportFrames()
+    {
+        System.out.println("Frames at time scaler " + timeScaler + ": " + scheduler.getStatistics());
+    }
+
+    /**
+     * Advances the scene by a number of ticks, collecting the regions
+     * that need repainting, and paints once for all of them. If no
+     * sprite changed nothing is repainted, crowd included. The lock is taken a tick at a
+     * time, so a long catch-up never holds off painting for long.
+     *
+     * @param ticks How many ticks came due, at least 1.
+     */
+    private void step(int ticks)
+    {
+        for (int t = 0; t < ticks; t++)
+        {
+            synchronized (sprites)
+            {
+                sceneTick++;
+                for (int i = 0; i < sprites.size(); i++)
+                {
+                    addDirtyRegion(sprites.get(i).update(sceneTick, true));
+                }
+                if ((arrayEngine != null) && (arrayEngine.getSpriteCount() > 0))
+                {
+                    addDirtyRegion(arrayEngine.step());
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues a region for repainting and, if one isn't already on its
+     * way, schedules a repaint on the event dispatch thread. Must be
+     * called while holding the sprites lock.
+     *
+     * @param sceneRegion The region to repaint in scene coordinates,
+     * may be null for nothing.
+     */
+    private void addDirtyRegion(Rectangle sceneRegion)
+    {
+        if ((sceneRegion == null) || sceneRegion.isEmpty())
+        {
+            return;
+        }
+        Rectangle region = viewport.toScreen(sceneRegion);
+
+        // MERGE WITH AN OVERLAPPING REGION SO WE DON'T PAINT TWICE
+        for (int i = 0; i < dirtyRegions.size(); i++)
+        {
+            Rectangle r = dirtyRegions.get(i);
+            if (r.intersects(region))
+            {
+                r.add(region);
+                return;
+            }
+        }
+        dirtyRegions.add(region);
+        if (!repaintPending)
+        {
+            repaintPending = true;
+            SwingUtilities.invokeLater(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    paintDirtyRegions();
+                }
+            });
+        }
+    }
+
+    /**
+     * Repaints the queued regions. Called on the event dispatch thread.
+     */
+    private void paintDirtyRegions()
+    {
+        ArrayList<Rectangle> regions;
+        synchronized (sprites)
+        {
+            regions = dirtyRegions;
+            dirtyRegions = new ArrayList<Rectangle>();
+            repaintPending = false;
+        }
+
+        // LOTS OF LITTLE REGIONS ARE CHEAPER AS ONE
+        if (regions.size() > MAX_DIRTY_REGIONS)
+        {
+            Rectangle union = new Rectangle(regions.get(0));
+            for (int i = 1; i < regions.size(); i++)
+            {
+                union.add(regions.get(i));
+            }
+            repaint(union);
+            return;
+        }
+        for (int i = 0; i < regions.size(); i++)
+        {
+            paintImmediately(regions.get(i));
+        }
+    }
+
+    /**
+     * Puts what a selected sprite is doing into words.
+     */
+    private static String describe(SpriteType spriteType, int stateHandle, int poseIndex, int imageId)
+    {
+        return spriteType.getName() + ", " + spriteType.getStates().nameOf(stateHandle)
+                + ", pose " + (poseIndex + 1) + " of " + spriteType.getPoseTimeline(stateHandle).getPoseCount()
+                + " (image " + imageId + ")";
+    }
+
+    /**
+     * Draws the sprites that overlap the area being repainted, and then
+     * the crowd, through the viewport.
+     *
+     * @param g The graphics context to draw with, clipped to the dirty area.
+     */
+    @Override
+    protected void paintComponent(Graphics g)
+    {
+        super.paintComponent(g);
+        Rectangle clip = g.getClipBounds();
+        synchronized (sprites)
+        {
+            for (int i = 0; i < sprites.size(); i++)
+            {
+                Sprite sprite = sprites.get(i);
+                Rectangle bounds = viewport.toScreen(sprite.getBounds());
+                if ((bounds == null) || ((clip != null) && !clip.intersects(bounds)))
+                {
+                    continue;
+                }
+                sprite.paint(g, viewport);
+            }
+            if (arrayEngine != null)
+            {
+                arrayEngine.paint(g, viewport, clip);
+            }
+        }
+    }
+}
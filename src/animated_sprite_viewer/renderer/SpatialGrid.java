@@ -0,0 +1,261 @@
+package animated_sprite_viewer.renderer;
+
+import java.util.Arrays;
+
+/**
+ * A SpatialGrid files sprites by where they are, so the ones in some
+ * area of the scene can be found without looking at all the others.
+ * The scene is cut into square cells and each sprite is filed under the
+ * cell its position falls in. Cells are hashed into a table of buckets,
+ * so the scene can be any size and only cells with sprites in them cost
+ * anything.
+ *
+ * Each bucket is a doubly linked list threaded through int arrays, one
+ * entry per sprite, so moving a sprite to another cell is a few array
+ * writes and nothing is allocated as sprites move about.
+ *
+ * Sprites are identified by index, as in SpriteArrayEngine. A sprite
+ * is filed by its position only, so callers widen their queries by how
+ * far a sprite's art can reach from its position.
+ *
+ * @author  Kevin Hock
+ */
+public class SpatialGrid
+{
+    // WHAT A LIST ENDS WITH
+    public static final int NONE = -1;
+
+    // CELLS ARE 1 << CELL_SHIFT PIXELS SQUARE
+    public static final int CELL_SHIFT = 6;
+
+    // THE BUCKET TABLE STARTS THIS BIG, AND DOUBLES TO STAY AT
+    // NO MORE THAN THIS MANY SPRITES PER BUCKET
+    public static final int INITIAL_BUCKETS = 1024;
+    public static final int MAX_LOAD = 2;
+
+    // THE FIRST SPRITE IN EACH BUCKET
+    private int[] bucketHeads;
+
+    // PER SPRITE: ITS NEIGHBOURS IN ITS BUCKET AND THE CELL IT'S IN
+    private int[] next;
+    private int[] prev;
+    private int[] cellXs;
+    private int[] cellYs;
+    private int spriteCount;
+
+    // WHERE QUERIES PUT WHAT THEY FIND
+    private int[] found;
+
+    /**
+     * Constructs an empty grid.
+     */
+    public SpatialGrid()
+    {
+        bucketHeads = new int[INITIAL_BUCKETS];
+        Arrays.fill(bucketHeads, NONE);
+        next = new int[SpriteArrayEngine.INITIAL_CAPACITY];
+        prev = new int[SpriteArrayEngine.INITIAL_CAPACITY];
+        cellXs = new int[SpriteArrayEngine.INITIAL_CAPACITY];
+        cellYs = new int[SpriteArrayEngine.INITIAL_CAPACITY];
+        found = new int[SpriteArrayEngine.INITIAL_CAPACITY];
+    }
+
+    // ACCESSOR METHODS
+
+    public int getSpriteCount() { return spriteCount; }
+    public int getBucketCount() { return bucketHeads.length; }
+
+    /**
+     * Accessor method for the results of the last query.
+     *
+     * @return The sprites found, in the first however many entries the
+     * query said. Overwritten by the next query.
+     */
+    public int[] getFound() { return found; }
+
+    /**
+     * Works out which cell a scene coordinate falls in.
+     *
+     * @param sceneCoordinate An x or y in scene pixels.
+     *
+     * @return The cell's column or row.
+     */
+    public static int cellOf(float sceneCoordinate)
+    {
+        return ((int)Math.floor(sceneCoordinate)) >> CELL_SHIFT;
+    }
+
+    /**
+     * Finds the sprites filed in cells that overlap a scene area.
+     *
+     * @param left The area's left edge, in scene pixels.
+     *
+     * @param top The area's top edge.
+     *
+     * @param right The area's right edge, exclusive.
+     *
+     * @param bottom The area's bottom edge, exclusive.
+     *
+     * @return How many sprites were found; they're in getFound().
+     */
+    public int query(float left, float top, float right, float bottom)
+    {
+        int cx0 = cellOf(left);
+        int cy0 = cellOf(top);
+        int cx1 = cellOf(right);
+        int cy1 = cellOf(bottom);
+        int count = 0;
+
+        // AN AREA OF MORE CELLS THAN THERE ARE BUCKETS IS QUICKER TO SCAN
+        if ((long)(cx1 - cx0 + 1) * (cy1 - cy0 + 1) > bucketHeads.length)
+        {
+            for (int sprite = 0; sprite < spriteCount; sprite++)
+            {
+                if ((cellXs[sprite] >= cx0) && (cellXs[sprite] <= cx1)
+                        && (cellYs[sprite] >= cy0) && (cellYs[sprite] <= cy1))
+                {
+                    found[count++] = sprite;
+                }
+            }
+            return count;
+        }
+        for (int cy = cy0; cy <= cy1; cy++)
+        {
+            for (int cx = cx0; cx <= cx1; cx++)
+            {
+                // A BUCKET MAY HOLD OTHER CELLS TOO, SO CHECK EACH SPRITE'S
+                for (int sprite = bucketHeads[bucketOf(cx, cy)]; sprite != NONE; sprite = next[sprite])
+                {
+                    if ((cellXs[sprite] == cx) && (cellYs[sprite] == cy))
+                    {
+                        found[count++] = sprite;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    // MUTATOR METHODS
+
+    /**
+     * Files a new sprite. Sprites must be added in index order, 0 first.
+     *
+     * @param sceneX Where the sprite is across.
+     *
+     * @param sceneY Where it is down.
+     */
+    public void add(float sceneX, float sceneY)
+    {
+        if (spriteCount == next.length)
+        {
+            int capacity = spriteCount * 2;
+            next = Arrays.copyOf(next, capacity);
+            prev = Arrays.copyOf(prev, capacity);
+            cellXs = Arrays.copyOf(cellXs, capacity);
+            cellYs = Arrays.copyOf(cellYs, capacity);
+            found = new int[capacity];
+        }
+        int sprite = spriteCount++;
+        cellXs[sprite] = cellOf(sceneX);
+        cellYs[sprite] = cellOf(sceneY);
+        if (spriteCount > bucketHeads.length * MAX_LOAD)
+        {
+            rehash(bucketHeads.length * 2);
+        }
+        else
+        {
+            link(sprite);
+        }
+    }
+
+    /**
+     * Refiles a sprite that may have moved into another cell.
+     *
+     * @param sprite The sprite's index.
+     *
+     * @param sceneX Where it is now across.
+     *
+     * @param sceneY Where it is now down.
+     */
+    public void move(int sprite, float sceneX, float sceneY)
+    {
+        int cx = cellOf(sceneX);
+        int cy = cellOf(sceneY);
+        if ((cx == cellXs[sprite]) && (cy == cellYs[sprite]))
+        {
+            return;
+        }
+        unlink(sprite);
+        cellXs[sprite] = cx;
+        cellYs[sprite] = cy;
+        link(sprite);
+    }
+
+    /**
+     * Forgets every sprite.
+     */
+    public void clear()
+    {
+        Arrays.fill(bucketHeads, NONE);
+        spriteCount = 0;
+    }
+
+    /**
+     * Hashes a cell to its bucket.
+     */
+    private int bucketOf(int cx, int cy)
+    {
+        return ((cx * 73856093) ^ (cy * 19349663)) & (bucketHeads.length - 1);
+    }
+
+    /**
+     * Puts a sprite at the head of its cell's bucket.
+     */
+    private void link(int sprite)
+    {
+        int bucket = bucketOf(cellXs[sprite], cellYs[sprite]);
+        int head = bucketHeads[bucket];
+        next[sprite] = head;
+        prev[sprite] = NONE;
+        if (head != NONE)
+        {
+            prev[head] = sprite;
+        }
+        bucketHeads[bucket] = sprite;
+    }
+
+    /**
+     * Takes a sprite out of its bucket.
+     */
+    private void unlink(int sprite)
+    {
+        if (prev[sprite] != NONE)
+        {
+            next[prev[sprite]] = next[sprite];
+        }
+        else
+        {
+            bucketHeads[bucketOf(cellXs[sprite], cellYs[sprite])] = next[sprite];
+        }
+        if (next[sprite] != NONE)
+        {
+            prev[next[sprite]] = prev[sprite];
+        }
+    }
+
+    /**
+     * Grows the bucket table and refiles every sprite.
+     *
+     * @param buckets The new number of buckets, a power of two.
+     */
+    private void rehash(int buckets)
+    {
+        bucketHeads = new int[buckets];
+        Arrays.fill(bucketHeads, NONE);
+        for (int sprite = 0; sprite < spriteCount; sprite++)
+        {
+            link(sprite);
+        }
+    }
+}
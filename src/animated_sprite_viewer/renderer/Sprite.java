@@ -0,0 +1,234 @@
+package animated_sprite_viewer.renderer;
+
+import animated_sprite_viewer.PoseTimeline;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+
+/**
+ * A Sprite is one animated, moving instance of a SpriteType in the
+ * scene. Besides its position and velocity it remembers the area it
+ * covered when it was last drawn, so that the SceneRenderer only has
+ * to repaint the places where something actually changed. For trimmed
+ * frames that area is just the part of the frame that isn't fully
+ * transparent.
+ *
+ * Its animation state is kept as a handle into its type's
+ * StateSymbolTable, so switching state is an array lookup.
+ *
+ * @author  Kevin Hock
+ */
+public class Sprite
+{
+    // WHAT THIS SPRITE LOOKS LIKE AND WHAT IT'S DOING
+    private SpriteType spriteType;
+    private int stateHandle;
+    private PoseTimeline timeline;
+
+    // WHERE IT IS AND WHERE IT'S GOING, IN PIXELS AND PIXELS PER TICK
+    private float positionX;
+    private float positionY;
+    private float velocityX;
+    private float velocityY;
+
+    // THE SCENE TICK AT WHICH THIS SPRITE'S ANIMATION STARTED
+    private long startTick;
+
+    // WHAT WE LAST DREW AND WHERE. bounds IS null UNTIL THE FIRST UPDATE
+    private int poseIndex;
+    private int imageId;
+    private Rectangle bounds;
+
+    /**
+     * Constructs a sprite of the given type, in the given state, at
+     * the origin and not moving.
+     *
+     * @param initSpriteType The type this sprite is an instance of.
+     *
+     * @param initState The animation state to start in.
+     */
+    public Sprite(SpriteType initSpriteType, String initState)
+    {
+        this(initSpriteType, initSpriteType.getStateHandle(initState));
+    }
+
+    /**
+     * Constructs a sprite of the given type, in the given state, at
+     * the origin and not moving.
+     *
+     * @param initSpriteType The type this sprite is an instance of.
+     *
+     * @param initStateHandle The handle of the animation state to start in.
+     */
+    public Sprite(SpriteType initSpriteType, int initStateHandle)
+    {
+        spriteType = initSpriteType;
+        imageId = -1;
+        setState(initStateHandle);
+    }
+
+    // ACCESSOR METHODS
+
+    public SpriteType getSpriteType() { return spriteType; }
+    public String getState() { return spriteType.getStates().nameOf(stateHandle); }
+    public int getStateHandle() { return stateHandle; }
+    public float getPositionX() { return positionX; }
+    public float getPositionY() { return positionY; }
+    public float getVelocityX() { return velocityX; }
+    public float getVelocityY() { return velocityY; }
+    public long getStartTick() { return startTick; }
+    public int getImageId() { return imageId; }
+    public int getPoseIndex() { return poseIndex; }
+    public PoseTimeline getPoseTimeline() { return timeline; }
+
+    /**
+     * Accessor method for the frame this sprite showed at its last update.
+     *
+     * @return The current frame, or null before the first update.
+     */
+    public SpriteFrame getFrame()
+    {
+        return (imageId < 0) ? null : spriteType.getFrame(imageId);
+    }
+
+    /**
+     * Accessor method for the area this sprite covered at its last update.
+     *
+     * @return The bounds in scene coordinates, or null before the first update.
+     */
+    public Rectangle getBounds() { return bounds; }
+
+    /**
+     * Tests whether a scene point hits this sprite's art as it was at
+     * its last update, transparent pixels not counting.
+     *
+     * @param sceneX The point across, in scene pixels.
+     *
+     * @param sceneY The point down.
+     *
+     * @return true if it does.
+     */
+    public boolean hits(int sceneX, int sceneY)
+    {
+        SpriteFrame frame = getFrame();
+        if ((frame == null) || (bounds == null) || !bounds.contains(sceneX, sceneY))
+        {
+            return false;
+        }
+        return frame.hits(sceneX - (bounds.x - frame.getOffsetX()), sceneY - (bounds.y - frame.getOffsetY()));
+    }
+
+    // MUTATOR METHODS
+
+    public void setPositionX(float initPositionX) { positionX = initPositionX; }
+    public void setPositionY(float initPositionY) { positionY = initPositionY; }
+    public void setVelocityX(float initVelocityX) { velocityX = initVelocityX; }
+    public void setVelocityY(float initVelocityY) { velocityY = initVelocityY; }
+    public void setStartTick(long initStartTick) { startTick = initStartTick; }
+
+    /**
+     * Switches this sprite to another animation state of its type.
+     *
+     * @param initState Name of the state, as found in the xml file.
+     */
+    public void setState(String initState)
+    {
+        int handle = spriteType.getStateHandle(initState);
+        if (handle == StateSymbolTable.NO_STATE)
+        {
+            throw new IllegalArgumentException(spriteType.getName() + " has no state " + initState);
+        }
+        setState(handle);
+    }
+
+    /**
+     * Switches this sprite to another animation state of its type.
+     *
+     * @param initStateHandle The state's handle in its type's StateSymbolTable.
+     */
+    public void setState(int initStateHandle)
+    {
+        PoseTimeline newTimeline = spriteType.getPoseTimeline(initStateHandle);
+        if (newTimeline == null)
+        {
+            throw new IllegalArgumentException(spriteType.getName() + " has no state " + initStateHandle);
+        }
+        stateHandle = initStateHandle;
+        timeline = newTimeline;
+    }
+
+    /**
+     * Draws this sprite as it was at its last update.
+     *
+     * @param g The graphics context to draw with.
+     */
+    public void paint(Graphics g)
+    {
+        SpriteFrame frame = getFrame();
+        if ((frame != null) && (bounds != null))
+        {
+            frame.draw(g, bounds.x - frame.getOffsetX(), bounds.y - frame.getOffsetY());
+        }
+    }
+
+    /**
+     * Draws this sprite as it was at its last update, through a zoomed
+     * and panned viewport.
+     *
+     * @param g The graphics context to draw with.
+     *
+     * @param viewport Maps the scene onto the screen.
+     */
+    public void paint(Graphics g, Viewport viewport)
+    {
+        SpriteFrame frame = getFrame();
+        if ((frame != null) && (bounds != null))
+        {
+            frame.drawScaled(g, viewport.toScreenX(bounds.x), viewport.toScreenY(bounds.y), viewport.getZoomLevel());
+        }
+    }
+
+    /**
+     * Moves this sprite and works out which pose it shows at the given
+     * scene tick. If either its image or its on-screen area changed, the
+     * area it used to cover and the area it now covers are returned so
+     * both can be repainted.
+     *
+     * @param sceneTick The current tick of the scene clock.
+     *
+     * @param move Whether to apply one tick's worth of velocity.
+     *
+     * @return The region to repaint, or null if nothing visible changed.
+     */
+    public Rectangle update(long sceneTick, boolean move)
+    {
+        if (move)
+        {
+            positionX += velocityX;
+            positionY += velocityY;
+        }
+
+        // WHICH POSE ARE WE IN? THE TIMELINE DOES THIS WITHOUT A WALK
+        int newPoseIndex = timeline.poseIndexAt(sceneTick - startTick);
+        int newImageId = (newPoseIndex < 0) ? -1 : timeline.getImageId(newPoseIndex);
+        poseIndex = newPoseIndex;
+        SpriteFrame frame = spriteType.getFrame(newImageId);
+        int w = (frame == null) ? 0 : frame.getWidth();
+        int h = (frame == null) ? 0 : frame.getHeight();
+        int x = (int)positionX + ((frame == null) ? 0 : frame.getOffsetX());
+        int y = (int)positionY + ((frame == null) ? 0 : frame.getOffsetY());
+
+        // SAME PICTURE IN THE SAME PLACE MEANS NOTHING TO DO
+        if ((bounds != null)
+                && (newImageId == imageId)
+                && (bounds.x == x) && (bounds.y == y)
+                && (bounds.width == w) && (bounds.height == h))
+        {
+            return null;
+        }
+        Rectangle newBounds = new Rectangle(x, y, w, h);
+        Rectangle dirty = (bounds == null) ? new Rectangle(newBounds) : bounds.union(newBounds);
+        imageId = newImageId;
+        bounds = newBounds;
+        return dirty;
+    }
+}
@@ -0,0 +1,531 @@
+package animated_sprite_viewer.renderer;
+
+import animated_sprite_viewer.PoseTimeline;
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.Iterator;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The SpriteArrayEngine animates large scenes. Rather than one Sprite
+ * object per sprite, it keeps every sprite's state in parallel arrays
+ * of primitives, one array per field: position, velocity, type and
+ * state handle, pose index, ticks left in the pose and the image id
+ * showing. A tick is then one tight loop over those arrays with no
+ * objects to chase, and big scenes are split across cores with
+ * fork-join. Painting reads straight from the arrays too.
+ *
+ * Each sprite walks its timeline with a pose cursor, counting down the
+ * ticks left in its pose, so a tick costs a decrement for most sprites
+ * and a timeline read only when a pose ends.
+ *
+ * Sprites are also filed in a SpatialGrid by position, refiled as they
+ * move. Painting asks the grid for the sprites near the area being
+ * painted and so costs what's visible, not what's in the scene, and
+ * finding the sprite at a point checks only a few candidates.
+ *
+ * Sprite types are referred to by the handle addType gives them, and
+ * states by their handles in the type's StateSymbolTable. The engine
+ * isn't thread safe; the SceneRenderer only touches it holding its lock.
+ *
+ * @author  Kevin Hock
+ */
+public class SpriteArrayEngine
+{
+    // BELOW THIS MANY SPRITES A TICK ISN'T WORTH SPLITTING UP
+    public static final int PARALLEL_THRESHOLD = 16384;
+
+    // HOW MANY SPRITES EACH FORK-JOIN TASK UPDATES, AT MOST
+    public static final int PARALLEL_CHUNK = 4096;
+
+    // HOW MANY SPRITES THE ARRAYS START WITH ROOM FOR
+    public static final int INITIAL_CAPACITY = 256;
+
+    // THE TYPES, BY TYPE HANDLE, AND EACH TYPE'S TIMELINES BY STATE HANDLE
+    private SpriteType[] types;
+    private PoseTimeline[][] timelines;
+    private int typeCount;
+
+    // ONE ENTRY PER SPRITE IN EACH ARRAY
+    private float[] x;
+    private float[] y;
+    private float[] vx;
+    private float[] vy;
+    private int[] typeHandles;
+    private int[] stateHandles;
+    private int[] poseIndices;
+    private int[] ticksLeft;
+    private int[] imageIds;
+    private int spriteCount;
+
+    // WHERE THE SPRITES ARE, AND HOW FAR RIGHT AND DOWN OF ITS POSITION
+    // ANY SPRITE'S ART CAN REACH
+    private SpatialGrid grid;
+    private int reachX;
+    private int reachY;
+
+    // WHETHER BIG TICKS GO TO THE FORK-JOIN POOL
+    private boolean parallel;
+
+    /**
+     * Constructs an empty engine that updates large scenes in parallel.
+     */
+    public SpriteArrayEngine()
+    {
+        types = new SpriteType[4];
+        timelines = new PoseTimeline[4][];
+        parallel = true;
+        grid = new SpatialGrid();
+        allocate(INITIAL_CAPACITY);
+    }
+
+    // ACCESSOR METHODS
+
+    public int getSpriteCount() { return spriteCount; }
+    public int getTypeCount() { return typeCount; }
+    public SpriteType getType(int typeHandle) { return types[typeHandle]; }
+    public boolean isParallel() { return parallel; }
+    public float getX(int sprite) { return x[sprite]; }
+    public float getY(int sprite) { return y[sprite]; }
+    public int getTypeHandle(int sprite) { return typeHandles[sprite]; }
+    public int getStateHandle(int sprite) { return stateHandles[sprite]; }
+    public int getPoseIndex(int sprite) { return poseIndices[sprite]; }
+    public int getImageId(int sprite) { return imageIds[sprite]; }
+    public SpatialGrid getGrid() { return grid; }
+
+    /**
+     * Accessor method for the frame a sprite is showing.
+     *
+     * @param sprite The sprite's index.
+     *
+     * @return Its current frame, or null if its state has no poses.
+     */
+    public SpriteFrame getFrame(int sprite)
+    {
+        return types[typeHandles[sprite]].getFrame(imageIds[sprite]);
+    }
+
+    // MUTATOR METHODS
+
+    public void setParallel(boolean initParallel) { parallel = initParallel; }
+
+    /**
+     * Adds a sprite type to the engine. The type's states are looked up
+     * now, so add it after it's fully loaded.
+     *
+     * @param spriteType The loaded sprite type.
+     *
+     * @return The handle to add sprites of this type with.
+     */
+    public int addType(SpriteType spriteType)
+    {
+        if (typeCount == types.length)
+        {
+            types = Arrays.copyOf(types, typeCount * 2);
+            timelines = Arrays.copyOf(timelines, typeCount * 2);
+        }
+        PoseTimeline[] typeTimelines = new PoseTimeline[spriteType.getStates().size()];
+        for (int handle = 0; handle < typeTimelines.length; handle++)
+        {
+            typeTimelines[handle] = spriteType.getPoseTimeline(handle);
+        }
+        types[typeCount] = spriteType;
+        timelines[typeCount] = typeTimelines;
+
+        // QUERIES MUST LOOK THIS FAR UP AND LEFT TO CATCH ALL OF ITS ART
+        Iterator<Integer> idsIt = spriteType.getImageIds().iterator();
+        while (idsIt.hasNext())
+        {
+            SpriteFrame frame = spriteType.getFrame(idsIt.next());
+            reachX = Math.max(reachX, frame.getOffsetX() + frame.getWidth());
+            reachY = Math.max(reachY, frame.getOffsetY() + frame.getHeight());
+        }
+        return typeCount++;
+    }
+
+    /**
+     * Adds a sprite, starting at the first pose of its state.
+     *
+     * @param typeHandle Its type, as returned by addType.
+     *
+     * @param stateHandle Its state's handle in the type's StateSymbolTable.
+     *
+     * @param initX Where it starts across, in scene pixels.
+     *
+     * @param initY Where it starts down, in scene pixels.
+     *
+     * @param initVx How far it moves across each tick.
+     *
+     * @param initVy How far it moves down each tick.
+     *
+     * @return The new sprite's index.
+     */
+    public int addSprite(int typeHandle, int stateHandle, float initX, float initY, float initVx, float initVy)
+    {
+        return addSprite(typeHandle, stateHandle, initX, initY, initVx, initVy, 0);
+    }
+
+    /**
+     * Adds a sprite part way through its state's animation.
+     *
+     * @param typeHandle Its type, as returned by addType.
+     *
+     * @param stateHandle Its state's handle in the type's StateSymbolTable.
+     *
+     * @param initX Where it starts across, in scene pixels.
+     *
+     * @param initY Where it starts down, in scene pixels.
+     *
+     * @param initVx How far it moves across each tick.
+     *
+     * @param initVy How far it moves down each tick.
+     *
+     * @param startOffset How many ticks into its animation it starts.
+     *
+     * @return The new sprite's index.
+     */
+    public int addSprite(int typeHandle, int stateHandle, float initX, float initY, float initVx, float initVy,
+                         long startOffset)
+    {
+        if ((typeHandle < 0) || (typeHandle >= typeCount))
+        {
+            throw new IllegalArgumentException("No sprite type with handle " + typeHandle);
+        }
+        if (spriteCount == x.length)
+        {
+            allocate(spriteCount * 2);
+        }
+        int sprite = spriteCount++;
+        x[sprite] = initX;
+        y[sprite] = initY;
+        vx[sprite] = initVx;
+        vy[sprite] = initVy;
+        typeHandles[sprite] = typeHandle;
+        grid.add(initX, initY);
+        setState(sprite, stateHandle);
+        if (startOffset != 0)
+        {
+            PoseTimeline timeline = timelines[typeHandle][stateHandle];
+            if (timeline.getPoseCount() > 0)
+            {
+                startPose(sprite, timeline, timeline.poseIndexAt(startOffset));
+                ticksLeft[sprite] = (int)timeline.ticksRemainingAt(startOffset);
+            }
+        }
+        return sprite;
+    }
+
+    /**
+     * Switches a sprite to another state of its type, at that state's
+     * first pose.
+     *
+     * @param sprite The sprite's index.
+     *
+     * @param stateHandle The state's handle in the type's StateSymbolTable.
+     */
+    public void setState(int sprite, int stateHandle)
+    {
+        PoseTimeline[] typeTimelines = timelines[typeHandles[sprite]];
+        if ((stateHandle < 0) || (stateHandle >= typeTimelines.length) || (typeTimelines[stateHandle] == null))
+        {
+            throw new IllegalArgumentException(types[typeHandles[sprite]].getName() + " has no state " + stateHandle);
+        }
+        stateHandles[sprite] = stateHandle;
+        startPose(sprite, typeTimelines[stateHandle], 0);
+    }
+
+    /**
+     * Sets where a sprite is going.
+     *
+     * @param sprite The sprite's index.
+     *
+     * @param initVx How far it moves across each tick.
+     *
+     * @param initVy How far it moves down each tick.
+     */
+    public void setVelocity(int sprite, float initVx, float initVy)
+    {
+        vx[sprite] = initVx;
+        vy[sprite] = initVy;
+    }
+
+    /**
+     * Removes every sprite, keeping the types and the arrays' room.
+     */
+    public void clearSprites()
+    {
+        spriteCount = 0;
+        grid.clear();
+    }
+
+    /**
+     * Advances every sprite by one tick, in parallel if there are enough
+     * of them, parallel updates are on and there are cores to share,
+     * then refiles the ones that moved to another cell.
+     *
+     * @return The scene area needing a repaint, around where every sprite
+     * that moved a whole pixel or changed pose was and now is, or null if
+     * none did.
+     */
+    public Rectangle step()
+    {
+        Rectangle dirty;
+        if (parallel && (spriteCount >= PARALLEL_THRESHOLD) && (ForkJoinPool.getCommonPoolParallelism() > 1))
+        {
+            UpdateTask task = new UpdateTask(0, spriteCount);
+            ForkJoinPool.commonPool().invoke(task);
+            dirty = task.dirty;
+        }
+        else
+        {
+            dirty = update(0, spriteCount);
+        }
+        for (int i = 0; i < spriteCount; i++)
+        {
+            grid.move(i, x[i], y[i]);
+        }
+        return dirty;
+    }
+
+    /**
+     * Finds the sprite drawn on top at a scene point. Transparent pixels
+     * don't count, so a point can go through one sprite to the one below.
+     *
+     * @param sceneX The point across, in scene pixels.
+     *
+     * @param sceneY The point down.
+     *
+     * @return The sprite's index, or -1 if there's none there.
+     */
+    public int spriteAt(int sceneX, int sceneY)
+    {
+        int count = grid.query(sceneX - reachX, sceneY - reachY, sceneX + 1, sceneY + 1);
+        int[] candidates = grid.getFound();
+        int top = -1;
+        for (int k = 0; k < count; k++)
+        {
+            int i = candidates[k];
+            SpriteFrame frame = types[typeHandles[i]].getFrame(imageIds[i]);
+            if ((i < top) || (frame == null))
+            {
+                continue;
+            }
+            if (frame.hits(sceneX - (int)x[i], sceneY - (int)y[i]))
+            {
+                top = i;
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Draws every sprite that shows within the clip, through a viewport,
+     * in the order they were added. Only the sprites the grid finds near
+     * the clip are looked at.
+     *
+     * @param g The graphics context to draw with.
+     *
+     * @param viewport Maps the scene onto the screen.
+     *
+     * @param clip The screen area being repainted, or null for all of it.
+     *
+     * @return How many sprites were drawn.
+     */
+    public int paint(Graphics g, Viewport viewport, Rectangle clip)
+    {
+        double scale = viewport.getScale();
+        int zoomLevel = viewport.getZoomLevel();
+        int count = spriteCount;
+        int[] candidates = null;
+        if (clip != null)
+        {
+            Point topLeft = viewport.toScene(new Point(clip.x, clip.y));
+            Point bottomRight = viewport.toScene(new Point(clip.x + clip.width, clip.y + clip.height));
+            count = grid.query(topLeft.x - reachX, topLeft.y - reachY, bottomRight.x + 1, bottomRight.y + 1);
+            candidates = grid.getFound();
+            Arrays.sort(candidates, 0, count);
+        }
+        int drawn = 0;
+        for (int k = 0; k < count; k++)
+        {
+            int i = (candidates == null) ? k : candidates[k];
+            SpriteFrame frame = types[typeHandles[i]].getFrame(imageIds[i]);
+            if (frame == null)
+            {
+                continue;
+            }
+            int screenX = viewport.toScreenX((int)x[i] + frame.getOffsetX());
+            int screenY = viewport.toScreenY((int)y[i] + frame.getOffsetY());
+            if ((clip != null)
+                    && ((screenX >= clip.x + clip.width) || (screenY >= clip.y + clip.height)
+                        || (screenX + (int)Math.ceil(frame.getWidth() * scale) <= clip.x)
+                        || (screenY + (int)Math.ceil(frame.getHeight() * scale) <= clip.y)))
+            {
+                continue;
+            }
+            frame.drawScaled(g, screenX, screenY, zoomLevel);
+            drawn++;
+        }
+        return drawn;
+    }
+
+    /**
+     * Advances one range of sprites by a tick. This is the loop
+     * everything else is arranged around.
+     *
+     * @param from The first sprite to update.
+     *
+     * @param to One past the last sprite to update.
+     *
+     * @return The scene area the range's changes cover, or null if no
+     * sprite in it looks any different.
+     */
+    private Rectangle update(int from, int to)
+    {
+        // MIN X, MIN Y, MAX X AND MAX Y OF EVERYTHING THAT CHANGED
+        int[] box = { Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE };
+        for (int i = from; i < to; i++)
+        {
+            int oldX = (int)x[i];
+            int oldY = (int)y[i];
+            int oldImageId = imageIds[i];
+            x[i] += vx[i];
+            y[i] += vy[i];
+            if (--ticksLeft[i] <= 0)
+            {
+                PoseTimeline timeline = timelines[typeHandles[i]][stateHandles[i]];
+                int next = poseIndices[i] + 1;
+                startPose(i, timeline, (next < timeline.getPoseCount()) ? next : 0);
+            }
+
+            // SAME PICTURE IN THE SAME PLACE MEANS NOTHING TO REPAINT
+            if ((oldImageId == imageIds[i]) && (oldX == (int)x[i]) && (oldY == (int)y[i]))
+            {
+                continue;
+            }
+            SpriteType type = types[typeHandles[i]];
+            include(box, type.getFrame(oldImageId), oldX, oldY);
+            include(box, type.getFrame(imageIds[i]), (int)x[i], (int)y[i]);
+        }
+        return (box[2] < box[0]) ? null : new Rectangle(box[0], box[1], box[2] - box[0], box[3] - box[1]);
+    }
+
+    /**
+     * Grows a bounding box to take in a frame drawn at a position.
+     *
+     * @param box Min x, min y, max x and max y, in scene pixels.
+     *
+     * @param frame The frame, or null for nothing.
+     *
+     * @param sceneX Where the sprite is across.
+     *
+     * @param sceneY Where the sprite is down.
+     */
+    private static void include(int[] box, SpriteFrame frame, int sceneX, int sceneY)
+    {
+        if (frame == null)
+        {
+            return;
+        }
+        int left = sceneX + frame.getOffsetX();
+        int top = sceneY + frame.getOffsetY();
+        box[0] = Math.min(box[0], left);
+        box[1] = Math.min(box[1], top);
+        box[2] = Math.max(box[2], left + frame.getWidth());
+        box[3] = Math.max(box[3], top + frame.getHeight());
+    }
+
+    /**
+     * Joins two dirty areas, either of which may be null.
+     */
+    private static Rectangle union(Rectangle a, Rectangle b)
+    {
+        if (a == null)
+        {
+            return b;
+        }
+        return (b == null) ? a : a.union(b);
+    }
+
+    /**
+     * Puts a sprite at the start of one of its timeline's poses.
+     *
+     * @param sprite The sprite's index.
+     *
+     * @param timeline Its state's timeline.
+     *
+     * @param poseIndex The pose to show.
+     */
+    private void startPose(int sprite, PoseTimeline timeline, int poseIndex)
+    {
+        if (timeline.getPoseCount() == 0)
+        {
+            // NOTHING TO SHOW, EVER
+            poseIndices[sprite] = 0;
+            ticksLeft[sprite] = Integer.MAX_VALUE;
+            imageIds[sprite] = -1;
+            return;
+        }
+        poseIndices[sprite] = poseIndex;
+        ticksLeft[sprite] = timeline.getDuration(poseIndex);
+        imageIds[sprite] = timeline.getImageId(poseIndex);
+    }
+
+    /**
+     * Makes room for more sprites, keeping the ones we have.
+     *
+     * @param capacity How many sprites to make room for.
+     */
+    private void allocate(int capacity)
+    {
+        x = (x == null) ? new float[capacity] : Arrays.copyOf(x, capacity);
+        y = (y == null) ? new float[capacity] : Arrays.copyOf(y, capacity);
+        vx = (vx == null) ? new float[capacity] : Arrays.copyOf(vx, capacity);
+        vy = (vy == null) ? new float[capacity] : Arrays.copyOf(vy, capacity);
+        typeHandles = (typeHandles == null) ? new int[capacity] : Arrays.copyOf(typeHandles, capacity);
+        stateHandles = (stateHandles == null) ? new int[capacity] : Arrays.copyOf(stateHandles, capacity);
+        poseIndices = (poseIndices == null) ? new int[capacity] : Arrays.copyOf(poseIndices, capacity);
+        ticksLeft = (ticksLeft == null) ? new int[capacity] : Arrays.copyOf(ticksLeft, capacity);
+        imageIds = (imageIds == null) ? new int[capacity] : Arrays.copyOf(imageIds, capacity);
+    }
+
+    /**
+     * Updates a range of sprites, splitting it in half until the pieces
+     * are small enough to loop over, and joins the halves' dirty areas.
+     */
+    private class UpdateTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        // THE RANGE, FROM INCLUSIVE TO EXCLUSIVE
+        private int from;
+        private int to;
+
+        // WHAT THE RANGE'S CHANGES COVER, ONCE IT'S DONE
+        private Rectangle dirty;
+
+        public UpdateTask(int initFrom, int initTo)
+        {
+            from = initFrom;
+            to = initTo;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from <= PARALLEL_CHUNK)
+            {
+                dirty = update(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            UpdateTask left = new UpdateTask(from, mid);
+            UpdateTask right = new UpdateTask(mid, to);
+            invokeAll(left, right);
+            dirty = union(left.dirty, right.dirty);
+        }
+    }
+}
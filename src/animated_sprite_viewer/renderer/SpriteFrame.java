@@ -0,0 +1,237 @@
+package animated_sprite_viewer.renderer;
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.lang.ref.SoftReference;
+
+/**
+ * A SpriteFrame is one image of a sprite type, ready to be drawn. The
+ * renderer never draws a sprite's Image directly, it asks the frame to
+ * draw itself, which leaves each frame free to keep its pixels in
+ * whatever form is cheapest to blit.
+ *
+ * A frame may also have been trimmed down to the part of the original
+ * art that isn't fully transparent. It then remembers where that part
+ * sat within the original (its offset) and how big the original was,
+ * and draws itself at the offset, so the result is pixel for pixel
+ * what drawing the original would have given, while fewer pixels are
+ * stored and blitted.
+ *
+ * When the viewport is zoomed, a frame draws from a copy prescaled to
+ * the zoom level, made the first time that level is drawn: nearest
+ * neighbour when zooming in, so pixel art stays crisp, and repeated
+ * halving when zooming out, like a mipmap chain. The copies are softly
+ * held, so they go if memory gets tight and are simply made again.
+ *
+ * Frames loaded by the SpriteTypeLoader also carry an OpaqueMask of
+ * their pixels, so clicks can be tested against the art itself.
+ *
+ * @author  Kevin Hock
+ */
+public class SpriteFrame
+{
+    // WHAT WE DRAW, AND HOW BIG IT IS
+    protected Image image;
+    protected int width;
+    protected int height;
+
+    // WHERE THE IMAGE SITS WITHIN THE UNTRIMMED ART, AND HOW BIG THAT WAS
+    protected int offsetX;
+    protected int offsetY;
+    protected int sourceWidth;
+    protected int sourceHeight;
+
+    // WHICH PIXELS OF image AREN'T TRANSPARENT, IF WE KNOW
+    protected OpaqueMask opaqueMask;
+
+    // PRESCALED COPIES, BY ZOOM LEVEL LESS Viewport.MIN_ZOOM_LEVEL
+    private SoftReference<BufferedImage>[] scaledLevels;
+
+    /**
+     * Constructs a frame that draws the given image as it is. Note that
+     * the image should be fully loaded.
+     *
+     * @param initImage The frame's image.
+     */
+    public SpriteFrame(Image initImage)
+    {
+        this(initImage, 0, 0, Math.max(initImage.getWidth(null), 0), Math.max(initImage.getHeight(null), 0));
+    }
+
+    /**
+     * Constructs a frame for art that was trimmed down to initImage.
+     *
+     * @param initImage The frame's image, what's left after trimming.
+     *
+     * @param initOffsetX Where the image's left edge was in the untrimmed art.
+     *
+     * @param initOffsetY Where the image's top edge was in the untrimmed art.
+     *
+     * @param initSourceWidth Width of the untrimmed art.
+     *
+     * @param initSourceHeight Height of the untrimmed art.
+     */
+    public SpriteFrame(Image initImage, int initOffsetX, int initOffsetY,
+                       int initSourceWidth, int initSourceHeight)
+    {
+        image = initImage;
+        width = Math.max(initImage.getWidth(null), 0);
+        height = Math.max(initImage.getHeight(null), 0);
+        offsetX = initOffsetX;
+        offsetY = initOffsetY;
+        sourceWidth = initSourceWidth;
+        sourceHeight = initSourceHeight;
+    }
+
+    // ACCESSOR METHODS
+
+    public Image getImage() { return image; }
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public int getOffsetX() { return offsetX; }
+    public int getOffsetY() { return offsetY; }
+    public int getSourceWidth() { return sourceWidth; }
+    public int getSourceHeight() { return sourceHeight; }
+    public OpaqueMask getOpaqueMask() { return opaqueMask; }
+
+    /**
+     * Tests whether a point hits this frame's art.
+     *
+     * @param x The point across, from the untrimmed art's left edge.
+     *
+     * @param y The point down, from the untrimmed art's top edge.
+     *
+     * @return true if the pixel there isn't transparent. Without a mask
+     * any point in the trimmed image counts.
+     */
+    public boolean hits(int x, int y)
+    {
+        int imageX = x - offsetX;
+        int imageY = y - offsetY;
+        if (opaqueMask == null)
+        {
+            return (imageX >= 0) && (imageY >= 0) && (imageX < width) && (imageY < height);
+        }
+        return opaqueMask.isOpaque(imageX, imageY);
+    }
+
+    /**
+     * Estimates how much memory this frame's pixels take up, at four
+     * bytes per pixel.
+     *
+     * @return The estimated size in bytes.
+     */
+    public long getByteSize()
+    {
+        return 4L * width * height;
+    }
+
+    // MUTATOR METHODS
+
+    public void setOpaqueMask(OpaqueMask initOpaqueMask) { opaqueMask = initOpaqueMask; }
+
+    /**
+     * Draws this frame with the top left corner of its untrimmed art at
+     * the given location.
+     *
+     * @param g The graphics context to draw with.
+     *
+     * @param x Where the untrimmed art's left edge goes.
+     *
+     * @param y Where the untrimmed art's top edge goes.
+     */
+    public void draw(Graphics g, int x, int y)
+    {
+        g.drawImage(image, x + offsetX, y + offsetY, null);
+    }
+
+    /**
+     * Draws this frame at a zoom level from its prescaled copy. At the
+     * unzoomed level this is just draw.
+     *
+     * @param g The graphics context to draw with.
+     *
+     * @param screenX Where the trimmed image's left edge goes.
+     *
+     * @param screenY Where the trimmed image's top edge goes.
+     *
+     * @param zoomLevel The viewport's zoom level.
+     */
+    public void drawScaled(Graphics g, int screenX, int screenY, int zoomLevel)
+    {
+        if (zoomLevel == 0)
+        {
+            draw(g, screenX - offsetX, screenY - offsetY);
+            return;
+        }
+        if ((width == 0) || (height == 0))
+        {
+            return;
+        }
+        g.drawImage(getScaledImage(zoomLevel, ((Graphics2D)g).getDeviceConfiguration()), screenX, screenY, null);
+    }
+
+    /**
+     * Gets this frame's copy for a zoom level, making it (and, when
+     * zoomed out, the levels in between) if it isn't cached. Only called
+     * from the painting thread.
+     *
+     * @param zoomLevel The zoom level, not 0.
+     *
+     * @param gc The screen the copy will be drawn on.
+     *
+     * @return The prescaled copy.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private BufferedImage getScaledImage(int zoomLevel, GraphicsConfiguration gc)
+    {
+        if (scaledLevels == null)
+        {
+            scaledLevels = new SoftReference[Viewport.MAX_ZOOM_LEVEL - Viewport.MIN_ZOOM_LEVEL + 1];
+        }
+        int slot = zoomLevel - Viewport.MIN_ZOOM_LEVEL;
+        SoftReference<BufferedImage> ref = scaledLevels[slot];
+        BufferedImage scaled = (ref == null) ? null : ref.get();
+        if (scaled != null)
+        {
+            return scaled;
+        }
+
+        // ZOOMING IN SCALES THE FRAME ITSELF, ZOOMING OUT HALVES THE NEXT LEVEL UP
+        Image from;
+        int w;
+        int h;
+        if (zoomLevel > 0)
+        {
+            from = image;
+            w = width << zoomLevel;
+            h = height << zoomLevel;
+        }
+        else
+        {
+            from = (zoomLevel == -1) ? image : getScaledImage(zoomLevel + 1, gc);
+            w = Math.max(1, (from.getWidth(null) + 1) / 2);
+            h = Math.max(1, (from.getHeight(null) + 1) / 2);
+        }
+        scaled = gc.createCompatibleImage(w, h, Transparency.TRANSLUCENT);
+        Graphics2D g2 = scaled.createGraphics();
+        try
+        {
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, (zoomLevel > 0)
+                    ? RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR
+                    : RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2.drawImage(from, 0, 0, w, h, null);
+        }
+        finally
+        {
+            g2.dispose();
+        }
+        scaledLevels[slot] = new SoftReference<BufferedImage>(scaled);
+        return scaled;
+    }
+}
@@ -0,0 +1,173 @@
+package animated_sprite_viewer.renderer;
+
+import animated_sprite_viewer.PoseTimeline;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The SpriteType class stores everything that is shared by all
+ * sprites of one type: the frames, keyed by the image ids used in the
+ * sprite type xml file, and one PoseTimeline per animation state,
+ * indexed by the state's handle in the type's StateSymbolTable.
+ * Sprites only keep a reference to their type, so any number of
+ * them can share one set of loaded frames. Several image ids may share
+ * one frame, when their pixels are identical.
+ *
+ * A type may also list colour variants of itself, which are built from
+ * its loaded frames on demand; see SpriteVariant.
+ *
+ * @author  Kevin Hock
+ */
+public class SpriteType
+{
+    // NAME OF THE TYPE, AS LISTED IN sprite_type_list.xml
+    private String name;
+
+    // ALL THE ART FOR THIS TYPE
+    private HashMap<Integer, SpriteFrame> frames;
+
+    // THE ANIMATION STATES, IN THE ORDER THE XML FILE LISTS THEM, AND
+    // THEIR POSES BY STATE HANDLE
+    private StateSymbolTable states;
+    private ArrayList<PoseTimeline> poseTimelines;
+
+    // THE COLOUR VARIANTS, IN THE ORDER THE XML FILE LISTS THEM
+    private ArrayList<String> variantNames;
+    private HashMap<String, SpriteVariant> variants;
+
+    /**
+     * Constructs an empty sprite type. Frames and animation states
+     * are added afterwards as they are loaded.
+     *
+     * @param initName Name of this sprite type.
+     */
+    public SpriteType(String initName)
+    {
+        this(initName, new StateSymbolTable());
+    }
+
+    /**
+     * Constructs an empty sprite type whose states are named by another
+     * type's table, as a colour variant's are by its base type's.
+     *
+     * @param initName Name of this sprite type.
+     *
+     * @param initStates The table to add this type's states to.
+     */
+    public SpriteType(String initName, StateSymbolTable initStates)
+    {
+        name = initName;
+        frames = new HashMap<Integer, SpriteFrame>();
+        states = initStates;
+        poseTimelines = new ArrayList<PoseTimeline>();
+        variantNames = new ArrayList<String>();
+        variants = new HashMap<String, SpriteVariant>();
+    }
+
+    // ACCESSOR METHODS
+
+    public String getName() { return name; }
+    public SpriteFrame getFrame(int imageId) { return frames.get(imageId); }
+    public StateSymbolTable getStates() { return states; }
+    public List<String> getStateNames() { return states.getNames(); }
+    public int getStateHandle(String state) { return states.handleOf(state); }
+    public PoseTimeline getPoseTimeline(String state) { return getPoseTimeline(states.handleOf(state)); }
+
+    /**
+     * Accessor method for the poses of one animation state.
+     *
+     * @param stateHandle The state's handle in this type's StateSymbolTable.
+     *
+     * @return The state's timeline, or null if this type has no such state.
+     */
+    public PoseTimeline getPoseTimeline(int stateHandle)
+    {
+        if ((stateHandle < 0) || (stateHandle >= poseTimelines.size()))
+        {
+            return null;
+        }
+        return poseTimelines.get(stateHandle);
+    }
+    public Set<Integer> getImageIds() { return frames.keySet(); }
+    public ArrayList<String> getVariantNames() { return variantNames; }
+    public SpriteVariant getVariant(String variantName) { return variants.get(variantName); }
+
+    /**
+     * Estimates how much memory this type's frames and their opaque
+     * masks take up. This is what caches charge it against their memory
+     * budget. A frame shared by several image ids is only counted once.
+     *
+     * @return The estimated size in bytes.
+     */
+    public long getByteSize()
+    {
+        long bytes = 0;
+        IdentityHashMap<SpriteFrame, Boolean> counted = new IdentityHashMap<SpriteFrame, Boolean>();
+        Iterator<SpriteFrame> it = frames.values().iterator();
+        while (it.hasNext())
+        {
+            SpriteFrame frame = it.next();
+            if (counted.put(frame, Boolean.TRUE) == null)
+            {
+                bytes += frame.getByteSize();
+                if (frame.getOpaqueMask() != null)
+                {
+                    bytes += frame.getOpaqueMask().getByteSize();
+                }
+            }
+        }
+        return bytes;
+    }
+
+    // MUTATOR METHODS
+
+    /**
+     * Adds a frame to this sprite type.
+     *
+     * @param imageId The id poses use to refer to this frame.
+     *
+     * @param frame The frame itself.
+     */
+    public void addFrame(int imageId, SpriteFrame frame)
+    {
+        frames.put(imageId, frame);
+    }
+
+    /**
+     * Adds an animation state to this sprite type.
+     *
+     * @param state Name of the state, as found in the xml file.
+     *
+     * @param timeline The poses of that state.
+     *
+     * @return The state's handle.
+     */
+    public int addPoseTimeline(String state, PoseTimeline timeline)
+    {
+        int handle = states.add(state);
+        while (poseTimelines.size() <= handle)
+        {
+            poseTimelines.add(null);
+        }
+        poseTimelines.set(handle, timeline);
+        return handle;
+    }
+
+    /**
+     * Adds a colour variant to this sprite type.
+     *
+     * @param variant The variant, as described in the xml file.
+     */
+    public void addVariant(SpriteVariant variant)
+    {
+        if (!variants.containsKey(variant.getName()))
+        {
+            variantNames.add(variant.getName());
+        }
+        variants.put(variant.getName(), variant);
+    }
+}
@@ -0,0 +1,218 @@
+package animated_sprite_viewer.renderer;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.awt.image.RescaleOp;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+
+/**
+ * A SpriteVariant is a recolouring of a sprite type, a team colour or
+ * a tint, as listed in the variants_list of its xml file. A variant is
+ * made from the base type's frames once they're loaded, rather than from
+ * a copy of its art on disk: colour swaps replace exact colours
+ * (keeping each pixel's alpha), then the tint scales each channel with
+ * a RescaleOp.
+ *
+ * Indexed frames are the cheap case. Only their palette is recoloured,
+ * and the variant's frames share the base frames' pixel bytes.
+ *
+ * @author  Kevin Hock
+ */
+public class SpriteVariant
+{
+    // WHAT SEPARATES A TYPE'S NAME FROM A VARIANT'S IN A VARIANT TYPE'S NAME
+    public static final String NAME_SEPARATOR = "#";
+
+    // THE VARIANT'S NAME, AS FOUND IN THE XML FILE
+    private String name;
+
+    // RGB TO RGB, APPLIED BEFORE THE TINT
+    private HashMap<Integer, Integer> colourSwaps;
+
+    // SCALES RED, GREEN, BLUE AND ALPHA, OR null FOR NO TINT
+    private RescaleOp tint;
+
+    /**
+     * Constructs a variant that doesn't change anything yet.
+     *
+     * @param initName Name of the variant.
+     */
+    public SpriteVariant(String initName)
+    {
+        name = initName;
+        colourSwaps = new HashMap<Integer, Integer>();
+    }
+
+    // ACCESSOR METHODS
+
+    public String getName() { return name; }
+
+    // MUTATOR METHODS
+
+    /**
+     * Makes this variant replace one colour with another.
+     *
+     * @param fromRgb The colour to replace, as 0xRRGGBB.
+     *
+     * @param toRgb The colour to replace it with, as 0xRRGGBB.
+     */
+    public void addColourSwap(int fromRgb, int toRgb)
+    {
+        colourSwaps.put(fromRgb & 0xffffff, toRgb & 0xffffff);
+    }
+
+    /**
+     * Makes this variant scale each channel by a factor, clamping the
+     * results to the channel's range.
+     *
+     * @param red Factor for the red channel.
+     * @param green Factor for the green channel.
+     * @param blue Factor for the blue channel.
+     * @param alpha Factor for the alpha channel.
+     */
+    public void setTint(float red, float green, float blue, float alpha)
+    {
+        tint = new RescaleOp(new float[] { red, green, blue, alpha }, new float[4], null);
+    }
+
+    /**
+     * Builds this variant of a sprite type. The variant shares the base
+     * type's timelines and state handles, and frames the base type shares between image
+     * ids are shared in the variant too.
+     *
+     * @param base The loaded sprite type to recolour.
+     *
+     * @param converter Prepares recoloured frames for the screen.
+     *
+     * @return The variant type, named base#variant.
+     */
+    public SpriteType applyTo(SpriteType base, FrameConverter converter)
+    {
+        SpriteType variantType = new SpriteType(base.getName() + NAME_SEPARATOR + name, base.getStates());
+        for (int handle = 0; handle < base.getStates().size(); handle++)
+        {
+            variantType.addPoseTimeline(base.getStates().nameOf(handle), base.getPoseTimeline(handle));
+        }
+        for (int i = 0; i < base.getVariantNames().size(); i++)
+        {
+            variantType.addVariant(base.getVariant(base.getVariantNames().get(i)));
+        }
+
+        // EACH DISTINCT FRAME AND EACH SHARED PALETTE IS RECOLOURED ONCE
+        IdentityHashMap<SpriteFrame, SpriteFrame> recolouredFrames = new IdentityHashMap<SpriteFrame, SpriteFrame>();
+        IdentityHashMap<IndexColorModel, IndexColorModel> recolouredPalettes = new IdentityHashMap<IndexColorModel, IndexColorModel>();
+        Iterator<Integer> idsIt = base.getImageIds().iterator();
+        while (idsIt.hasNext())
+        {
+            int id = idsIt.next();
+            SpriteFrame frame = base.getFrame(id);
+            SpriteFrame recoloured = recolouredFrames.get(frame);
+            if (recoloured == null)
+            {
+                recoloured = recolour(frame, converter, recolouredPalettes);
+                recolouredFrames.put(frame, recoloured);
+            }
+            variantType.addFrame(id, recoloured);
+        }
+        return variantType;
+    }
+
+    /**
+     * Recolours one frame, keeping its offsets.
+     *
+     * @param frame The base type's frame.
+     *
+     * @param converter Prepares the recoloured frame for the screen.
+     *
+     * @param recolouredPalettes Palettes already recoloured, so frames
+     * that shared a palette still share one.
+     *
+     * @return The recoloured frame.
+     */
+    private SpriteFrame recolour(SpriteFrame frame, FrameConverter converter,
+                                 IdentityHashMap<IndexColorModel, IndexColorModel> recolouredPalettes)
+    {
+        BufferedImage img = (BufferedImage)frame.getImage();
+        if (frame instanceof IndexedSpriteFrame)
+        {
+            // SAME PIXEL BYTES, NEW PALETTE
+            IndexColorModel palette = (IndexColorModel)img.getColorModel();
+            IndexColorModel newPalette = recolouredPalettes.get(palette);
+            if (newPalette == null)
+            {
+                int[] colours = new int[palette.getMapSize()];
+                palette.getRGBs(colours);
+                colours = recolour(colours);
+                newPalette = new IndexColorModel(8, colours.length, colours, 0, true, -1, DataBuffer.TYPE_BYTE);
+                recolouredPalettes.put(palette, newPalette);
+            }
+            BufferedImage recoloured = new BufferedImage(newPalette, img.getRaster(), false, null);
+            IndexedSpriteFrame indexed = new IndexedSpriteFrame(recoloured, frame, converter, 4L * newPalette.getMapSize());
+            indexed.setOpaqueMask(maskOf(frame, recoloured));
+            return indexed;
+        }
+        int w = img.getWidth();
+        int h = img.getHeight();
+        BufferedImage recoloured = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        recoloured.setRGB(0, 0, w, h, recolour(img.getRGB(0, 0, w, h, null, 0, w)), 0, w);
+        SpriteFrame converted = converter.convert(new SpriteFrame(recoloured, frame.getOffsetX(), frame.getOffsetY(),
+                                                                  frame.getSourceWidth(), frame.getSourceHeight()));
+        converted.setOpaqueMask(maskOf(frame, recoloured));
+        return converted;
+    }
+
+    /**
+     * Works out a recoloured frame's opaque mask. Colour swaps keep
+     * alpha, so without a tint it's the base frame's.
+     *
+     * @param frame The base type's frame.
+     *
+     * @param recoloured The recoloured image.
+     *
+     * @return The mask, or null if the base frame has none.
+     */
+    private OpaqueMask maskOf(SpriteFrame frame, BufferedImage recoloured)
+    {
+        if ((tint == null) || (frame.getOpaqueMask() == null))
+        {
+            return frame.getOpaqueMask();
+        }
+        return OpaqueMask.of(recoloured);
+    }
+
+    /**
+     * Recolours a run of ARGB colours: first the colour swaps, keeping
+     * each pixel's alpha, then the tint.
+     *
+     * @param argb The colours to recolour.
+     *
+     * @return The recoloured colours, in a new array.
+     */
+    public int[] recolour(int[] argb)
+    {
+        int[] result = argb.clone();
+        if (!colourSwaps.isEmpty())
+        {
+            for (int i = 0; i < result.length; i++)
+            {
+                Integer to = colourSwaps.get(result[i] & 0xffffff);
+                if (to != null)
+                {
+                    result[i] = (result[i] & 0xff000000) | to.intValue();
+                }
+            }
+        }
+        if ((tint != null) && (result.length > 0))
+        {
+            // THE COLOURS AS A ONE ROW IMAGE, FOR THE RescaleOp
+            BufferedImage row = new BufferedImage(result.length, 1, BufferedImage.TYPE_INT_ARGB);
+            row.setRGB(0, 0, result.length, 1, result, 0, result.length);
+            BufferedImage tinted = tint.filter(row, null);
+            tinted.getRGB(0, 0, result.length, 1, result, 0, result.length);
+        }
+        return result;
+    }
+}
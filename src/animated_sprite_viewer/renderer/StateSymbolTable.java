@@ -0,0 +1,88 @@
+package animated_sprite_viewer.renderer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A StateSymbolTable gives each animation state name of a sprite type a
+ * dense int handle, 0, 1, 2 and so on in the order the xml file lists
+ * them. The names are hashed once, while the type loads; from then on
+ * poses are found and sprites switch state by handle, which is just an
+ * array index. Any name the xml file uses is a state.
+ *
+ * A colour variant shares its base type's table, so a handle means the
+ * same state in every variant of a type.
+ *
+ * @author  Kevin Hock
+ */
+public class StateSymbolTable
+{
+    // WHAT handleOf GIVES FOR A NAME THAT ISN'T A STATE
+    public static final int NO_STATE = -1;
+
+    // HANDLE TO NAME AND NAME TO HANDLE
+    private ArrayList<String> names;
+    private HashMap<String, Integer> handles;
+
+    /**
+     * Constructs an empty table.
+     */
+    public StateSymbolTable()
+    {
+        names = new ArrayList<String>();
+        handles = new HashMap<String, Integer>();
+    }
+
+    // ACCESSOR METHODS
+
+    public int size() { return names.size(); }
+    public List<String> getNames() { return Collections.unmodifiableList(names); }
+
+    /**
+     * Accessor method for the name behind a handle.
+     *
+     * @param handle A handle from this table.
+     *
+     * @return The state's name.
+     */
+    public String nameOf(int handle)
+    {
+        return names.get(handle);
+    }
+
+    /**
+     * Looks up the handle of a state name.
+     *
+     * @param name Name of the state, as found in the xml file.
+     *
+     * @return Its handle, or NO_STATE if there's no such state.
+     */
+    public int handleOf(String name)
+    {
+        Integer handle = handles.get(name);
+        return (handle == null) ? NO_STATE : handle.intValue();
+    }
+
+    // MUTATOR METHODS
+
+    /**
+     * Adds a state name, unless it's already in the table.
+     *
+     * @param name Name of the state, as found in the xml file.
+     *
+     * @return The name's handle, new or existing.
+     */
+    public int add(String name)
+    {
+        Integer handle = handles.get(name);
+        if (handle == null)
+        {
+            handle = names.size();
+            names.add(name);
+            handles.put(name, handle);
+        }
+        return handle.intValue();
+    }
+}
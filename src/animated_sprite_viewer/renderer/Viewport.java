@@ -0,0 +1,160 @@
+package animated_sprite_viewer.renderer;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+
+/**
+ * The Viewport maps scene coordinates onto the SceneRenderer panel. It
+ * zooms in powers of two, so every frame can be drawn from one of a
+ * small set of prescaled copies instead of being rescaled on every
+ * blit, and pans by a screen-space offset.
+ *
+ * A scene point p appears on screen at p * scale + pan.
+ *
+ * @author  Kevin Hock
+ */
+public class Viewport
+{
+    // HOW FAR WE ZOOM: 1/8 TO 8 TIMES
+    public static final int MIN_ZOOM_LEVEL = -3;
+    public static final int MAX_ZOOM_LEVEL = 3;
+
+    // THE SCALE IS 2 TO THE POWER OF THE ZOOM LEVEL
+    private int zoomLevel;
+    private double scale;
+
+    // WHERE THE SCENE'S ORIGIN IS ON SCREEN
+    private double panX;
+    private double panY;
+
+    /**
+     * Constructs a viewport showing the scene at its own size.
+     */
+    public Viewport()
+    {
+        zoomLevel = 0;
+        scale = 1.0;
+    }
+
+    // ACCESSOR METHODS
+
+    public int getZoomLevel() { return zoomLevel; }
+    public double getScale() { return scale; }
+    public double getPanX() { return panX; }
+    public double getPanY() { return panY; }
+
+    /**
+     * Maps a scene x coordinate to the screen, rounding down.
+     *
+     * @param sceneX The scene coordinate.
+     *
+     * @return The screen coordinate.
+     */
+    public int toScreenX(int sceneX)
+    {
+        return (int)Math.floor(sceneX * scale + panX);
+    }
+
+    /**
+     * Maps a scene y coordinate to the screen, rounding down.
+     *
+     * @param sceneY The scene coordinate.
+     *
+     * @return The screen coordinate.
+     */
+    public int toScreenY(int sceneY)
+    {
+        return (int)Math.floor(sceneY * scale + panY);
+    }
+
+    /**
+     * Works out the screen area covered by a scene rectangle. When
+     * zoomed out a prescaled frame may spill a pixel past its exact
+     * scaled bounds, so the area grows by a pixel to cover that.
+     *
+     * @param sceneRect The area in scene coordinates.
+     *
+     * @return The area in screen coordinates, or null for null.
+     */
+    public Rectangle toScreen(Rectangle sceneRect)
+    {
+        if (sceneRect == null)
+        {
+            return null;
+        }
+        int x0 = toScreenX(sceneRect.x);
+        int y0 = toScreenY(sceneRect.y);
+        int x1 = (int)Math.ceil((sceneRect.x + sceneRect.width) * scale + panX);
+        int y1 = (int)Math.ceil((sceneRect.y + sceneRect.height) * scale + panY);
+        int spill = (zoomLevel < 0) ? 1 : 0;
+        return new Rectangle(x0, y0, x1 - x0 + spill, y1 - y0 + spill);
+    }
+
+    /**
+     * Maps a point on screen back into the scene.
+     *
+     * @param screenPoint The point on screen.
+     *
+     * @return The scene point under it, rounded down.
+     */
+    public Point toScene(Point screenPoint)
+    {
+        return new Point((int)Math.floor((screenPoint.x - panX) / scale),
+                         (int)Math.floor((screenPoint.y - panY) / scale));
+    }
+
+    // MUTATOR METHODS
+
+    /**
+     * Zooms in or out by whole levels, keeping the scene point under
+     * the given screen point where it is.
+     *
+     * @param levels How many times to double the scale, negative to halve it.
+     *
+     * @param screenX Where on screen to zoom about.
+     *
+     * @param screenY Where on screen to zoom about.
+     *
+     * @return true if the zoom changed, false if it was already at its limit.
+     */
+    public boolean zoomAbout(int levels, int screenX, int screenY)
+    {
+        int newLevel = Math.max(MIN_ZOOM_LEVEL, Math.min(MAX_ZOOM_LEVEL, zoomLevel + levels));
+        if (newLevel == zoomLevel)
+        {
+            return false;
+        }
+        double newScale = Math.scalb(1.0, newLevel);
+        double sceneX = (screenX - panX) / scale;
+        double sceneY = (screenY - panY) / scale;
+        panX = screenX - sceneX * newScale;
+        panY = screenY - sceneY * newScale;
+        zoomLevel = newLevel;
+        scale = newScale;
+        return true;
+    }
+
+    /**
+     * Pans the view.
+     *
+     * @param screenDx How far to move the scene right, in screen pixels.
+     *
+     * @param screenDy How far to move the scene down, in screen pixels.
+     */
+    public void panBy(int screenDx, int screenDy)
+    {
+        panX += screenDx;
+        panY += screenDy;
+    }
+
+    /**
+     * Goes back to showing the scene at its own size, unpanned.
+     */
+    public void reset()
+    {
+        zoomLevel = 0;
+        scale = 1.0;
+        panX = 0;
+        panY = 0;
+    }
+}
@@ -0,0 +1,118 @@
+package animated_sprite_viewer.renderer;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A VolatileSpriteFrame keeps its pixels in a VolatileImage, which
+ * lives in video memory where the pipeline supports it. The system may
+ * throw video memory away at any time (a mode switch, a locked screen),
+ * so the frame also keeps its pixels in an ordinary BufferedImage and
+ * puts them back whenever the volatile copy is lost.
+ *
+ * The volatile copy is only created on the first draw, on the thread
+ * that paints.
+ *
+ * @author  Kevin Hock
+ */
+public class VolatileSpriteFrame extends SpriteFrame
+{
+    // HOW OFTEN WE'LL RETRY A DRAW WHOSE CONTENTS WERE LOST UNDERNEATH IT
+    public static final int MAX_DRAW_ATTEMPTS = 3;
+
+    // HOW MANY TIMES ANY FRAME HAD TO PUT ITS PIXELS BACK
+    private static AtomicLong restoreCount = new AtomicLong();
+
+    // WHERE THE FRAME IS DRAWN, AND ITS VIDEO MEMORY COPY
+    private GraphicsConfiguration graphicsConfiguration;
+    private int transparency;
+    private VolatileImage volatileImage;
+
+    /**
+     * Constructs a frame for the given screen.
+     *
+     * @param initSource The frame's pixels, kept to restore lost contents.
+     *
+     * @param initTrimmedFrom The frame whose offsets and untrimmed size we take.
+     *
+     * @param initGraphicsConfiguration The screen the frame will be drawn on.
+     */
+    public VolatileSpriteFrame(BufferedImage initSource, SpriteFrame initTrimmedFrom,
+                               GraphicsConfiguration initGraphicsConfiguration)
+    {
+        super(initSource, initTrimmedFrom.getOffsetX(), initTrimmedFrom.getOffsetY(),
+              initTrimmedFrom.getSourceWidth(), initTrimmedFrom.getSourceHeight());
+        graphicsConfiguration = initGraphicsConfiguration;
+        transparency = initSource.getColorModel().getTransparency();
+    }
+
+    // ACCESSOR METHODS
+
+    public static long getRestoreCount() { return restoreCount.get(); }
+
+    /**
+     * Draws this frame from video memory, first restoring its contents
+     * if they were lost or never there.
+     *
+     * @param g The graphics context to draw with.
+     *
+     * @param x Where the untrimmed art's left edge goes.
+     *
+     * @param y Where the untrimmed art's top edge goes.
+     */
+    @Override
+    public void draw(Graphics g, int x, int y)
+    {
+        for (int attempt = 0; attempt < MAX_DRAW_ATTEMPTS; attempt++)
+        {
+            if (volatileImage == null)
+            {
+                volatileImage = graphicsConfiguration.createCompatibleVolatileImage(width, height, transparency);
+                restoreContents();
+            }
+            int status = volatileImage.validate(graphicsConfiguration);
+            if (status == VolatileImage.IMAGE_INCOMPATIBLE)
+            {
+                volatileImage.flush();
+                volatileImage = null;
+                continue;
+            }
+            if (status == VolatileImage.IMAGE_RESTORED)
+            {
+                restoreCount.incrementAndGet();
+                restoreContents();
+            }
+            g.drawImage(volatileImage, x + offsetX, y + offsetY, null);
+            if (!volatileImage.contentsLost())
+            {
+                return;
+            }
+        }
+
+        // VIDEO MEMORY KEEPS LETTING US DOWN, SO DRAW FROM THE HEAP COPY
+        g.drawImage(image, x + offsetX, y + offsetY, null);
+    }
+
+    /**
+     * Copies the frame's pixels into its video memory copy, replacing
+     * what's there rather than blending with it.
+     */
+    private void restoreContents()
+    {
+        Graphics2D g2 = volatileImage.createGraphics();
+        try
+        {
+            g2.setComposite(AlphaComposite.Src);
+            g2.drawImage(image, 0, 0, null);
+        }
+        finally
+        {
+            g2.dispose();
+        }
+    }
+}